@@ -1,12 +1,50 @@
+import cli.CommandHandler;
 import io.CsvLoader;
+import io.CsvTailReader;
+import io.ExpenseJournal;
+import io.ExpenseSnapshot;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.CategoryDictionary;
 import model.Expense;
+import query.Query;
+import query.QueryEngine;
+import query.QueryResult;
+import report.BatchExporter;
+import report.ExportJob;
+import report.ReportWriterFactory;
 import service.ExpenseRepository;
+import service.ExpenseTotals;
+import service.NotesIndex;
+import service.QuantileSketch;
+import service.SumKernels;
+import service.SumKernelsFactory;
+import service.SummaryCache;
 import service.Summarizer;
+import service.SummaryAccumulator;
 import util.TextUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Test harness to verify BudgetBuddy behavior programmatically.
@@ -37,10 +75,10 @@ public class TestHarness {
             // Test 3: Test monthly summary
             System.out.println("Test 3: Computing monthly summary...");
             Summarizer summarizer = new Summarizer(repository.findAll());
-            Map<YearMonth, Double> monthlyTotals = summarizer.monthlyTotals();
+            Map<YearMonth, Long> monthlyTotals = summarizer.monthlyTotals();
             System.out.println("✓ Found " + monthlyTotals.size() + " months with expenses");
 
-            for (Map.Entry<YearMonth, Double> entry : monthlyTotals.entrySet()) {
+            for (Map.Entry<YearMonth, Long> entry : monthlyTotals.entrySet()) {
                 System.out.println("  " + entry.getKey() + ": " + TextUtils.formatAmount(entry.getValue()));
             }
             System.out.println();
@@ -48,13 +86,13 @@ public class TestHarness {
             // Test 4: Test specific month total
             System.out.println("Test 4: Computing February 2025 total...");
             YearMonth feb2025 = YearMonth.of(2025, 2);
-            double febTotal = summarizer.totalForMonth(feb2025);
+            long febTotal = summarizer.totalForMonth(feb2025);
             System.out.println("✓ February 2025 total: " + TextUtils.formatAmount(febTotal));
 
             // Expected: Rent (12000) + Food (2340) + Utilities (1800) + Transport (500) +
             // Entertainment (2150) + Shopping (2500) + Healthcare (800) = 22090
-            double expectedFeb = 22090.0;
-            if (Math.abs(febTotal - expectedFeb) < 0.01) {
+            long expectedFeb = 2209000;
+            if (febTotal == expectedFeb) {
                 System.out.println("✓ February total matches expected value");
             } else {
                 System.out.println("⚠ February total (" + febTotal + ") differs from expected (" + expectedFeb + ")");
@@ -63,17 +101,17 @@ public class TestHarness {
 
             // Test 5: Test category summary
             System.out.println("Test 5: Computing category totals for all time...");
-            Map<String, Double> categoryTotals = summarizer.categoryTotals(null);
+            Map<String, Long> categoryTotals = summarizer.categoryTotals(null);
             System.out.println("✓ Found " + categoryTotals.size() + " categories");
 
-            for (Map.Entry<String, Double> entry : categoryTotals.entrySet()) {
+            for (Map.Entry<String, Long> entry : categoryTotals.entrySet()) {
                 System.out.println("  " + entry.getKey() + ": " + TextUtils.formatAmount(entry.getValue()));
             }
             System.out.println();
 
             // Test 6: Grand total
             System.out.println("Test 6: Computing grand total...");
-            double grandTotal = summarizer.grandTotal();
+            long grandTotal = summarizer.grandTotal();
             System.out.println("✓ Grand total: " + TextUtils.formatAmount(grandTotal));
             System.out.println();
 
@@ -84,6 +122,808 @@ public class TestHarness {
             assert marchExpenses.size() == 14 : "Expected 14 expenses in March 2025";
             System.out.println();
 
+            // Test 8: Columnar storage returns the same expenses
+            System.out.println("Test 8: Switching to columnar storage...");
+            repository.setStorageMode("columnar");
+            assert repository.findAll().equals(expenses) : "Columnar store should return the same expenses";
+            assert repository.findByMonth(YearMonth.of(2025, 3)).equals(marchExpenses)
+                    : "Columnar store should return the same March expenses";
+            repository.setStorageMode("list");
+            System.out.println("✓ Columnar store returns identical expenses");
+            System.out.println();
+
+            // Test 9: Parallel loading returns the same expenses
+            System.out.println("Test 9: Loading CSV file in parallel mode...");
+            loader.setLoadMode("parallel");
+            List<Expense> parallelExpenses = loader.loadFromFile("data/expenses.csv");
+            loader.setLoadMode("reader");
+            assert parallelExpenses.equals(expenses) : "Parallel load should return the same expenses";
+            System.out.println("✓ Parallel load returns identical expenses");
+            System.out.println();
+
+            // Test 10: Memory-mapped loading returns the same expenses
+            System.out.println("Test 10: Loading CSV file in mapped mode...");
+            loader.setLoadMode("mapped");
+            List<Expense> mappedExpenses = loader.loadFromFile("data/expenses.csv");
+            loader.setLoadMode("reader");
+            assert mappedExpenses.equals(expenses) : "Mapped load should return the same expenses";
+            System.out.println("✓ Mapped load returns identical expenses");
+            System.out.println();
+
+            // Test 11: Streaming aggregation matches the list-based summaries
+            System.out.println("Test 11: Streaming summaries from CSV file...");
+            SummaryAccumulator accumulator = new SummaryAccumulator();
+            loader.streamFromFile("data/expenses.csv", accumulator);
+            Summarizer streamed = accumulator.summarizer();
+            assert streamed.monthlyTotals().equals(monthlyTotals) : "Streamed monthly totals should match";
+            assert streamed.categoryTotals(null).equals(categoryTotals) : "Streamed category totals should match";
+            assert streamed.grandTotal() == grandTotal : "Streamed grand total should match";
+            assert streamed.totalForMonth(feb2025) == febTotal : "Streamed February total should match";
+            assert accumulator.recentEntries().equals(expenses.subList(expenses.size() - 10, expenses.size()))
+                    : "Streamed recent entries should be the last 10 expenses";
+            System.out.println("✓ Streamed summaries match list-based summaries");
+            System.out.println();
+
+            // Test 12: Repository aggregates match the list-based summaries
+            System.out.println("Test 12: Reading totals from repository aggregates...");
+            Summarizer aggregated = new Summarizer(repository);
+            assert aggregated.monthlyTotals().equals(monthlyTotals) : "Repository monthly totals should match";
+            assert aggregated.categoryTotals(null).equals(categoryTotals) : "Repository category totals should match";
+            assert aggregated.categoryTotals(YearMonth.of(2025, 3)).equals(new Summarizer(marchExpenses).categoryTotals(null))
+                    : "Repository March category totals should match";
+            assert aggregated.grandTotal() == grandTotal : "Repository grand total should match";
+            assert repository.countForMonth(YearMonth.of(2025, 3)) == marchExpenses.size()
+                    : "Repository March count should match";
+            System.out.println("✓ Repository aggregates match list-based summaries");
+            System.out.println();
+
+            // Test 13: Date-range lookups use the date index
+            System.out.println("Test 13: Filtering expenses by date range...");
+            List<Expense> rangeExpenses = repository.findBetween(LocalDate.of(2025, 2, 10), LocalDate.of(2025, 3, 15));
+            long expectedRange = expenses.stream()
+                    .filter(e -> !e.getDate().isBefore(LocalDate.of(2025, 2, 10))
+                            && !e.getDate().isAfter(LocalDate.of(2025, 3, 15)))
+                    .count();
+            System.out.println("✓ Found " + rangeExpenses.size() + " expenses between 2025-02-10 and 2025-03-15");
+            assert rangeExpenses.size() == expectedRange : "Expected " + expectedRange + " expenses in range";
+            System.out.println();
+
+            // Test 14: Totals computed in one pass for reports keep summary order
+            System.out.println("Test 14: Computing report totals in a single pass...");
+            List<Expense> multiYear = new ArrayList<>();
+            for (int i = 0; i < 1500; i++) {
+                multiYear.add(new Expense(LocalDate.of(2021, 1, 1).plusDays(i), "Category" + (i % 40), i % 97, ""));
+            }
+            Summarizer listSummarizer = new Summarizer(multiYear);
+            ExpenseTotals fused = listSummarizer.totals();
+            assert new ArrayList<>(fused.monthlyTotals().entrySet())
+                    .equals(new ArrayList<>(listSummarizer.monthlyTotals().entrySet()))
+                    : "Single-pass monthly totals should match, in the same order";
+            assert new ArrayList<>(fused.categoryTotals(null).entrySet())
+                    .equals(new ArrayList<>(listSummarizer.categoryTotals(null).entrySet()))
+                    : "Single-pass category totals should match, in the same order";
+            assert fused.grandTotal() == listSummarizer.grandTotal() : "Single-pass grand total should match";
+            System.out.println("✓ Single-pass totals match over " + fused.monthlyTotals().size() + " months");
+            System.out.println();
+
+            // Test 15: Batch export writes each slice like a single export of that slice
+            System.out.println("Test 15: Batch exporting month and category reports...");
+            Path batchDir = Files.createTempDirectory("budgetbuddy-batch");
+            List<ExportJob> jobs = List.of(
+                    ExportJob.parse("txt 2025-03 " + batchDir.resolve("march.txt")),
+                    ExportJob.parse("html all " + batchDir.resolve("food.html") + " Food"),
+                    ExportJob.parse("txt all " + batchDir.resolve("all.txt")));
+            int written = new BatchExporter().export(jobs, repository);
+            assert written == 3 : "Expected 3 reports";
+            ReportWriterFactory.createReportWriter("txt")
+                    .writeReport(batchDir.resolve("march-single.txt").toString(), new Summarizer(marchExpenses), marchExpenses);
+            List<Expense> foodExpenses = new ArrayList<>();
+            for (Expense expense : expenses) {
+                if (expense.getCategory().equals("Food")) {
+                    foodExpenses.add(expense);
+                }
+            }
+            ReportWriterFactory.createReportWriter("html")
+                    .writeReport(batchDir.resolve("food-single.html").toString(), new Summarizer(foodExpenses), foodExpenses);
+            assert Files.readString(batchDir.resolve("march.txt")).equals(Files.readString(batchDir.resolve("march-single.txt")))
+                    : "Batch month report should match a single export";
+            assert Files.readString(batchDir.resolve("food.html")).equals(Files.readString(batchDir.resolve("food-single.html")))
+                    : "Batch category report should match a single export";
+            System.out.println("✓ Batch export wrote " + written + " reports matching single exports");
+            try (var files = Files.list(batchDir)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(batchDir);
+            System.out.println();
+
+            // Test 16: Binary snapshots reload the same expenses and reject corrupt files
+            System.out.println("Test 16: Saving and loading a binary snapshot...");
+            Path snapshotFile = Files.createTempFile("budgetbuddy", ".snap");
+            ExpenseSnapshot.save(snapshotFile.toString(), repository.findAll(), "data/expenses.csv");
+            assert ExpenseSnapshot.isUpToDate(snapshotFile.toString(), "data/expenses.csv")
+                    : "Snapshot should be up to date with its CSV file";
+            List<Expense> reloaded = new ArrayList<>();
+            try (ExpenseSnapshot snapshot = ExpenseSnapshot.open(snapshotFile.toString())) {
+                snapshot.readAll(reloaded::add);
+            }
+            assert reloaded.equals(expenses) : "Snapshot should reload the same expenses";
+            List<Expense> reloadedBlocks = new ArrayList<>();
+            try (ExpenseSnapshot snapshot = ExpenseSnapshot.open(snapshotFile.toString())) {
+                assert snapshot.readBlocks(reloadedBlocks::addAll) == expenses.size() : "Blocks should hold every row";
+            }
+            assert reloadedBlocks.equals(expenses) : "Snapshot blocks should reload the same expenses";
+            byte[] snapshotBytes = Files.readAllBytes(snapshotFile);
+            snapshotBytes[snapshotBytes.length / 2] ^= 1;
+            Files.write(snapshotFile, snapshotBytes);
+            boolean rejected = false;
+            try (ExpenseSnapshot snapshot = ExpenseSnapshot.open(snapshotFile.toString())) {
+                snapshot.readAll(reloaded::add);
+            } catch (IOException e) {
+                rejected = true;
+            }
+            assert rejected : "Corrupt snapshot should be rejected";
+            Files.delete(snapshotFile);
+            System.out.println("✓ Snapshot reloaded " + expenses.size() + " expenses; corrupt copy rejected");
+            System.out.println();
+
+            // Test 17: Journaled expenses are replayed, then compacted into the CSV file
+            System.out.println("Test 17: Journaling added expenses...");
+            Path journalDir = Files.createTempDirectory("budgetbuddy-journal");
+            Path baseFile = journalDir.resolve("expenses.csv");
+            Files.copy(Paths.get("data/expenses.csv"), baseFile);
+            Expense added = new Expense(LocalDate.of(2025, 6, 1), "Food", 12.5, "Lunch, with team");
+            try (ExpenseJournal journal = ExpenseJournal.open(baseFile.toString())) {
+                journal.append(added);
+            }
+            List<Expense> replayed = new ArrayList<>();
+            try (ExpenseJournal journal = ExpenseJournal.open(baseFile.toString())) {
+                journal.replay(replayed::add);
+                assert replayed.equals(List.of(added)) : "Journal should replay the added expense";
+                assert journal.compact() == 1 : "Compaction should move 1 expense";
+            }
+            List<Expense> compacted = loader.loadFromFile(baseFile.toString());
+            assert compacted.size() == expenses.size() + 1 : "Compacted CSV should have one more expense";
+            assert compacted.get(compacted.size() - 1).equals(added) : "Compacted expense should read back unchanged";
+            List<String> compactedLines = Files.readAllLines(baseFile);
+            assert compactedLines.get(compactedLines.size() - 1).equals("2025-06-01;Food;12.50;Lunch, with team")
+                    : "Compacted amount should be written from cents with 2 decimals";
+            replayed.clear();
+            try (ExpenseJournal journal = ExpenseJournal.open(baseFile.toString())) {
+                assert journal.replay(replayed::add) == 0 : "Compacted journal should be empty";
+            }
+            assert !Files.exists(journalDir.resolve("expenses.csv.compact")) : "No compaction file should be left";
+            // Saving a snapshot leaves the CSV file and journal alone, and loading it does not add journaled rows twice
+            CommandHandler journalHandler = new CommandHandler(repository);
+            journalHandler.handleLoad(baseFile.toString());
+            journalHandler.handleAdd("2025-06-02", "Transport", "3.40", "Bus");
+            byte[] baseBytes = Files.readAllBytes(baseFile);
+            journalHandler.handleSaveSnapshot(null);
+            assert Arrays.equals(Files.readAllBytes(baseFile), baseBytes) : "save-snapshot must not modify the CSV file";
+            journalHandler.handleLoad(baseFile.toString());
+            assert repository.count() == compacted.size() + 1 : "Snapshot plus journal should hold each entry once";
+            journalHandler.handleAdd("2025-06-03", "Food", "7.25", "Sandwich");
+            journalHandler.handleLoad(baseFile.toString());
+            assert repository.count() == compacted.size() + 2 : "Entries journaled after the snapshot should be replayed";
+            journalHandler.handleLoadSnapshot(ExpenseSnapshot.defaultPath(baseFile.toString()));
+            assert repository.count() == compacted.size() + 1 : "The snapshot itself should hold its journaled entry";
+            journalHandler.handleExit();
+            repository.clear();
+            repository.addAll(expenses);
+            try (var files = Files.list(journalDir)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(journalDir);
+            System.out.println("✓ Journaled expense replayed and compacted into the CSV file");
+            System.out.println();
+
+            // Test 18: Tail reading parses only complete appended lines
+            System.out.println("Test 18: Reading appended lines from a growing CSV file...");
+            Path growingFile = Files.createTempFile("budgetbuddy-follow", ".csv");
+            Files.writeString(growingFile, "date;category;amount;notes\n2025-01-03;Food;520;Lunch\n2025-01-05;Trans");
+            CsvTailReader tailReader = new CsvTailReader(growingFile.toString());
+            List<Expense> followed = new ArrayList<>();
+            List<String> followErrors = new ArrayList<>();
+            tailReader.readNew(followed::add, e -> followErrors.add(e.getMessage()));
+            assert followed.size() == 1 : "Partial last line should wait for its line terminator";
+            Files.writeString(growingFile, "port;150;Uber\r\n2025-01-06;Food;x;Bad\n", StandardOpenOption.APPEND);
+            tailReader.readNew(followed::add, e -> followErrors.add(e.getMessage()));
+            assert followed.size() == 2 && followed.get(1).getCategory().equals("Transport")
+                    : "Completed line should be read once it is terminated";
+            assert followErrors.equals(List.of("Error at line 4: Invalid amount format: x"))
+                    : "Invalid appended line should be reported with its line number";
+            assert !tailReader.wasReplaced() : "Appending should not count as replacing the file";
+            Path rotatedFile = Files.createTempFile("budgetbuddy-rotated", ".csv");
+            Files.writeString(rotatedFile, "date;category;amount;notes\n2025-02-01;Rent;90000;February rent\n"
+                    + "2025-02-02;Food;300;Bakery\n2025-02-03;Food;450;Groceries\n");
+            Files.move(rotatedFile, growingFile, StandardCopyOption.REPLACE_EXISTING);
+            assert tailReader.wasReplaced() : "A larger file moved over the followed one should be detected";
+            tailReader.reset();
+            followed.clear();
+            tailReader.readNew(followed::add, e -> followErrors.add(e.getMessage()));
+            assert followed.size() == 3 && followed.get(0).getCategory().equals("Rent")
+                    : "Replaced file should be read from the start";
+            Files.writeString(growingFile, "date;category;amount;notes\n2025-03-01;Rent;95000;March rent\n"
+                    + "2025-03-02;Food;300;Bakery\n2025-03-03;Food;450;Groceries\n2025-03-04;Food;120;Coffee\n");
+            assert tailReader.wasReplaced() : "A file rewritten in place with other contents should be detected";
+            Files.delete(growingFile);
+            System.out.println("✓ Read " + followed.size() + " appended expenses up to line " + tailReader.getLineNumber());
+            System.out.println();
+
+            // Test 19: Readers get stable snapshots while several threads add expenses
+            System.out.println("Test 19: Adding expenses from several threads while reading...");
+            List<Expense> beforeWriters = repository.findAll();
+            List<Thread> writers = new ArrayList<>();
+            for (int w = 0; w < 4; w++) {
+                writers.add(new Thread(() -> {
+                    for (int i = 0; i < 5000; i++) {
+                        repository.add(expenses.get(i % expenses.size()));
+                    }
+                }));
+            }
+            writers.forEach(Thread::start);
+            boolean writing = true;
+            while (writing) {
+                List<Expense> view = repository.findAll();
+                int viewSize = view.size();
+                for (Expense expense : view) {
+                    assert expense != null : "Snapshot should only hold added expenses";
+                }
+                assert view.size() == viewSize : "Snapshot should not grow while writers add";
+                writing = writers.stream().anyMatch(Thread::isAlive);
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            assert beforeWriters.size() == 70 : "Earlier snapshot should not see later additions";
+            assert repository.count() == 70 + 4 * 5000 : "Every concurrent add should be kept";
+            assert repository.grandTotal() == new Summarizer(repository.findAll()).grandTotal()
+                    : "Aggregates should match the rows after concurrent adds";
+            repository.clear();
+            List<Expense> largeBatch = new ArrayList<>();
+            for (int i = 0; i < 200_000; i++) {
+                largeBatch.add(expenses.get(i % expenses.size()));
+            }
+            AtomicInteger seenDuringBatch = new AtomicInteger();
+            CountDownLatch readerStarted = new CountDownLatch(1);
+            Thread reader = new Thread(() -> {
+                readerStarted.countDown();
+                int seen;
+                while ((seen = repository.count()) == 0) {
+                    Thread.onSpinWait();
+                }
+                seenDuringBatch.set(seen);
+            });
+            reader.start();
+            readerStarted.await();
+            repository.addAll(largeBatch);
+            reader.join();
+            assert seenDuringBatch.get() > 0 && seenDuringBatch.get() < largeBatch.size()
+                    : "A reader should get in while a large batch is still being added";
+            assert repository.count() == largeBatch.size() : "Every row of the batch should be added";
+            repository.clear();
+            repository.addAll(expenses);
+            System.out.println("✓ 4 writers added 20000 expenses; snapshots stayed consistent");
+            System.out.println("✓ Reader saw " + seenDuringBatch.get() + " of " + largeBatch.size()
+                    + " rows while the batch was added");
+            System.out.println();
+
+            // Test 20: Categories share one dictionary id per name
+            System.out.println("Test 20: Encoding categories as dictionary ids...");
+            CategoryDictionary dictionary = CategoryDictionary.getInstance();
+            Expense food = new Expense(LocalDate.of(2025, 1, 1), new String("Food"), 1.0, "");
+            assert food.getCategoryId() == dictionary.idOf("Food") : "Same name should get the same id";
+            assert dictionary.nameOf(food.getCategoryId()).equals("Food") : "Id should resolve back to the name";
+            assert food.equals(Expense.ofCents(food.getDate(), food.getCategoryId(), 100, ""))
+                    : "Expense built from an id should equal one built from the name";
+            Map<String, Long> expectedCategoryTotals = new LinkedHashMap<>();
+            for (Expense expense : expenses) {
+                expectedCategoryTotals.merge(expense.getCategory(), expense.getAmountCents(), Long::sum);
+            }
+            assert new Summarizer(expenses).categoryTotals(null).equals(expectedCategoryTotals)
+                    : "Id-indexed category totals should match name-keyed totals";
+            assert new Summarizer(repository).categoryTotals(null).toString().equals(expectedCategoryTotals.toString())
+                    : "Repository category totals should list categories in first-seen order";
+            Path paddedFile = Files.createTempFile("budgetbuddy-categories", ".csv");
+            Files.writeString(paddedFile, "date;category;amount;notes\n2025-01-01; Food ;1.50;Lunch\n"
+                    + "2025-01-02;Food;2;Snack\n2025-01-03;Gifts\t;3\n2025-01-04, Gifts,4,Card\n");
+            List<Expense> readerLoaded = null;
+            for (String mode : List.of("reader", "parallel", "mapped")) {
+                loader.setLoadMode(mode);
+                List<Expense> loaded = loader.loadFromFile(paddedFile.toString());
+                for (Expense expense : loaded) {
+                    assert expense.getCategoryId() == dictionary.idOf(expense.getCategory().trim())
+                            && expense.getCategory() == dictionary.nameOf(expense.getCategoryId())
+                            : "Loaders should resolve trimmed category names to dictionary ids (" + mode + ")";
+                }
+                assert readerLoaded == null || loaded.equals(readerLoaded) : "Every load mode should read the same rows";
+                readerLoaded = loaded;
+            }
+            loader.setLoadMode("reader");
+            Files.delete(paddedFile);
+            System.out.println("✓ " + dictionary.size() + " categories encoded; totals unchanged");
+            System.out.println();
+
+            // Test 21: Amounts are parsed to whole cents and summed exactly
+            System.out.println("Test 21: Parsing and summing amounts in cents...");
+            assert TextUtils.parseAmount("12") == 1200 && TextUtils.parseAmount("12.5") == 1250
+                    && TextUtils.parseAmount(".05") == 5 : "Plain decimals should parse to cents";
+            assert TextUtils.parseAmount("1.005") == 101 && TextUtils.parseAmount("1.0049") == 100
+                    : "Extra decimals should round half-up";
+            assert TextUtils.parseAmount("1e3") == 100000 : "Exponent form should parse like a decimal";
+            boolean nanRejected = false;
+            try {
+                TextUtils.parseAmount("NaN");
+            } catch (NumberFormatException e) {
+                nanRejected = true;
+            }
+            assert nanRejected : "NaN should not be an amount";
+            for (String tinyNegative : List.of("-0.001", "-0.004", "-1e-3")) {
+                String message = null;
+                try {
+                    TextUtils.parseAmount(tinyNegative);
+                } catch (IllegalArgumentException e) {
+                    message = e.getMessage();
+                }
+                assert "Amount cannot be negative".equals(message)
+                        : tinyNegative + " should be rejected as negative, not rounded to 0";
+            }
+            assert TextUtils.parseAmount("-0.00") == 0 : "Negative zero should still read as 0";
+            Path negativeFile = Files.createTempFile("budgetbuddy-negative", ".csv");
+            Files.writeString(negativeFile, "date;category;amount;notes\n2025-01-01;Food;-0.001;Rounding\n");
+            for (String mode : List.of("reader", "mapped")) {
+                loader.setLoadMode(mode);
+                String message = null;
+                try {
+                    loader.loadFromFile(negativeFile.toString());
+                } catch (IllegalArgumentException e) {
+                    message = e.getMessage();
+                }
+                assert "Error at line 2: Amount cannot be negative".equals(message)
+                        : "A tiny negative amount should be rejected when loading (" + mode + "): " + message;
+            }
+            loader.setLoadMode("reader");
+            Files.delete(negativeFile);
+            List<Expense> dimes = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                dimes.add(new Expense(LocalDate.of(2025, 1, 1), "Food", 0.1, ""));
+            }
+            assert new Summarizer(dimes).grandTotal() == 100 : "Ten dimes should sum to exactly 1.00";
+            assert new Expense(LocalDate.of(2025, 1, 1), "Food", 0.37 * 3, "").getAmountCents() == 111
+                    : "Double amounts should round to the nearest cent";
+            assert TextUtils.formatAmount(100).equals("1.00") : "Cents should format with 2 decimals";
+            System.out.println("✓ Amounts parsed to cents; ten 0.10 entries total " + TextUtils.formatAmount(100));
+            System.out.println();
+
+            // Test 22: Summation kernels match the row-by-row totals
+            System.out.println("Test 22: Summing columns with scalar and vector kernels...");
+            SumKernels scalar = SumKernelsFactory.createKernels("scalar");
+            SumKernels vector = null;
+            try {
+                vector = SumKernelsFactory.createKernels("vector");
+            } catch (IllegalStateException e) {
+                System.out.println("- Skipped scalar/vector comparison: " + e.getMessage());
+            }
+            Random random = new Random(22);
+            int rows = 1003;
+            int[] days = new int[rows];
+            int[] ids = new int[rows];
+            long[] cents = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                days[i] = 20000 + random.nextInt(365);
+                ids[i] = random.nextInt(7);
+                cents[i] = random.nextInt(1000000);
+            }
+            if (vector != null) {
+                assert scalar.sum(cents, rows) == vector.sum(cents, rows) : "Kernel sums should match";
+                assert scalar.sumBetween(days, cents, rows, 20100, 20130)
+                        == vector.sumBetween(days, cents, rows, 20100, 20130)
+                        : "Kernel date-range sums should match";
+                long[] scalarTotals = new long[7];
+                long[] scalarCounts = new long[7];
+                long[] vectorTotals = new long[7];
+                long[] vectorCounts = new long[7];
+                scalar.sumByCategoryBetween(days, ids, cents, rows, 20100, 20130, scalarTotals, scalarCounts);
+                vector.sumByCategoryBetween(days, ids, cents, rows, 20100, 20130, vectorTotals, vectorCounts);
+                assert Arrays.equals(scalarTotals, vectorTotals) && Arrays.equals(scalarCounts, vectorCounts)
+                        : "Kernel category sums should match";
+            }
+            repository.setStorageMode("columnar");
+            Summarizer columnSummarizer = new Summarizer(repository.findAll());
+            Summarizer rowSummarizer = new Summarizer(new ArrayList<>(repository.findAll()));
+            assert columnSummarizer.grandTotal() == rowSummarizer.grandTotal() : "Column grand total should match";
+            assert columnSummarizer.totalForMonth(YearMonth.of(2025, 2)) == rowSummarizer.totalForMonth(YearMonth.of(2025, 2))
+                    : "Column month total should match";
+            assert columnSummarizer.categoryTotals(YearMonth.of(2025, 2)).toString()
+                    .equals(rowSummarizer.categoryTotals(YearMonth.of(2025, 2)).toString())
+                    : "Column category totals should match and iterate in the same order";
+            assert columnSummarizer.categoryTotals(null).toString().equals(rowSummarizer.categoryTotals(null).toString())
+                    : "Column category totals should match and iterate in the same order";
+            repository.setStorageMode("list");
+            System.out.println("✓ " + SumKernelsFactory.getDefault().name()
+                    + " kernels match row-by-row totals" + (vector != null ? "; vector kernels match scalar" : ""));
+            System.out.println();
+
+            // Test 23: Parallel summaries match serial ones exactly
+            System.out.println("Test 23: Summarizing a large list in parallel chunks...");
+            List<Expense> large = new ArrayList<>();
+            for (int i = 0; i < 150000; i++) {
+                large.add(new Expense(LocalDate.of(2024, 1, 1).plusDays(random.nextInt(730)),
+                        "Category" + random.nextInt(40), random.nextInt(100000) / 100.0, ""));
+            }
+            Summarizer serial = new Summarizer(large, Integer.MAX_VALUE);
+            Summarizer parallel = new Summarizer(large, 1);
+            YearMonth largeMonth = YearMonth.of(2024, 6);
+            assert parallel.grandTotal() == serial.grandTotal() : "Parallel grand total should match";
+            assert parallel.totalForMonth(largeMonth) == serial.totalForMonth(largeMonth)
+                    : "Parallel month total should match";
+            assert parallel.monthlyTotals().toString().equals(serial.monthlyTotals().toString())
+                    : "Parallel monthly totals should match in value and order";
+            assert parallel.categoryTotals(null).toString().equals(serial.categoryTotals(null).toString())
+                    : "Parallel category totals should match in value and order";
+            assert parallel.categoryTotals(largeMonth).toString().equals(serial.categoryTotals(largeMonth).toString())
+                    : "Parallel month category totals should match in value and order";
+            ExpenseTotals parallelTotals = parallel.totals();
+            ExpenseTotals serialTotals = serial.totals();
+            assert parallelTotals.monthlyTotals().toString().equals(serialTotals.monthlyTotals().toString())
+                    && parallelTotals.categoryTotals(largeMonth).equals(serialTotals.categoryTotals(largeMonth))
+                    && parallelTotals.grandTotal() == serialTotals.grandTotal()
+                    : "Parallel single-pass totals should match";
+            System.out.println("✓ Parallel totals over " + large.size() + " rows match serial totals");
+            System.out.println();
+
+            // Test 24: Group-by queries agree with Summarizer, whichever plan runs them
+            System.out.println("Test 24: Running group-by queries...");
+            QueryEngine engine = new QueryEngine(repository);
+            QueryResult byMonth = engine.run(Query.parse(Arrays.asList("by", "month", "show", "sum,count")));
+            assert byMonth.getPlan().startsWith("monthly totals") : "Month sums should come from running totals";
+            QueryResult byMonthScanned = engine.run(Query.parse(
+                    Arrays.asList("by", "month", "show", "sum,count", "min-amount", "0")));
+            assert byMonthScanned.getPlan().startsWith("full scan") : "An amount filter needs a scan";
+            assert byMonth.getRows().size() == monthlyTotals.size() : "One group per month";
+            for (int i = 0; i < byMonth.getRows().size(); i++) {
+                QueryResult.Row row = byMonth.getRows().get(i);
+                QueryResult.Row scanned = byMonthScanned.getRows().get(i);
+                YearMonth month = YearMonth.parse(row.getKey(0));
+                assert row.getValue(0) == monthlyTotals.get(month) && scanned.getValue(0) == row.getValue(0)
+                        : "Query month sums should match Summarizer";
+                assert row.getValue(1) == repository.countForMonth(month) && scanned.getValue(1) == row.getValue(1)
+                        : "Query month counts should match the repository";
+            }
+            QueryResult february = engine.run(Query.parse(Arrays.asList(
+                    "by", "category", "show", "sum,count,min,max,p50", "from", "2025-02-01", "to", "2025-02-28")));
+            assert february.getPlan().startsWith("date index") : "A day-level query with dates should use the date index";
+            Map<String, Long> februaryTotals = summarizer.categoryTotals(YearMonth.of(2025, 2));
+            assert february.getRows().size() == februaryTotals.size() : "One group per February category";
+            for (QueryResult.Row row : february.getRows()) {
+                assert row.getValue(0) == februaryTotals.get(row.getKey(0)) : "Query category sums should match";
+                assert row.getValue(2) <= row.getValue(4) && row.getValue(4) <= row.getValue(3)
+                        : "Median should lie between min and max";
+            }
+            QueryResult overall = engine.run(Query.parse(Arrays.asList("show", "count,p50,p100,max")));
+            assert overall.getRows().size() == 1 && overall.getRows().get(0).getValue(0) == 70
+                    : "No group keys should give one group of every expense";
+            assert overall.getRows().get(0).getValue(2) == overall.getRows().get(0).getValue(3) : "p100 should be the max";
+            boolean badKeyRejected = false;
+            try {
+                Query.parse(Arrays.asList("by", "decade"));
+            } catch (IllegalArgumentException e) {
+                badKeyRejected = true;
+            }
+            assert badKeyRejected : "Unknown group keys should be rejected";
+            System.out.println("✓ Queries match Summarizer totals (" + byMonth.getPlan() + "; " + february.getPlan() + ")");
+            System.out.println();
+
+            // Test 25: Top-K heaps and quantile sketches agree with exact sorts
+            System.out.println("Test 25: Checking largest expenses and percentile sketches...");
+            List<Expense> skewed = new ArrayList<>();
+            for (int i = 0; i < 120000; i++) {
+                // Log-normal amounts, from cents to thousands
+                double amount = Math.round(Math.exp(4 + 1.5 * random.nextGaussian()) * 100) / 100.0;
+                skewed.add(new Expense(LocalDate.of(2024, 1, 1).plusDays(random.nextInt(366)),
+                        "Category" + random.nextInt(4), amount, "row " + i));
+            }
+            Summarizer sketched = new Summarizer(skewed, Integer.MAX_VALUE);
+            for (Map.Entry<String, QuantileSketch> entry : sketched.categoryQuantiles(null).entrySet()) {
+                List<Long> exact = new ArrayList<>();
+                for (Expense expense : skewed) {
+                    if (expense.getCategory().equals(entry.getKey())) {
+                        exact.add(expense.getAmountCents());
+                    }
+                }
+                exact.sort(null);
+                assert entry.getValue().count() == exact.size() : "Sketch should count every amount";
+                for (double percent : new double[] { 1, 50, 95, 99, 99.9, 100 }) {
+                    long expected = exact.get((int) Math.ceil(percent * exact.size() / 100.0) - 1);
+                    long actual = entry.getValue().percentile(percent);
+                    assert Math.abs(actual - expected) <= QuantileSketch.RELATIVE_ACCURACY * expected + 1
+                            : "p" + percent + " of " + entry.getKey() + " should be within 1%: " + actual + " vs " + expected;
+                }
+            }
+            QuantileSketch firstHalf = new QuantileSketch();
+            QuantileSketch secondHalf = new QuantileSketch();
+            QuantileSketch whole = new QuantileSketch();
+            for (int i = 0; i < skewed.size(); i++) {
+                (i < skewed.size() / 2 ? firstHalf : secondHalf).add(skewed.get(i).getAmountCents());
+                whole.add(skewed.get(i).getAmountCents());
+            }
+            secondHalf.addAll(firstHalf);
+            assert secondHalf.equals(whole) : "Merged sketches should equal a single-pass sketch";
+
+            YearMonth skewedMonth = YearMonth.of(2024, 7);
+            List<Long> monthAmounts = new ArrayList<>();
+            for (Expense expense : skewed) {
+                if (YearMonth.from(expense.getDate()).equals(skewedMonth)) {
+                    monthAmounts.add(expense.getAmountCents());
+                }
+            }
+            monthAmounts.sort(Collections.reverseOrder());
+            List<Expense> top = sketched.topExpenses(skewedMonth);
+            assert top.size() == Summarizer.TOP_EXPENSES : "Top expenses should be capped at " + Summarizer.TOP_EXPENSES;
+            for (int i = 0; i < top.size(); i++) {
+                assert top.get(i).getAmountCents() == monthAmounts.get(i) : "Top expense " + i + " should match the sort";
+            }
+            Summarizer sketchedParallel = new Summarizer(skewed, 1);
+            assert sketchedParallel.topExpenses(skewedMonth).equals(top) : "Parallel top expenses should match";
+            assert sketchedParallel.categoryQuantiles(skewedMonth).equals(sketched.categoryQuantiles(skewedMonth))
+                    : "Parallel sketches should match";
+            assert sketched.totals().topExpenses(skewedMonth).equals(top)
+                    && sketched.totals().categoryQuantiles(null).equals(sketched.categoryQuantiles(null))
+                    : "Single-pass totals should carry the same top expenses and sketches";
+            System.out.println("✓ Top " + top.size() + " and p50/p95/p99 within 1% of exact sorts over "
+                    + skewed.size() + " rows");
+            System.out.println();
+
+            // Test 26: The notes index finds the same rows as a scan
+            System.out.println("Test 26: Searching notes through the inverted index...");
+            List<Expense> lunches = repository.findByNotes("LUNCH", null, null);
+            List<Expense> scannedLunches = new ArrayList<>();
+            for (Expense expense : repository.findAll()) {
+                if (TextUtils.words(expense.getNotes()).contains("lunch")) {
+                    scannedLunches.add(expense);
+                }
+            }
+            assert !lunches.isEmpty() && lunches.equals(scannedLunches) : "Search should match a scan, ignoring case";
+            assert repository.findByNotes("lunch cafe", null, null).size() == 1 : "Every word should have to match";
+            assert repository.findByNotes("lunch", LocalDate.of(2025, 2, 1), null).size() == lunches.size() - 1
+                    : "Search should honour a date range";
+            assert repository.findByNotes("no-such-word", null, null).isEmpty() : "Unknown words match nothing";
+            QueryResult lunchQuery = engine.run(Query.parse(Arrays.asList("by", "month", "note", "lunch")));
+            assert lunchQuery.getPlan().startsWith("notes index") : "A note filter should use the notes index";
+
+            String[] vocabulary = { "Uber", "office", "lunch", "café", "rent", "gift" };
+            NotesIndex notesIndex = new NotesIndex();
+            List<String> notesByRow = new ArrayList<>();
+            for (int row = 0; row < 300000; row++) {
+                // Word frequencies from 1 in 2 to 1 in 64, so chunks are both arrays and bitmaps
+                StringBuilder notes = new StringBuilder();
+                for (int w = 0; w < vocabulary.length; w++) {
+                    if (random.nextInt(2 << w) == 0) {
+                        notes.append(vocabulary[w]).append(' ');
+                    }
+                }
+                notesByRow.add(notes.toString());
+                notesIndex.add(notes.toString(), row * 3);
+            }
+            for (String text : new String[] { "uber", "CAFÉ", "office uber", "gift rent lunch", "café gift" }) {
+                List<String> words = TextUtils.words(text);
+                List<Integer> expected = new ArrayList<>();
+                for (int row = 0; row < notesByRow.size(); row++) {
+                    if (row * 3 >= 200000 && row * 3 < 700000
+                            && TextUtils.words(notesByRow.get(row)).containsAll(words)) {
+                        expected.add(row * 3);
+                    }
+                }
+                int[] found = notesIndex.rowsMatching(text, 200000, 700000);
+                assert found.length == expected.size() : "Index should find every row with '" + text + "'";
+                for (int i = 0; i < found.length; i++) {
+                    assert found[i] == expected.get(i) : "Index rows should match a scan for '" + text + "'";
+                }
+            }
+            System.out.println("✓ Notes search matches scans (" + lunches.size() + " lunches; "
+                    + lunchQuery.getPlan() + ")");
+            System.out.println();
+
+            // Test 27: The category index finds the same rows as a scan, in either storage mode
+            System.out.println("Test 27: Filtering by category through bitmap indexes...");
+            List<String> foodAndTransport = Arrays.asList("food", "TRANSPORT");
+            LocalDate marchStart = LocalDate.of(2025, 3, 1);
+            LocalDate marchEnd = LocalDate.of(2025, 3, 31);
+            List<Expense> scannedMarch = new ArrayList<>();
+            for (Expense expense : repository.findByMonth(YearMonth.of(2025, 3))) {
+                if (expense.getCategory().equals("Food") || expense.getCategory().equals("Transport")) {
+                    scannedMarch.add(expense);
+                }
+            }
+            List<Expense> indexedMarch = repository.findByCategories(foodAndTransport, marchStart, marchEnd);
+            assert !scannedMarch.isEmpty() && indexedMarch.equals(scannedMarch)
+                    : "Category index should match a scan, ignoring case";
+            long scannedMarchTotal = new Summarizer(scannedMarch).grandTotal();
+            repository.setStorageMode("columnar");
+            List<Expense> columnarMarch = repository.findByCategories(foodAndTransport, marchStart, marchEnd);
+            assert columnarMarch.equals(scannedMarch)
+                    && new Summarizer(columnarMarch).grandTotal() == scannedMarchTotal
+                    && new Summarizer(columnarMarch).categoryTotals(null)
+                            .equals(new Summarizer(scannedMarch).categoryTotals(null))
+                    : "Columnar selections should summarize the same";
+            repository.setStorageMode("list");
+            assert repository.findMatching("lunch", Arrays.asList("Food"), null, null).size() == lunches.size()
+                    && repository.findMatching("lunch", Arrays.asList("Rent"), null, null).isEmpty()
+                    : "Notes and category indexes should combine";
+            QueryResult categoryQuery = engine.run(Query.parse(Arrays.asList(
+                    "by", "category", "category", "Food,Transport", "from", "2025-03-01", "to", "2025-03-31")));
+            assert categoryQuery.getPlan().startsWith("category index") : "A category filter should use the index";
+            assert categoryQuery.getRows().size() == 2 : "One group per listed category";
+            // A row added out of date order is still found within its date range
+            repository.add(new Expense(LocalDate.of(2025, 3, 20), "Food", 12.5, "late receipt"));
+            assert repository.findByCategories(foodAndTransport, marchStart, marchEnd).size() == scannedMarch.size() + 1
+                    : "Out-of-order rows should be found through the date index";
+            repository.clear();
+            repository.addAll(expenses);
+            assert repository.findByCategories(foodAndTransport, marchStart, marchEnd).equals(scannedMarch)
+                    : "Indexes should be rebuilt after clear";
+            System.out.println("✓ Category index matches scans (" + indexedMarch.size()
+                    + " Food/Transport rows in March; " + categoryQuery.getPlan() + ")");
+            System.out.println();
+
+            // Test 28: paged, filtered list output
+            System.out.println("Test 28: Paged list");
+            CommandHandler handler = new CommandHandler(repository);
+            List<Expense> foodRows = repository.findByCategories(Arrays.asList("Food"), null, null);
+            String[] pageLines = captureOutput(() -> handler.handleList(
+                    Arrays.asList("--category", "food", "--page", "2", "--limit", "3")));
+            assert pageLines[1].equals("Matching Expenses:") : "A filtered list should say so";
+            for (int i = 0; i < 3; i++) {
+                assert pageLines[3 + i].equals(foodRows.get(3 + i).toString())
+                        : "Page rows should be the filtered rows, formatted as Expense.toString()";
+            }
+            int pages = (foodRows.size() + 2) / 3;
+            assert pageLines[7].equals("Total entries: " + foodRows.size())
+                    && pageLines[8].equals("Page 2 of " + pages + " (entries 4-6)")
+                    : "The footer should give the total and the page";
+            String[] allLines = captureOutput(() -> handler.handleList(Collections.emptyList()));
+            assert allLines.length == expenses.size() + 5 && allLines[1].equals("All Expenses:")
+                    : "A plain list should show every expense";
+            for (int i = 0; i < expenses.size(); i++) {
+                assert allLines[3 + i].equals(expenses.get(i).toString()) : "Row " + i + " should match toString()";
+            }
+            String[] marchLines = captureOutput(() -> handler.handleList(
+                    Arrays.asList("--from", "2025-03-01", "--to", "2025-03-31", "--limit", "1000")));
+            assert marchLines.length == repository.findBetween(marchStart, marchEnd).size() + 5
+                    : "A date range should list only its rows";
+            Locale defaultLocale = Locale.getDefault();
+            try {
+                Locale.setDefault(Locale.GERMANY);
+                String line = Expense.ofCents(LocalDate.of(2025, 1, 2), "Food", 125050, "Dinner").toString();
+                assert line.equals("2025-01-02  Food            1250.50   Dinner")
+                        : "Expense.toString should not depend on the locale: " + line;
+            } finally {
+                Locale.setDefault(defaultLocale);
+            }
+            System.out.println("✓ Page 2 of " + pages + " of Food rows matches the filtered list");
+            System.out.println();
+
+            // Test 29: summary cache
+            System.out.println("Test 29: Summary cache");
+            SummaryCache cache = new SummaryCache(2);
+            int[] computed = new int[1];
+            long version = repository.version();
+            cache.get("month", "2025-01", version, () -> ++computed[0]);
+            cache.get("month", "2025-01", version, () -> ++computed[0]);
+            cache.get("month", "2025-02", version, () -> ++computed[0]);
+            cache.get("month", "2025-01", version, () -> ++computed[0]);
+            cache.get("category", "all", version, () -> ++computed[0]);
+            assert computed[0] == 3 && cache.hits() == 2 && cache.misses() == 3 && cache.evictions() == 1
+                    : "Repeated lookups should hit, and the least recently used entry be evicted";
+            cache.get("month", "2025-01", version, () -> ++computed[0]);
+            assert computed[0] == 3 : "The most recently used entry should have been kept";
+            repository.add(new Expense(LocalDate.of(2025, 1, 15), "Food", 10.0, "cache check"));
+            assert repository.version() > version : "Adding should bump the version";
+            Integer recomputed = cache.get("month", "2025-01", repository.version(), () -> ++computed[0]);
+            assert recomputed == 4 && cache.invalidations() == 2 && cache.size() == 1
+                    : "A new version should drop older entries";
+            long versionBeforeClear = repository.version();
+            repository.clear();
+            repository.addAll(expenses);
+            assert repository.version() == versionBeforeClear + 2 : "clear and addAll should bump the version";
+            long versionBeforeFailure = repository.version();
+            try {
+                repository.add(null);
+                assert false : "Adding null should fail";
+            } catch (NullPointerException expected) {
+                // the row may have been stored before the failure
+            }
+            assert repository.version() > versionBeforeFailure : "A failed add should still bump the version";
+            repository.clear();
+            repository.addAll(expenses);
+            String[] firstSummary = captureOutput(() -> handler.handleMonthlySummary("2025-01"));
+            String[] cachedSummary = captureOutput(() -> handler.handleMonthlySummary("2025-01"));
+            repository.add(new Expense(LocalDate.of(2025, 1, 15), "Food", 10.0, "cache check"));
+            String[] changedSummary = captureOutput(() -> handler.handleMonthlySummary("2025-01"));
+            repository.clear();
+            repository.addAll(expenses);
+            assert Arrays.equals(firstSummary, cachedSummary) && !Arrays.equals(firstSummary, changedSummary)
+                    : "Cached summaries should match, and never be stale";
+            String[] stats = captureOutput(() -> handler.handleStats(Collections.emptyList()));
+            assert String.join("\n", stats).contains("Hits:          1 (") : "stats should count the hit";
+            System.out.println("✓ Summary cache hits, evicts and invalidates on changes");
+            System.out.println();
+
+            // Test 30: latency histograms and metrics dumps
+            System.out.println("Test 30: Metrics");
+            LatencyHistogram latencies = new LatencyHistogram("test.latency");
+            Random latencyRandom = new Random(30);
+            long[] samples = new long[50000];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (long) Math.exp(latencyRandom.nextGaussian() * 2 + 12);
+                latencies.record(samples[i]);
+            }
+            long[] sortedSamples = samples.clone();
+            Arrays.sort(sortedSamples);
+            for (double percent : new double[] { 50, 90, 99, 99.9, 100 }) {
+                long exact = sortedSamples[(int) Math.ceil(percent * samples.length / 100.0) - 1];
+                long approximate = latencies.percentile(percent);
+                assert Math.abs(approximate - exact) <= exact / 100 + 1
+                        : "p" + percent + " should be within 1%: " + approximate + " vs " + exact;
+            }
+            assert latencies.count() == samples.length && latencies.maxNanos() == sortedSamples[samples.length - 1]
+                    : "Count and max should be exact";
+            long rowsBefore = Metrics.counter("csv.rows").sum();
+            long loadsBefore = Metrics.histogram("csv.load").count();
+            loader.loadFromFile("data/expenses.csv");
+            assert Metrics.counter("csv.rows").sum() == rowsBefore + expenses.size()
+                    && Metrics.histogram("csv.load").count() == loadsBefore + 1
+                    : "Loading should be counted and timed";
+            long rejectedBefore = Metrics.counter("csv.rejectedFiles").sum();
+            long parseErrorsBefore = Metrics.counter("csv.parseErrors").sum();
+            try {
+                loader.loadFromFile("data/does-not-exist.csv");
+                assert false : "Loading a missing file should fail";
+            } catch (IOException expected) {
+                // counted as a rejected file
+            }
+            assert Metrics.counter("csv.rejectedFiles").sum() == rejectedBefore + 1
+                    && Metrics.counter("csv.parseErrors").sum() == parseErrorsBefore
+                    && Metrics.histogram("csv.load").count() == loadsBefore + 2
+                    : "A failed load should count as a rejected file and still be timed";
+            long writesBefore = Metrics.histogram("report.write").count();
+            Path reportDir = Files.createTempDirectory("budgetbuddy-report");
+            for (String format : List.of("txt", "html")) {
+                try {
+                    // A directory cannot be opened as a report file
+                    ReportWriterFactory.createReportWriter(format)
+                            .writeReport(reportDir.toString(), new Summarizer(expenses), expenses);
+                    assert false : "Writing a report over a directory should fail";
+                } catch (IOException expected) {
+                    // timed all the same
+                }
+            }
+            Files.delete(reportDir);
+            assert Metrics.histogram("report.write").count() == writesBefore + 2
+                    : "Failed report writes should be timed too";
+            long findsBefore = Metrics.histogram("repository.findBetween").count();
+            repository.findByMonth(YearMonth.of(2025, 2));
+            assert Metrics.histogram("repository.findBetween").count() == findsBefore + 1 : "Queries should be timed";
+            Path jsonDump = Files.createTempFile("metrics", ".json");
+            Path prometheusDump = Files.createTempFile("metrics", ".prom");
+            Metrics.writeTo("json", jsonDump.toString());
+            Metrics.writeTo("prometheus", prometheusDump.toString());
+            String json = new String(Files.readAllBytes(jsonDump), StandardCharsets.UTF_8);
+            String prometheus = new String(Files.readAllBytes(prometheusDump), StandardCharsets.UTF_8);
+            assert json.contains("\"csv.rows\": " + Metrics.counter("csv.rows").sum())
+                    && json.contains("\"summarizer.grandTotal\": {\"count\": ")
+                    : "The JSON dump should have every counter and histogram";
+            assert prometheus.contains("budgetbuddy_csv_load_seconds{quantile=\"0.999\"} ")
+                    && prometheus.contains("budgetbuddy_csv_rows_total " + Metrics.counter("csv.rows").sum())
+                    : "The Prometheus dump should have summaries and counters";
+            Files.delete(jsonDump);
+            Files.delete(prometheusDump);
+            System.out.println("✓ Latency percentiles within 1%; metrics dumped as JSON and Prometheus text");
+            System.out.println();
+
             System.out.println("=== All Tests Passed ===\n");
             System.out.println("Summary of expected totals:");
             System.out.println("  Total entries: 70");
@@ -99,4 +939,19 @@ public class TestHarness {
             System.exit(1);
         }
     }
+
+    /**
+     * Runs an action and returns the lines it printed to System.out.
+     */
+    private static String[] captureOutput(Runnable action) {
+        PrintStream console = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true));
+        try {
+            action.run();
+        } finally {
+            System.setOut(console);
+        }
+        return captured.toString().split("\\R");
+    }
 }
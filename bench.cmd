@@ -0,0 +1,3 @@
+dir /s /b src\*.java src-vector\*.java bench\*.java > bench-sources.txt
+javac -encoding UTF-8 --add-modules jdk.incubator.vector -cp "lib\*" -d out-bench @bench-sources.txt
+java -cp "out-bench;lib\*" org.openjdk.jmh.Main -prof gc -rf json -rff bench-result.json %*
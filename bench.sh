@@ -0,0 +1,8 @@
+#!/bin/sh
+# Builds and runs the JMH benchmarks in bench/.
+# Needs the JMH jars in lib/ (see BENCHMARKS in README.txt).
+# Extra arguments are passed to JMH, e.g.: ./bench.sh SummarizerBenchmark -p rows=10000000
+set -e
+find src src-vector bench -name '*.java' > bench-sources.txt
+javac -encoding UTF-8 --add-modules jdk.incubator.vector -cp "lib/*" -d out-bench @bench-sources.txt
+java -cp "out-bench:lib/*" org.openjdk.jmh.Main -prof gc -rf json -rff bench-result.json "$@"
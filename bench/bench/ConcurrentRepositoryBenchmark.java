@@ -0,0 +1,90 @@
+package bench;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import model.Expense;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import service.ExpenseRepository;
+
+/**
+ * Benchmarks ExpenseRepository with writers adding expenses while readers
+ * take snapshots and read totals, in each storage mode.
+ * The repository keeps growing during the run, so the heap bounds how long
+ * a trial can last.
+ */
+@State(Scope.Group)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ConcurrentRepositoryBenchmark {
+
+    @Param({ "100000" })
+    public int rows;
+
+    @Param({ "16" })
+    public int categories;
+
+    @Param({ "list", "columnar" })
+    public String storageMode;
+
+    private ExpenseRepository repository;
+    private List<Expense> feed;
+    private YearMonth month;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = ExpenseRepository.getInstance();
+        repository.clear();
+        repository.setStorageMode(storageMode);
+        feed = new SyntheticExpenses(categories, 42).generate(rows);
+        repository.addAll(feed);
+        month = YearMonth.from(SyntheticExpenses.START.plusDays(SyntheticExpenses.DAYS / 2));
+    }
+
+    /**
+     * Per-thread position in the feed, so writers do not share a counter.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @Group("ingest")
+    @GroupThreads(2)
+    public void add(Cursor cursor) {
+        repository.add(feed.get(cursor.next));
+        cursor.next = (cursor.next + 1) % feed.size();
+    }
+
+    @Benchmark
+    @Group("ingest")
+    @GroupThreads(1)
+    public int findAll() {
+        return repository.findAll().size();
+    }
+
+    @Benchmark
+    @Group("ingest")
+    @GroupThreads(1)
+    public Map<String, Long> categoryTotals() {
+        return repository.categoryTotals(month);
+    }
+}
@@ -0,0 +1,89 @@
+package bench;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import model.Expense;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import service.ExpenseRepository;
+import service.SumKernelsFactory;
+import service.Summarizer;
+
+/**
+ * Benchmarks Summarizer totals computed row by row over Expense objects
+ * ("rows") against the scalar and vector SumKernels over a columnar snapshot.
+ * The "vector" case needs src-vector compiled (bench.sh does this).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "--add-modules=jdk.incubator.vector" })
+public class KernelBenchmark {
+
+    @Param({ "1000000", "10000000" })
+    public int rows;
+
+    @Param({ "16", "256" })
+    public int categories;
+
+    @Param({ "rows", "scalar", "vector" })
+    public String kernels;
+
+    private Summarizer summarizer;
+    private YearMonth month;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Expense> expenses = new SyntheticExpenses(categories, 42).generate(rows);
+        if (kernels.equals("rows")) {
+            summarizer = new Summarizer(expenses);
+        } else {
+            // Each fork is a new JVM, so the default kernels are picked here
+            System.setProperty("budgetbuddy.kernels", kernels);
+            if (!SumKernelsFactory.getDefault().name().equals(kernels)) {
+                throw new IllegalStateException("Could not select " + kernels + " kernels");
+            }
+            ExpenseRepository repository = ExpenseRepository.getInstance();
+            repository.setStorageMode("columnar");
+            repository.clear();
+            repository.addAll(expenses);
+            summarizer = new Summarizer(repository.findAll());
+        }
+
+        month = YearMonth.from(SyntheticExpenses.START.plusDays(SyntheticExpenses.DAYS / 2));
+    }
+
+    @Benchmark
+    public long grandTotal() {
+        return summarizer.grandTotal();
+    }
+
+    @Benchmark
+    public long totalForMonth() {
+        return summarizer.totalForMonth(month);
+    }
+
+    @Benchmark
+    public Map<String, Long> categoryTotals() {
+        return summarizer.categoryTotals(null);
+    }
+
+    @Benchmark
+    public Map<String, Long> monthCategoryTotals() {
+        return summarizer.categoryTotals(month);
+    }
+}
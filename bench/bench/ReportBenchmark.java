@@ -0,0 +1,64 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import report.ReportWriterFactory;
+import service.ExpenseRepository;
+
+/**
+ * Benchmarks writing full txt and html reports for a repository.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ReportBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int rows;
+
+    @Param({ "16", "256" })
+    public int categories;
+
+    @Param({ "txt", "html" })
+    public String format;
+
+    private ExpenseRepository repository;
+    private Path reportFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        repository = ExpenseRepository.getInstance();
+        repository.clear();
+        repository.addAll(new SyntheticExpenses(categories, 42).generate(rows));
+        reportFile = Files.createTempFile("budgetbuddy-bench", "." + format);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(reportFile);
+    }
+
+    @Benchmark
+    public void writeReport() throws IOException {
+        // A new writer per call, as CommandHandler.handleExport does
+        ReportWriterFactory.createReportWriter(format).writeReport(reportFile.toString(), repository);
+    }
+}
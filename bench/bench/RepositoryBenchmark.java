@@ -0,0 +1,69 @@
+package bench;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import model.Expense;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import service.ExpenseRepository;
+
+/**
+ * Benchmarks ExpenseRepository queries, in each storage mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class RepositoryBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int rows;
+
+    @Param({ "16" })
+    public int categories;
+
+    @Param({ "list", "columnar" })
+    public String storageMode;
+
+    private ExpenseRepository repository;
+    private YearMonth month;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = ExpenseRepository.getInstance();
+        repository.clear();
+        repository.setStorageMode(storageMode);
+        repository.addAll(new SyntheticExpenses(categories, 42).generate(rows));
+        month = YearMonth.from(SyntheticExpenses.START.plusDays(SyntheticExpenses.DAYS / 2));
+    }
+
+    @Benchmark
+    public List<Expense> findByMonth() {
+        return repository.findByMonth(month);
+    }
+
+    @Benchmark
+    public List<Expense> findBetween() {
+        LocalDate from = month.atDay(1);
+        return repository.findBetween(from, from.plusDays(90));
+    }
+
+    @Benchmark
+    public List<Expense> findAll() {
+        return repository.findAll();
+    }
+}
@@ -0,0 +1,102 @@
+package bench;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import model.Expense;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import service.ExpenseRepository;
+import service.QuantileSketch;
+import service.Summarizer;
+
+/**
+ * Benchmarks Summarizer aggregations over an expense list and over the
+ * repository's pre-computed aggregates. The list is summed serially or in
+ * parallel chunks depending on parallelThreshold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SummarizerBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int rows;
+
+    @Param({ "16", "256" })
+    public int categories;
+
+    @Param({ "2147483647", "100000" })
+    public int parallelThreshold;
+
+    private Summarizer listSummarizer;
+    private Summarizer repositorySummarizer;
+    private YearMonth month;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Expense> expenses = new SyntheticExpenses(categories, 42).generate(rows);
+        listSummarizer = new Summarizer(expenses, parallelThreshold);
+
+        ExpenseRepository repository = ExpenseRepository.getInstance();
+        repository.clear();
+        repository.addAll(expenses);
+        repositorySummarizer = new Summarizer(repository);
+
+        month = YearMonth.from(SyntheticExpenses.START.plusDays(SyntheticExpenses.DAYS / 2));
+    }
+
+    @Benchmark
+    public Map<YearMonth, Long> monthlyTotals() {
+        return listSummarizer.monthlyTotals();
+    }
+
+    @Benchmark
+    public Map<String, Long> categoryTotals() {
+        return listSummarizer.categoryTotals(null);
+    }
+
+    @Benchmark
+    public long grandTotal() {
+        return listSummarizer.grandTotal();
+    }
+
+    @Benchmark
+    public long totalForMonth() {
+        return listSummarizer.totalForMonth(month);
+    }
+
+    @Benchmark
+    public List<Expense> topExpenses() {
+        return listSummarizer.topExpenses(month);
+    }
+
+    @Benchmark
+    public Map<String, QuantileSketch> categoryQuantiles() {
+        return listSummarizer.categoryQuantiles(null);
+    }
+
+    @Benchmark
+    public Map<YearMonth, Long> repositoryMonthlyTotals() {
+        return repositorySummarizer.monthlyTotals();
+    }
+
+    @Benchmark
+    public Map<String, Long> repositoryCategoryTotals() {
+        return repositorySummarizer.categoryTotals(null);
+    }
+}
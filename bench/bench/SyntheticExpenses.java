@@ -0,0 +1,130 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import model.Expense;
+
+/**
+ * Generates reproducible synthetic expense data for benchmarks.
+ * Rows are spread over a fixed date span in chronological order, with a
+ * configurable number of distinct categories.
+ */
+public class SyntheticExpenses {
+    /** First date of generated data. */
+    public static final LocalDate START = LocalDate.of(2020, 1, 1);
+    /** Number of days covered by generated data (five years). */
+    public static final int DAYS = 5 * 365;
+
+    private static final String[] NOTE_WORDS = {
+        "Lunch", "at", "cafe", "Uber", "to", "office", "Groceries", "supermarket",
+        "Movie", "tickets", "Electricity", "bill", "Pharmacy", "Gift", "for", "friends"
+    };
+
+    private final String[] categories;
+    private final SplittableRandom random;
+
+    /**
+     * Creates a generator.
+     *
+     * @param categories number of distinct categories
+     * @param seed       random seed, so the same data can be generated again
+     */
+    public SyntheticExpenses(int categories, long seed) {
+        this.categories = new String[categories];
+        for (int i = 0; i < categories; i++) {
+            this.categories[i] = "Category" + i;
+        }
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Writes a synthetic CSV file.
+     * Usage: SyntheticExpenses &lt;file&gt; &lt;rows&gt; [categories] [seed]
+     *
+     * @param args command-line arguments
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticExpenses <file> <rows> [categories] [seed]");
+            System.exit(1);
+        }
+        long rows = Long.parseLong(args[1]);
+        int categories = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        new SyntheticExpenses(categories, seed).writeCsv(Path.of(args[0]), rows);
+        System.out.println("Wrote " + rows + " rows to " + args[0]);
+    }
+
+    /**
+     * Generates an expense list in memory.
+     *
+     * @param rows number of expenses
+     * @return list of expenses in chronological order
+     */
+    public List<Expense> generate(int rows) {
+        List<Expense> expenses = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            expenses.add(new Expense(date(i, rows), category(), amount(), note()));
+        }
+        return expenses;
+    }
+
+    /**
+     * Writes a CSV file in the format read by CsvLoader, with a header line.
+     *
+     * @param file output file
+     * @param rows number of expenses
+     * @throws IOException if the file cannot be written
+     */
+    public void writeCsv(Path file, long rows) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, Charset.defaultCharset())) {
+            writer.write("date;category;amount;notes\n");
+            for (long i = 0; i < rows; i++) {
+                long cents = Math.round(amount() * 100);
+                writer.write(date(i, rows).toString());
+                writer.write(';');
+                writer.write(category());
+                writer.write(';');
+                writer.write(Long.toString(cents / 100));
+                writer.write('.');
+                writer.write(cents % 100 < 10 ? "0" + cents % 100 : Long.toString(cents % 100));
+                writer.write(';');
+                writer.write(note());
+                writer.write('\n');
+            }
+        }
+    }
+
+    private LocalDate date(long index, long rows) {
+        return START.plusDays(index * DAYS / Math.max(rows, 1));
+    }
+
+    private String category() {
+        return categories[random.nextInt(categories.length)];
+    }
+
+    private double amount() {
+        return random.nextInt(100_000) / 100.0;
+    }
+
+    private String note() {
+        int words = 1 + random.nextInt(4);
+        StringBuilder note = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                note.append(' ');
+            }
+            note.append(NOTE_WORDS[random.nextInt(NOTE_WORDS.length)]);
+        }
+        return note.toString();
+    }
+}
@@ -1,4 +1,4 @@
-dir /s /b *.java > sources.txt
+dir /s /b src\*.java TestHarness.java > sources.txt
 javac -d out @sources.txt
 java -cp out TestHarness
 java -cp out Main data/expenses.csv
@@ -0,0 +1,100 @@
+package service;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SumKernels on the jdk.incubator.vector API. Amounts are summed in the
+ * preferred long vector shape, and date ranges become lane masks, so the
+ * sums have no branches. Per-category sums walk the set lanes of each mask
+ * and add to the totals one row at a time: scatter by category id is not
+ * intrinsified on JDK 17 and was slower than plain indexed adds. Rows left
+ * over after the last full vector are summed one by one.
+ * Loaded by SumKernelsFactory; needs --add-modules jdk.incubator.vector.
+ */
+class VectorSumKernels implements SumKernels {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.length() * Integer.SIZE));
+    private static final int LANES = LONGS.length();
+
+    @Override
+    public String name() {
+        return "vector";
+    }
+
+    @Override
+    public long sum(long[] amountCents, int count) {
+        LongVector totals = LongVector.zero(LONGS);
+        int bound = LONGS.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            totals = totals.add(LongVector.fromArray(LONGS, amountCents, i));
+        }
+        long total = totals.reduceLanes(VectorOperators.ADD);
+        for (; i < count; i++) {
+            total += amountCents[i];
+        }
+        return total;
+    }
+
+    @Override
+    public long sumBetween(int[] epochDays, long[] amountCents, int count, int fromDay, int toDay) {
+        LongVector totals = LongVector.zero(LONGS);
+        int bound = LONGS.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            VectorMask<Long> inRange = between(epochDays, i, fromDay, toDay);
+            totals = totals.add(LongVector.fromArray(LONGS, amountCents, i), inRange);
+        }
+        long total = totals.reduceLanes(VectorOperators.ADD);
+        for (; i < count; i++) {
+            int day = epochDays[i];
+            if (day >= fromDay && day <= toDay) {
+                total += amountCents[i];
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void sumByCategory(int[] categoryIds, long[] amountCents, int count, long[] totals, long[] counts) {
+        for (int i = 0; i < count; i++) {
+            int categoryId = categoryIds[i];
+            totals[categoryId] += amountCents[i];
+            counts[categoryId]++;
+        }
+    }
+
+    @Override
+    public void sumByCategoryBetween(int[] epochDays, int[] categoryIds, long[] amountCents, int count,
+            int fromDay, int toDay, long[] totals, long[] counts) {
+        int bound = LONGS.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += LANES) {
+            long lanes = between(epochDays, i, fromDay, toDay).toLong();
+            while (lanes != 0) {
+                int row = i + Long.numberOfTrailingZeros(lanes);
+                totals[categoryIds[row]] += amountCents[row];
+                counts[categoryIds[row]]++;
+                lanes &= lanes - 1;
+            }
+        }
+        for (; i < count; i++) {
+            if (epochDays[i] >= fromDay && epochDays[i] <= toDay) {
+                totals[categoryIds[i]] += amountCents[i];
+                counts[categoryIds[i]]++;
+            }
+        }
+    }
+
+    private static VectorMask<Long> between(int[] epochDays, int offset, int fromDay, int toDay) {
+        LongVector days = (LongVector) IntVector.fromArray(INTS, epochDays, offset)
+                .convertShape(VectorOperators.I2L, LONGS, 0);
+        return days.compare(VectorOperators.GE, fromDay).and(days.compare(VectorOperators.LE, toDay));
+    }
+}
@@ -1,5 +1,6 @@
 package cli;
 
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
@@ -55,6 +56,8 @@ public class Cli {
         String command = parts[0].toLowerCase();
 
         try {
+            commandHandler.handleFollowUpdates();
+
             switch (command) {
                 case "load":
                     if (parts.length < 2) {
@@ -64,13 +67,43 @@ public class Cli {
                     commandHandler.handleLoad(parts[1]);
                     break;
 
+                case "save-snapshot":
+                    commandHandler.handleSaveSnapshot(parts.length > 1 ? parts[1] : null);
+                    break;
+
+                case "load-snapshot":
+                    if (parts.length < 2) {
+                        System.err.println("Usage: load-snapshot <file>");
+                        break;
+                    }
+                    commandHandler.handleLoadSnapshot(parts[1]);
+                    break;
+
+                case "add":
+                    String[] fields = line.split("\\s+", 5);
+                    if (fields.length < 4) {
+                        System.err.println("Usage: add <YYYY-MM-DD> <category> <amount> [notes]");
+                        break;
+                    }
+                    commandHandler.handleAdd(fields[1], fields[2], fields[3], fields.length > 4 ? fields[4] : "");
+                    break;
+
+                case "compact":
+                    commandHandler.handleCompact();
+                    break;
+
+                case "follow":
+                    commandHandler.handleFollow(parts.length > 1 ? parts[1] : null);
+                    break;
+
                 case "list":
-                    commandHandler.handleList();
+                    commandHandler.handleList(Arrays.asList(parts).subList(1, parts.length));
                     break;
 
                 case "summary":
                     if (parts.length < 3) {
-                        System.err.println("Usage: summary month <YYYY-MM> or summary category <YYYY-MM|all>");
+                        System.err.println("Usage: summary month <YYYY-MM>, summary category <YYYY-MM|all>"
+                                + " or summary range <from> <to>");
                         break;
                     }
                     String summaryType = parts[1].toLowerCase();
@@ -80,11 +113,25 @@ public class Cli {
                         commandHandler.handleMonthlySummary(param);
                     } else if (summaryType.equals("category")) {
                         commandHandler.handleCategorySummary(param);
+                    } else if (summaryType.equals("range")) {
+                        if (parts.length < 4) {
+                            System.err.println("Usage: summary range <from> <to>");
+                            break;
+                        }
+                        commandHandler.handleRangeSummary(param, parts[3]);
                     } else {
                         System.err.println("Unknown summary type: " + summaryType);
                     }
                     break;
 
+                case "query":
+                    commandHandler.handleQuery(Arrays.asList(parts).subList(1, parts.length));
+                    break;
+
+                case "search":
+                    commandHandler.handleSearch(Arrays.asList(parts).subList(1, parts.length));
+                    break;
+
                 case "export":
                     if (parts.length < 3) {
                         System.err.println("Usage: export txt <outpath> or export html <outpath>");
@@ -96,11 +143,43 @@ public class Cli {
                     commandHandler.handleExport(exportType, outputPath);
                     break;
 
+                case "batch-export":
+                    if (parts.length < 2) {
+                        System.err.println("Usage: batch-export <jobfile>");
+                        break;
+                    }
+                    commandHandler.handleBatchExport(parts[1]);
+                    break;
+
+                case "stream":
+                    if (parts.length >= 5 && parts[2].equalsIgnoreCase("summary")) {
+                        commandHandler.handleStreamSummary(parts[1], parts[3].toLowerCase(), parts[4]);
+                    } else if (parts.length >= 5 && parts[2].equalsIgnoreCase("export")) {
+                        commandHandler.handleStreamExport(parts[1], parts[3].toLowerCase(), parts[4]);
+                    } else {
+                        System.err.println("Usage: stream <file> summary <month|category> <YYYY-MM|all>"
+                                + " or stream <file> export <txt|html> <outpath>");
+                    }
+                    break;
+
+                case "storage":
+                    commandHandler.handleStorage(parts.length > 1 ? parts[1] : null);
+                    break;
+
+                case "loader":
+                    commandHandler.handleLoader(parts.length > 1 ? parts[1] : null);
+                    break;
+
+                case "stats":
+                    commandHandler.handleStats(Arrays.asList(parts).subList(1, parts.length));
+                    break;
+
                 case "help":
                     commandHandler.handleHelp();
                     break;
 
                 case "exit":
+                    commandHandler.handleExit();
                     System.out.println("Bye.");
                     running = false;
                     break;
@@ -1,15 +1,39 @@
 package cli;
 
+import io.CsvFollower;
 import io.CsvLoader;
+import io.ExpenseJournal;
+import io.ExpenseSnapshot;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
 import model.Expense;
+import query.Aggregate;
+import query.GroupKey;
+import query.Query;
+import query.QueryEngine;
+import query.QueryResult;
+import report.BatchExporter;
+import report.ExportJob;
 import report.ReportWriter;
 import report.ReportWriterFactory;
 import service.ExpenseRepository;
+import service.QuantileSketch;
 import service.Summarizer;
+import service.SummaryAccumulator;
+import service.SummaryCache;
 import util.DateUtils;
 import util.TextUtils;
 
@@ -17,7 +41,25 @@ import util.TextUtils;
  * Handles CLI commands and dispatches to appropriate services.
  */
 public class CommandHandler {
+    // Matches printed by "search"; the count and total cover all of them
+    private static final int SEARCH_RESULTS_SHOWN = 50;
+    // Rows per "list" page when only --page is given
+    private static final int LIST_PAGE_SIZE = 50;
+    private static final int LIST_BUFFER_SIZE = 1 << 16;
+
     private final ExpenseRepository mainRepository;
+    // Results of "summary" commands, reused until the repository changes
+    private final SummaryCache summaryCache =
+            new SummaryCache(Integer.getInteger("budgetbuddy.summaryCache.size", 64));
+    // CSV file the repository was last loaded from, recorded in snapshots
+    private String loadedFile;
+    // Journal of expenses added on top of loadedFile, opened on first use
+    private ExpenseJournal journal;
+    private final long compactEvery = Long.getLong("budgetbuddy.journal.compactEvery", 10000);
+    // File the metrics are written to on exit (JSON if it ends in .json, else Prometheus text)
+    private final String metricsFile = System.getProperty("budgetbuddy.metrics.file");
+    // Growing CSV file being followed, if any
+    private CsvFollower follower;
 
     /**
      * Creates a CommandHandler with a primary repository.
@@ -34,6 +76,21 @@ public class CommandHandler {
      * @param filePath the file to load
      */
     public void handleLoad(String filePath) {
+        stopFollowing();
+        String snapshotPath = ExpenseSnapshot.defaultPath(filePath);
+        try {
+            if (ExpenseSnapshot.isUpToDate(snapshotPath, filePath)) {
+                long journaledInSnapshot = loadSnapshot(snapshotPath);
+                if (setLoadedFile(filePath, journaledInSnapshot)) {
+                    return;
+                }
+                System.err.println("Ignoring snapshot " + snapshotPath
+                        + ": it holds journaled entries that are no longer in the journal");
+            }
+        } catch (IOException e) {
+            System.err.println("Ignoring snapshot " + snapshotPath + ": " + e.getMessage());
+        }
+
         try {
             CsvLoader loader = CsvLoader.getInstance();
             List<Expense> expenses = loader.loadFromFile(filePath);
@@ -42,6 +99,7 @@ public class CommandHandler {
             mainRepository.addAll(expenses);
 
             System.out.println("Loaded " + expenses.size() + " entries.");
+            setLoadedFile(filePath, 0);
         } catch (IOException e) {
             System.err.println("Error loading file: " + e.getMessage());
         } catch (IllegalArgumentException e) {
@@ -50,56 +108,417 @@ public class CommandHandler {
     }
 
     /**
-     * Lists all expenses.
+     * Records the file the repository was loaded from and replays its journal,
+     * if it has one.
+     *
+     * @param filePath      the CSV file
+     * @param alreadyLoaded journal records already in the repository (from a snapshot), not replayed again
+     * @return false, with nothing replayed, if the journal has fewer records than alreadyLoaded
      */
-    public void handleList() {
-        List<Expense> expenses = mainRepository.findAll();
+    private boolean setLoadedFile(String filePath, long alreadyLoaded) {
+        closeJournal();
+        loadedFile = filePath;
+        if (!ExpenseJournal.exists(filePath)) {
+            return alreadyLoaded == 0;
+        }
+        try {
+            journal = ExpenseJournal.open(filePath);
+            List<Expense> journaled = new ArrayList<>();
+            journal.replay(journaled::add);
+            if (journaled.size() < alreadyLoaded) {
+                return false;
+            }
+            List<Expense> replayed = journaled.subList((int) alreadyLoaded, journaled.size());
+            mainRepository.addAll(replayed);
+            if (!replayed.isEmpty()) {
+                System.out.println("Replayed " + replayed.size() + " journaled entries from "
+                        + ExpenseJournal.defaultPath(filePath));
+            }
+        } catch (IOException e) {
+            System.err.println("Error replaying journal: " + e.getMessage());
+            closeJournal();
+        }
+        return true;
+    }
 
-        if (expenses.isEmpty()) {
-            System.out.println("No expenses loaded.");
+    private void closeJournal() {
+        if (journal == null) {
             return;
         }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        }
+        journal = null;
+    }
 
-        System.out.println("\nAll Expenses:");
-        System.out.println(TextUtils.separator(80));
+    /**
+     * Adds a single expense. When the expenses were loaded from a CSV file,
+     * the expense is first appended to that file's journal, so it is replayed
+     * on the next load; the journal is compacted into the CSV file once it
+     * holds "budgetbuddy.journal.compactEvery" (default 10000) entries.
+     *
+     * @param dateStr     the date (YYYY-MM-DD)
+     * @param category    the category
+     * @param amountStr   the amount
+     * @param notes       the notes, or an empty string
+     */
+    public void handleAdd(String dateStr, String category, String amountStr, String notes) {
+        Expense expense;
+        try {
+            long amountCents;
+            try {
+                amountCents = TextUtils.parseAmount(amountStr);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid amount format: " + amountStr, e);
+            }
+            expense = Expense.ofCents(DateUtils.parseDate(dateStr), category, amountCents, notes);
+            ExpenseJournal.validate(expense);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            return;
+        }
 
-        for (Expense expense : expenses) {
-            System.out.println(expense);
+        if (loadedFile == null) {
+            mainRepository.add(expense);
+            System.out.println("Added 1 entry (in memory only; no CSV file loaded).");
+            return;
         }
+        try {
+            if (journal == null) {
+                journal = ExpenseJournal.open(loadedFile);
+            }
+            journal.append(expense);
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+            return;
+        }
+        mainRepository.add(expense);
+        System.out.println("Added 1 entry.");
 
-        System.out.println(TextUtils.separator(80));
-        System.out.println("Total entries: " + expenses.size());
+        if (journal.size() >= compactEvery) {
+            handleCompact();
+        }
     }
 
     /**
-     * Shows monthly summary for a specific month.
+     * Moves journaled expenses into the loaded CSV file and empties the journal.
+     */
+    public void handleCompact() {
+        if (loadedFile == null) {
+            System.err.println("No CSV file loaded.");
+            return;
+        }
+        try {
+            if (journal == null) {
+                if (!ExpenseJournal.exists(loadedFile)) {
+                    System.out.println("Nothing to compact.");
+                    return;
+                }
+                journal = ExpenseJournal.open(loadedFile);
+            }
+            long compacted = journal.compact();
+            System.out.println("Compacted " + compacted + " journaled entries into " + loadedFile);
+        } catch (IOException e) {
+            System.err.println("Error compacting journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Syncs and closes the journal before the program exits, and writes the
+     * metrics if -Dbudgetbuddy.metrics.file is set.
+     */
+    public void handleExit() {
+        stopFollowing();
+        closeJournal();
+        if (metricsFile != null) {
+            try {
+                Metrics.writeTo(metricsFile.endsWith(".json") ? "json" : "prometheus", metricsFile);
+            } catch (IOException e) {
+                System.err.println("Error writing metrics: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Loads a CSV file and keeps following it: lines appended to the file
+     * later are parsed and added to the repository, without re-reading what
+     * was already loaded. A partially written last line waits until it is
+     * complete. Invalid lines are reported and skipped.
      *
-     * @param monthStr the month in YYYY-MM format
+     * @param filePath the CSV file to follow, "stop" to stop following,
+     *                 or null to show what is being followed
      */
-    public void handleMonthlySummary(String monthStr) {
+    public void handleFollow(String filePath) {
+        if (filePath == null) {
+            System.out.println(follower != null ? "Following: " + follower.getFilePath() : "Not following a file.");
+            return;
+        }
+        if (filePath.equalsIgnoreCase("stop")) {
+            if (follower == null) {
+                System.out.println("Not following a file.");
+                return;
+            }
+            System.out.println("Stopped following " + follower.getFilePath());
+            stopFollowing();
+            return;
+        }
+
+        stopFollowing();
         try {
-            YearMonth yearMonth = DateUtils.parseYearMonth(monthStr);
+            follower = new CsvFollower(filePath);
+        } catch (IOException e) {
+            System.err.println("Error following file: " + e.getMessage());
+            return;
+        }
+        // The followed file is not a journal base: compaction would append to it
+        closeJournal();
+        loadedFile = null;
+        applyFollowUpdates(true);
+    }
 
-            List<Expense> monthExpenses = mainRepository.findByMonth(yearMonth);
-            Summarizer summarizer = new Summarizer(monthExpenses);
+    /**
+     * Adds any lines appended to the followed file since the last command.
+     * Called before each command, so commands always see a consistent repository.
+     */
+    public void handleFollowUpdates() {
+        if (follower != null) {
+            applyFollowUpdates(false);
+        }
+    }
 
-            System.out.println("\nMonth: " + monthStr);
-            System.out.println(TextUtils.separator(60));
+    private void applyFollowUpdates(boolean initial) {
+        CsvFollower.Update update;
+        while ((update = follower.poll()) != null) {
+            if (update.isRestart()) {
+                mainRepository.clear();
+            }
+            mainRepository.addAll(update.getExpenses());
+            for (String error : update.getErrors()) {
+                System.err.println("Error parsing CSV: " + error);
+            }
+
+            if (initial) {
+                System.out.println("Loaded " + update.getExpenses().size() + " entries from " + follower.getFilePath()
+                        + "; following new lines ('follow stop' to stop)");
+                initial = false;
+            } else if (update.isRestart()) {
+                System.out.println(follower.getFilePath() + " was truncated or replaced; reloaded "
+                        + update.getExpenses().size() + " entries");
+            } else if (!update.getExpenses().isEmpty()) {
+                System.out.println("Added " + update.getExpenses().size() + " new entries from "
+                        + follower.getFilePath());
+            }
+        }
+    }
+
+    private void stopFollowing() {
+        if (follower == null) {
+            return;
+        }
+        try {
+            follower.close();
+        } catch (IOException e) {
+            System.err.println("Error stopping follow: " + e.getMessage());
+        }
+        follower = null;
+    }
 
-            if (monthExpenses.isEmpty()) {
-                System.out.println("No expenses found for this month.");
+    /**
+     * Saves the loaded expenses to a binary snapshot, recording the CSV file
+     * they were loaded from so the snapshot goes out of date when it changes.
+     * Neither the CSV file nor its journal is modified: the snapshot records
+     * how many journaled expenses it holds, and loading it replays only the
+     * journal records after those.
+     *
+     * @param snapshotPath the snapshot file, or null for the loaded file's default snapshot
+     */
+    public void handleSaveSnapshot(String snapshotPath) {
+        if (snapshotPath == null) {
+            if (loadedFile == null) {
+                System.err.println("No CSV file loaded. Usage: save-snapshot <file>");
                 return;
             }
+            snapshotPath = ExpenseSnapshot.defaultPath(loadedFile);
+        }
+        try {
+            // Journaled entries are the last ones added; the journal keeps them too
+            long journaled = journal != null ? journal.size() : 0;
+            ExpenseSnapshot.save(snapshotPath, mainRepository.findAll(), loadedFile, journaled);
+            System.out.println("Saved " + mainRepository.count() + " entries to snapshot " + snapshotPath);
+        } catch (IOException e) {
+            System.err.println("Error saving snapshot: " + e.getMessage());
+        }
+    }
 
-            double total = summarizer.grandTotal();
-            System.out.println("Total: " + TextUtils.formatAmount(total));
+    /**
+     * Loads expenses from a binary snapshot, replacing the loaded expenses.
+     *
+     * @param snapshotPath the snapshot file
+     */
+    public void handleLoadSnapshot(String snapshotPath) {
+        stopFollowing();
+        try {
+            loadSnapshot(snapshotPath);
+            closeJournal();
+            loadedFile = null;
+        } catch (IOException e) {
+            System.err.println("Error loading snapshot: " + e.getMessage());
+        }
+    }
 
-            System.out.println("\nCategory totals:");
-            Map<String, Double> categoryTotals = summarizer.categoryTotals(null);
-            for (Map.Entry<String, Double> entry : categoryTotals.entrySet()) {
-                System.out.println("  " + entry.getKey() + ": " + TextUtils.formatAmount(entry.getValue()));
+    /**
+     * Replaces the loaded expenses with a snapshot's.
+     *
+     * @return how many of them came from the source file's journal
+     */
+    private long loadSnapshot(String snapshotPath) throws IOException {
+        try (ExpenseSnapshot snapshot = ExpenseSnapshot.open(snapshotPath)) {
+            mainRepository.clear();
+            long count = snapshot.readBlocks(mainRepository::addAll);
+            System.out.println("Loaded " + count + " entries from snapshot " + snapshotPath);
+            return snapshot.getJournalRows();
+        }
+    }
+
+    /**
+     * Lists expenses, optionally one page at a time and only those in a
+     * date range or in given categories. Rows are read straight from the
+     * repository's views (through its indexes when filtering), without
+     * copying, and written through one buffered stream.
+     *
+     * @param args options: "--page <n>", "--limit <n>", "--from <date>",
+     *             "--to <date>" and "--category <name>[,<name>...]"
+     */
+    public void handleList(List<String> args) {
+        LocalDate from;
+        LocalDate to;
+        List<String> categories;
+        int page;
+        int limit;
+        try {
+            Map<String, String> options = parseOptions(args, null,
+                    "--page", "--limit", "--from", "--to", "--category");
+            from = options.containsKey("--from") ? DateUtils.parseDate(options.get("--from")) : null;
+            to = options.containsKey("--to") ? DateUtils.parseDate(options.get("--to")) : null;
+            categories = options.containsKey("--category") ? Arrays.asList(options.get("--category").split(",")) : null;
+            page = options.containsKey("--page") ? parsePositive(options, "--page") : 1;
+            limit = options.containsKey("--limit") ? parsePositive(options, "--limit")
+                    : options.containsKey("--page") ? LIST_PAGE_SIZE
+                    : Integer.MAX_VALUE;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            return;
+        }
+
+        boolean filtered = from != null || to != null || categories != null;
+        List<Expense> expenses = filtered
+                ? mainRepository.findMatching(null, categories, from, to)
+                : mainRepository.findAll();
+
+        if (expenses.isEmpty()) {
+            System.out.println(filtered ? "No matching expenses." : "No expenses loaded.");
+            return;
+        }
+        int pages = (int) ((expenses.size() + (long) limit - 1) / limit);
+        if (page > pages) {
+            System.err.println("Error: Page " + page + " is past the last page (" + pages + ")");
+            return;
+        }
+        int first = (page - 1) * limit;
+        int last = (int) Math.min(expenses.size(), (long) first + limit);
+
+        // Autoflush is off, so rows reach System.out in large writes
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, LIST_BUFFER_SIZE), false);
+        out.println(filtered ? "\nMatching Expenses:" : "\nAll Expenses:");
+        out.println(TextUtils.separator(80));
+
+        String lineSeparator = System.lineSeparator();
+        StringBuilder text = new StringBuilder(LIST_BUFFER_SIZE);
+        for (int i = first; i < last; i++) {
+            expenses.get(i).appendTo(text);
+            text.append(lineSeparator);
+            if (text.length() >= LIST_BUFFER_SIZE / 2) {
+                out.append(text);
+                text.setLength(0);
             }
+        }
+        out.append(text);
 
+        out.println(TextUtils.separator(80));
+        out.println("Total entries: " + expenses.size());
+        if (limit < expenses.size()) {
+            out.println("Page " + page + " of " + pages + " (entries " + (first + 1) + "-" + last + ")");
+        }
+        out.flush();
+    }
+
+    /**
+     * Splits command arguments into "--name value" options and other words.
+     *
+     * @param args    the arguments
+     * @param words   receives the arguments that are not options, or null if there must be none
+     * @param allowed the option names accepted
+     * @return option values by name, in the order given
+     * @throws IllegalArgumentException if an option is unknown or has no value, or a word is not allowed
+     */
+    private static Map<String, String> parseOptions(List<String> args, List<String> words, String... allowed) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (!arg.startsWith("--")) {
+                if (words == null) {
+                    throw new IllegalArgumentException("Unexpected argument: " + arg
+                            + ". Options: " + String.join(", ", allowed));
+                }
+                words.add(arg);
+                continue;
+            }
+            String name = arg.toLowerCase();
+            if (!Arrays.asList(allowed).contains(name)) {
+                throw new IllegalArgumentException("Unknown option: " + arg + ". Options: " + String.join(", ", allowed));
+            }
+            if (i + 1 >= args.size()) {
+                throw new IllegalArgumentException("Missing value after " + arg);
+            }
+            // A repeated option adds to the earlier values, as for --category a --category b
+            options.merge(name, args.get(++i), (earlier, value) -> earlier + "," + value);
+        }
+        return options;
+    }
+
+    private static int parsePositive(Map<String, String> options, String name) {
+        String value = options.get(name);
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid value for " + name + ": " + value + ". Expected a positive number");
+    }
+
+    /**
+     * Shows monthly summary for a specific month.
+     *
+     * @param monthStr the month in YYYY-MM format
+     */
+    public void handleMonthlySummary(String monthStr) {
+        try {
+            YearMonth yearMonth = DateUtils.parseYearMonth(monthStr);
+
+            MonthSummary summary = summaryCache.get("month", yearMonth.toString(), mainRepository.version(), () -> {
+                Summarizer summarizer = new Summarizer(mainRepository);
+                return new MonthSummary(mainRepository.countForMonth(yearMonth) == 0,
+                        summarizer.totalForMonth(yearMonth), summarizer.categoryTotals(yearMonth),
+                        summarizer.topExpenses(yearMonth));
+            });
+
+            printMonthlySummary(monthStr, summary.empty, summary.total, summary.categoryTotals,
+                    summary.topExpenses);
         } catch (IllegalArgumentException e) {
             System.err.println("Error: " + e.getMessage());
         }
@@ -114,37 +533,233 @@ public class CommandHandler {
         try {
             YearMonth yearMonth = monthStr.equalsIgnoreCase("all") ? null : DateUtils.parseYearMonth(monthStr);
 
-            Summarizer summarizer = new Summarizer(mainRepository.findAll());
+            String period = yearMonth != null ? yearMonth.toString() : "all";
+            CategorySummary summary = summaryCache.get("category", period, mainRepository.version(), () -> {
+                Summarizer summarizer = new Summarizer(mainRepository);
+                return new CategorySummary(summarizer.categoryTotals(yearMonth),
+                        summarizer.categoryQuantiles(yearMonth));
+            });
 
-            Map<String, Double> categoryTotals = summarizer.categoryTotals(yearMonth);
+            printCategorySummary(monthStr, yearMonth, summary.categoryTotals, summary.quantiles);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
 
-            String period = yearMonth != null ? "Month: " + monthStr : "All Time";
-            System.out.println("\nCategory Summary - " + period);
+    /**
+     * Shows a summary for an arbitrary date range.
+     *
+     * @param fromStr the first date in YYYY-MM-DD format (inclusive)
+     * @param toStr   the last date in YYYY-MM-DD format (inclusive)
+     */
+    public void handleRangeSummary(String fromStr, String toStr) {
+        try {
+            LocalDate from = DateUtils.parseDate(fromStr);
+            LocalDate to = DateUtils.parseDate(toStr);
+            if (from.isAfter(to)) {
+                System.err.println("Error: Start date " + fromStr + " is after end date " + toStr);
+                return;
+            }
+
+            RangeSummary summary = summaryCache.get("range", from + ".." + to, mainRepository.version(), () -> {
+                List<Expense> rangeExpenses = mainRepository.findBetween(from, to);
+                Summarizer summarizer = new Summarizer(rangeExpenses);
+                return new RangeSummary(rangeExpenses.size(), summarizer.grandTotal(), summarizer.categoryTotals(null));
+            });
+
+            System.out.println("\nRange: " + fromStr + " to " + toStr);
             System.out.println(TextUtils.separator(60));
 
-            if (categoryTotals.isEmpty()) {
-                System.out.println("No expenses found.");
+            if (summary.count == 0) {
+                System.out.println("No expenses found in this range.");
                 return;
             }
 
-            // Find max for bar visualization
-            double maxAmount = categoryTotals.values().stream()
-                    .max(Double::compareTo)
-                    .orElse(1.0);
+            System.out.println("Entries: " + summary.count);
+            System.out.println("Total: " + TextUtils.formatAmount(summary.total));
+
+            System.out.println("\nCategory totals:");
+            for (Map.Entry<String, Long> entry : summary.categoryTotals.entrySet()) {
+                System.out.println("  " + entry.getKey() + ": " + TextUtils.formatAmount(entry.getValue()));
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a group-by query and prints one row per group.
+     *
+     * @param clauses the query clauses (see Query.parse)
+     */
+    public void handleQuery(List<String> clauses) {
+        QueryResult result;
+        try {
+            result = new QueryEngine(mainRepository).run(Query.parse(clauses));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            return;
+        }
 
-            for (Map.Entry<String, Double> entry : categoryTotals.entrySet()) {
-                String category = entry.getKey();
-                double amount = entry.getValue();
-                String bar = TextUtils.createBar(amount, maxAmount, 30);
+        List<GroupKey> keys = result.getQuery().getKeys();
+        List<Aggregate> aggregates = result.getQuery().getAggregates();
+        List<QueryResult.Row> rows = result.getRows();
+        String[][] cells = new String[rows.size() + 1][keys.size() + aggregates.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            cells[0][i] = keys.get(i).getName();
+        }
+        for (int i = 0; i < aggregates.size(); i++) {
+            cells[0][keys.size() + i] = aggregates.get(i).getName();
+        }
+        for (int r = 0; r < rows.size(); r++) {
+            QueryResult.Row row = rows.get(r);
+            for (int i = 0; i < keys.size(); i++) {
+                cells[r + 1][i] = row.getKey(i);
+            }
+            for (int i = 0; i < aggregates.size(); i++) {
+                long value = row.getValue(i);
+                cells[r + 1][keys.size() + i] = aggregates.get(i).isAmount()
+                        ? TextUtils.formatAmount(value)
+                        : Long.toString(value);
+            }
+        }
+        int[] widths = new int[cells[0].length];
+        for (String[] line : cells) {
+            for (int c = 0; c < line.length; c++) {
+                widths[c] = Math.max(widths[c], line[c].length());
+            }
+        }
 
-                System.out.printf("%-15s %12s  %s\n",
-                        category,
-                        TextUtils.formatAmount(amount),
-                        bar);
+        System.out.println("\nQuery: " + String.join(" ", clauses));
+        System.out.println("Plan: " + result.getPlan());
+        System.out.println(TextUtils.separator(60));
+        if (rows.isEmpty()) {
+            System.out.println("No matching expenses.");
+            return;
+        }
+        for (String[] line : cells) {
+            StringBuilder text = new StringBuilder();
+            for (int c = 0; c < line.length; c++) {
+                if (c > 0) {
+                    text.append("  ");
+                }
+                // Keys on the left, values right-aligned
+                text.append(c < keys.size()
+                        ? TextUtils.padRight(line[c], widths[c])
+                        : TextUtils.padLeft(line[c], widths[c]));
             }
+            System.out.println(text.toString().stripTrailing());
+        }
+        System.out.println(TextUtils.separator(60));
+        System.out.println("Groups: " + rows.size());
+    }
 
+    /**
+     * Finds expenses whose notes contain every given word, through the
+     * notes and category indexes, and prints them with their total.
+     *
+     * @param args the search words, optionally mixed with "--from <date>",
+     *             "--to <date>" and "--category <name>[,<name>...]"
+     */
+    public void handleSearch(List<String> args) {
+        List<String> words = new ArrayList<>();
+        LocalDate from;
+        LocalDate to;
+        List<String> categories;
+        try {
+            Map<String, String> options = parseOptions(args, words, "--from", "--to", "--category");
+            from = options.containsKey("--from") ? DateUtils.parseDate(options.get("--from")) : null;
+            to = options.containsKey("--to") ? DateUtils.parseDate(options.get("--to")) : null;
+            categories = options.containsKey("--category") ? Arrays.asList(options.get("--category").split(",")) : null;
         } catch (IllegalArgumentException e) {
             System.err.println("Error: " + e.getMessage());
+            return;
+        }
+        if (words.isEmpty()) {
+            System.err.println("Usage: search <words> [--from <date>] [--to <date>] [--category <names>]");
+            return;
+        }
+
+        String text = String.join(" ", words);
+        List<Expense> matches = mainRepository.findMatching(text, categories, from, to);
+
+        System.out.println("\nSearch: " + text);
+        System.out.println(TextUtils.separator(80));
+        if (matches.isEmpty()) {
+            System.out.println("No matching expenses.");
+            return;
+        }
+        int shown = Math.min(matches.size(), SEARCH_RESULTS_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            System.out.println(matches.get(i));
+        }
+        if (matches.size() > shown) {
+            System.out.println("... and " + (matches.size() - shown) + " more");
+        }
+        System.out.println(TextUtils.separator(80));
+        System.out.println("Matches: " + matches.size());
+        System.out.println("Total: " + TextUtils.formatAmount(new Summarizer(matches).grandTotal()));
+    }
+
+    private void printMonthlySummary(String monthStr, boolean empty, long total, Map<String, Long> categoryTotals,
+            List<Expense> topExpenses) {
+        System.out.println("\nMonth: " + monthStr);
+        System.out.println(TextUtils.separator(60));
+
+        if (empty) {
+            System.out.println("No expenses found for this month.");
+            return;
+        }
+
+        System.out.println("Total: " + TextUtils.formatAmount(total));
+
+        System.out.println("\nCategory totals:");
+        for (Map.Entry<String, Long> entry : categoryTotals.entrySet()) {
+            System.out.println("  " + entry.getKey() + ": " + TextUtils.formatAmount(entry.getValue()));
+        }
+
+        System.out.println("\nLargest expenses:");
+        for (Expense expense : topExpenses) {
+            System.out.println("  " + expense);
+        }
+    }
+
+    private void printCategorySummary(String monthStr, YearMonth yearMonth, Map<String, Long> categoryTotals,
+            Map<String, QuantileSketch> quantiles) {
+        String period = yearMonth != null ? "Month: " + monthStr : "All Time";
+        System.out.println("\nCategory Summary - " + period);
+        System.out.println(TextUtils.separator(60));
+
+        if (categoryTotals.isEmpty()) {
+            System.out.println("No expenses found.");
+            return;
+        }
+
+        // Find max for bar visualization
+        long maxAmount = categoryTotals.values().stream()
+                .max(Long::compareTo)
+                .orElse(1L);
+
+        for (Map.Entry<String, Long> entry : categoryTotals.entrySet()) {
+            String category = entry.getKey();
+            long amount = entry.getValue();
+            String bar = TextUtils.createBar(amount, maxAmount, 30);
+
+            System.out.printf("%-15s %12s  %s\n",
+                    category,
+                    TextUtils.formatAmount(amount),
+                    bar);
+        }
+
+        // Percentiles are approximate; see QuantileSketch
+        System.out.printf("\n%-15s %12s %12s %12s\n", "Percentiles", "p50", "p95", "p99");
+        for (String category : categoryTotals.keySet()) {
+            QuantileSketch sketch = quantiles.get(category);
+            System.out.printf("%-15s %12s %12s %12s\n",
+                    category,
+                    TextUtils.formatAmount(sketch.percentile(50)),
+                    TextUtils.formatAmount(sketch.percentile(95)),
+                    TextUtils.formatAmount(sketch.percentile(99)));
         }
     }
 
@@ -188,19 +803,285 @@ public class CommandHandler {
             System.err.println("Error writing report: " + e.getMessage());
         }
     }
-    
+
+    /**
+     * Writes every report listed in a job file, building all totals in one
+     * pass over the repository. Each non-empty line that does not start with
+     * "#" is a job: {@code <txt|html> <all|YYYY-MM> <outpath> [category]}.
+     *
+     * @param jobFilePath the job file to read
+     */
+    public void handleBatchExport(String jobFilePath) {
+        List<ExportJob> jobs = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(jobFilePath))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    jobs.add(ExportJob.parse(line));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Error at line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            return;
+        } catch (IOException e) {
+            System.err.println("Error reading job file: " + e.getMessage());
+            return;
+        }
+
+        try {
+            int written = new BatchExporter().export(jobs, mainRepository);
+            System.out.println("Batch export complete: " + written + " reports written");
+        } catch (IOException e) {
+            System.err.println("Error writing report: " + e.getMessage());
+            for (Throwable other : e.getSuppressed()) {
+                System.err.println("Error writing report: " + other.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Summarizes a CSV file in a single streaming pass, without loading it
+     * into the repository.
+     *
+     * @param filePath    the CSV file to read
+     * @param summaryType "month" or "category"
+     * @param monthStr    the month in YYYY-MM format, or "all" for a category summary of all time
+     */
+    public void handleStreamSummary(String filePath, String summaryType, String monthStr) {
+        try {
+            YearMonth yearMonth = monthStr.equalsIgnoreCase("all") && summaryType.equals("category")
+                    ? null
+                    : DateUtils.parseYearMonth(monthStr);
+            if (!summaryType.equals("month") && !summaryType.equals("category")) {
+                System.err.println("Unknown summary type: " + summaryType);
+                return;
+            }
+
+            SummaryAccumulator accumulator = new SummaryAccumulator();
+            CsvLoader.getInstance().streamFromFile(filePath, accumulator);
+            Summarizer summarizer = accumulator.summarizer();
+
+            Map<String, Long> categoryTotals = summarizer.categoryTotals(yearMonth);
+            if (summaryType.equals("month")) {
+                printMonthlySummary(monthStr, categoryTotals.isEmpty(), summarizer.totalForMonth(yearMonth),
+                        categoryTotals, summarizer.topExpenses(yearMonth));
+            } else {
+                printCategorySummary(monthStr, yearMonth, categoryTotals, summarizer.categoryQuantiles(yearMonth));
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading file: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Exports a report for a CSV file in a single streaming pass, without
+     * loading it into the repository.
+     *
+     * @param filePath   the CSV file to read
+     * @param format     the report format ("txt" or "html")
+     * @param outputPath the output file path
+     */
+    public void handleStreamExport(String filePath, String format, String outputPath) {
+        try {
+            ReportWriter writer = ReportWriterFactory.createReportWriter(format);
+
+            SummaryAccumulator accumulator = new SummaryAccumulator();
+            CsvLoader.getInstance().streamFromFile(filePath, accumulator);
+
+            writer.writeReport(outputPath, accumulator.summarizer(), accumulator.recentEntries());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error writing report: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shows or switches the repository storage mode.
+     *
+     * @param mode the storage mode ("list" or "columnar"), or null to show the current mode
+     */
+    public void handleStorage(String mode) {
+        if (mode == null) {
+            System.out.println("Storage mode: " + mainRepository.getStorageMode());
+            return;
+        }
+        try {
+            mainRepository.setStorageMode(mode);
+            System.out.println("Storage mode set to: " + mainRepository.getStorageMode());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shows or switches the CSV load mode.
+     *
+     * @param mode the load mode ("reader", "parallel" or "mapped"), or null to show the current mode
+     */
+    public void handleLoader(String mode) {
+        CsvLoader loader = CsvLoader.getInstance();
+        if (mode == null) {
+            System.out.println("Load mode: " + loader.getLoadMode());
+            return;
+        }
+        try {
+            loader.setLoadMode(mode);
+            System.out.println("Load mode set to: " + loader.getLoadMode());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Shows summary cache statistics and the hot-path metrics, or writes the
+     * metrics to a file.
+     *
+     * @param args empty to print, or a format ("json" or "prometheus") and a file path
+     */
+    public void handleStats(List<String> args) {
+        if (!args.isEmpty()) {
+            if (args.size() != 2) {
+                System.err.println("Usage: stats [json|prometheus <file>]");
+                return;
+            }
+            try {
+                Metrics.writeTo(args.get(0), args.get(1));
+                System.out.println("Metrics written to: " + args.get(1));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: " + e.getMessage());
+            } catch (IOException e) {
+                System.err.println("Error writing metrics: " + e.getMessage());
+            }
+            return;
+        }
+
+        long lookups = summaryCache.hits() + summaryCache.misses();
+        System.out.println("\nSummary cache:");
+        System.out.println("  Entries:       " + summaryCache.size() + " of " + summaryCache.capacity());
+        System.out.printf("  Hits:          %d (%.1f%% of %d lookups)%n", summaryCache.hits(),
+                lookups == 0 ? 0.0 : 100.0 * summaryCache.hits() / lookups, lookups);
+        System.out.println("  Misses:        " + summaryCache.misses());
+        System.out.println("  Evictions:     " + summaryCache.evictions());
+        System.out.println("  Invalidations: " + summaryCache.invalidations());
+
+        if (!Metrics.ENABLED) {
+            System.out.println("\nTimings are off (-Dbudgetbuddy.metrics=false).");
+            return;
+        }
+        System.out.println("\nTimings (ms):");
+        System.out.printf("  %-30s %8s", "Operation", "Count");
+        for (double percent : Metrics.PERCENTILES) {
+            System.out.printf(" %10s", "p" + Metrics.percentileLabel(percent));
+        }
+        System.out.printf(" %10s%n", "Max");
+        for (LatencyHistogram histogram : Metrics.histograms().values()) {
+            if (histogram.count() == 0) {
+                continue;
+            }
+            System.out.printf("  %-30s %8d", histogram.getName(), histogram.count());
+            for (double percent : Metrics.PERCENTILES) {
+                System.out.printf(" %10.3f", histogram.percentile(percent) / 1e6);
+            }
+            System.out.printf(" %10.3f%n", histogram.maxNanos() / 1e6);
+        }
+
+        System.out.println("\nCounters:");
+        for (Map.Entry<String, LongAdder> counter : Metrics.counters().entrySet()) {
+            System.out.printf("  %-30s %12d%n", counter.getKey(), counter.getValue().sum());
+        }
+        LatencyHistogram loads = Metrics.histogram("csv.load");
+        if (loads.totalNanos() > 0) {
+            double seconds = loads.totalNanos() / 1e9;
+            System.out.printf("  Load throughput: %.0f rows/s, %.1f MB/s%n",
+                    Metrics.counter("csv.rows").sum() / seconds,
+                    Metrics.counter("csv.bytes").sum() / seconds / (1024 * 1024));
+        }
+    }
+
     /**
      * Shows help information.
      */
     public void handleHelp() {
         System.out.println("\nBudgetBuddy Commands:");
         System.out.println("  load <file>                  - Load expenses from CSV file");
-        System.out.println("  list                         - List all expenses");
+        System.out.println("  follow <file>|stop           - Load a CSV file and keep adding lines appended to it");
+        System.out.println("  list [--page <n>] [--limit <n>] [--from <date>] [--to <date>] [--category <names>]"
+                + " - List expenses");
+        System.out.println("  add <date> <category> <amount> [notes] - Add an expense (journaled to the loaded CSV)");
+        System.out.println("  compact                      - Move journaled expenses into the loaded CSV file");
+        System.out.println("  save-snapshot [file]         - Save loaded expenses to a binary snapshot");
+        System.out.println("  load-snapshot <file>         - Load expenses from a binary snapshot");
         System.out.println("  summary month <YYYY-MM>      - Show monthly summary");
         System.out.println("  summary category <YYYY-MM|all> - Show category summary");
+        System.out.println("  summary range <from> <to>    - Show summary for a date range (YYYY-MM-DD)");
+        System.out.println("  query [by <keys>] [show <aggregates>] [filters] - Group and aggregate (see README)");
+        System.out.println("  search <words> [--from <date>] [--to <date>] [--category <names>] - Find expenses by notes");
         System.out.println("  export txt <outpath>         - Export text report");
         System.out.println("  export html <outpath>        - Export HTML report");
+        System.out.println("  batch-export <jobfile>       - Export every report listed in a job file");
+        System.out.println("  stream <file> summary month <YYYY-MM>       - Monthly summary straight from a CSV file");
+        System.out.println("  stream <file> summary category <YYYY-MM|all> - Category summary straight from a CSV file");
+        System.out.println("  stream <file> export <txt|html> <outpath>   - Export a report straight from a CSV file");
+        System.out.println("  storage [list|columnar]      - Show or switch storage mode");
+        System.out.println("  loader [reader|parallel|mapped] - Show or switch CSV load mode");
+        System.out.println("  stats [json|prometheus <file>] - Show cache statistics and timings, or save them");
         System.out.println("  help                         - Show this help");
         System.out.println("  exit                         - Exit program");
     }
+
+    /**
+     * Cached result of "summary month".
+     */
+    private static class MonthSummary {
+        private final boolean empty;
+        private final long total;
+        private final Map<String, Long> categoryTotals;
+        private final List<Expense> topExpenses;
+
+        MonthSummary(boolean empty, long total, Map<String, Long> categoryTotals, List<Expense> topExpenses) {
+            this.empty = empty;
+            this.total = total;
+            this.categoryTotals = categoryTotals;
+            this.topExpenses = topExpenses;
+        }
+    }
+
+    /**
+     * Cached result of "summary category".
+     */
+    private static class CategorySummary {
+        private final Map<String, Long> categoryTotals;
+        private final Map<String, QuantileSketch> quantiles;
+
+        CategorySummary(Map<String, Long> categoryTotals, Map<String, QuantileSketch> quantiles) {
+            this.categoryTotals = categoryTotals;
+            this.quantiles = quantiles;
+        }
+    }
+
+    /**
+     * Cached result of "summary range".
+     */
+    private static class RangeSummary {
+        private final int count;
+        private final long total;
+        private final Map<String, Long> categoryTotals;
+
+        RangeSummary(int count, long total, Map<String, Long> categoryTotals) {
+            this.count = count;
+            this.total = total;
+            this.categoryTotals = categoryTotals;
+        }
+    }
 }
@@ -0,0 +1,191 @@
+package io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * Interns strings decoded from byte ranges, so repeated values such as
+ * category names are decoded and allocated only once.
+ * Values can also be resolved to int ids (such as category ids), which are
+ * remembered with them, so repeated values are resolved only once.
+ * Once the dictionary holds maxEntries values, new values are decoded
+ * without being remembered.
+ */
+class ByteStringDictionary {
+    private final Charset charset;
+    private final int maxEntries;
+
+    private int[] hashes;
+    private byte[][] keys;
+    private String[] values;
+    // Resolved id + 1 per value, or 0 if it has not been resolved
+    private int[] ids;
+    private int size;
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Creates an empty dictionary.
+     *
+     * @param charset    charset used to decode new values
+     * @param maxEntries maximum number of values to remember
+     */
+    ByteStringDictionary(Charset charset, int maxEntries) {
+        this.charset = charset;
+        this.maxEntries = maxEntries;
+        this.hashes = new int[64];
+        this.keys = new byte[64][];
+        this.values = new String[64];
+        this.ids = new int[64];
+    }
+
+    /**
+     * Returns the string for the bytes in [start, end) of the buffer.
+     *
+     * @param buffer the buffer holding the bytes
+     * @param start  first byte (inclusive)
+     * @param end    last byte (exclusive)
+     * @return the decoded, interned string
+     */
+    String lookup(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return "";
+        }
+
+        int hash = hash(buffer, start, end);
+        int slot = slotOf(buffer, start, length, hash);
+        if (keys[slot] != null) {
+            return values[slot];
+        }
+
+        String value = decode(buffer, start, length);
+        if (size < maxEntries) {
+            insert(slot, hash, length, value, 0);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the id of the string for the bytes in [start, end) of the
+     * buffer, resolving it only the first time the string is seen.
+     *
+     * @param buffer  the buffer holding the bytes
+     * @param start   first byte (inclusive)
+     * @param end     last byte (exclusive); after start
+     * @param resolve maps a decoded string to its id, which must not be negative
+     * @return the id
+     */
+    int lookupId(ByteBuffer buffer, int start, int end, ToIntFunction<String> resolve) {
+        int length = end - start;
+        int hash = hash(buffer, start, end);
+        int slot = slotOf(buffer, start, length, hash);
+        if (keys[slot] != null) {
+            if (ids[slot] == 0) {
+                ids[slot] = resolve.applyAsInt(values[slot]) + 1;
+            }
+            return ids[slot] - 1;
+        }
+
+        String value = decode(buffer, start, length);
+        int id = resolve.applyAsInt(value);
+        if (size < maxEntries) {
+            insert(slot, hash, length, value, id + 1);
+        }
+        return id;
+    }
+
+    private static int hash(ByteBuffer buffer, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the slot holding the bytes, or the empty slot where they belong.
+     */
+    private int slotOf(ByteBuffer buffer, int start, int length, int hash) {
+        int mask = keys.length - 1;
+        int slot = mix(hash) & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && matches(keys[slot], buffer, start, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Decodes the bytes, leaving a copy of them in scratch for insert().
+     */
+    private String decode(ByteBuffer buffer, int start, int length) {
+        byte[] key = copy(buffer, start, length);
+        return new String(key, 0, length, charset);
+    }
+
+    private void insert(int slot, int hash, int length, String value, int idPlusOne) {
+        keys[slot] = Arrays.copyOf(scratch, length);
+        hashes[slot] = hash;
+        values[slot] = value;
+        ids[slot] = idPlusOne;
+        size++;
+        if (size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    private byte[] copy(ByteBuffer buffer, int start, int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        return scratch;
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int start, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        int[] oldHashes = hashes;
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        int[] oldIds = ids;
+
+        int capacity = oldKeys.length * 2;
+        hashes = new int[capacity];
+        keys = new byte[capacity][];
+        values = new String[capacity];
+        ids = new int[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = mix(oldHashes[i]) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,93 @@
+package io;
+
+import model.CategoryDictionary;
+
+/**
+ * Remembers the CategoryDictionary id of each category name seen in the
+ * lines one parser reads, so a repeated category is resolved from the
+ * characters of its line, without allocating a string or looking it up in
+ * the shared dictionary. Not thread-safe: use one cache per parsing thread.
+ */
+class CategoryIdCache {
+    private int[] hashes = new int[16];
+    private String[] names = new String[16];
+    private int[] ids = new int[16];
+    private int size;
+
+    /**
+     * Returns the id of the category in [start, end) of a line, trimmed as
+     * String.trim() does.
+     *
+     * @param line  the line holding the category
+     * @param start first character (inclusive)
+     * @param end   last character (exclusive)
+     * @return the category id, or -1 if the category is empty
+     */
+    int idOf(String line, int start, int end) {
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int length = end - start;
+        if (length == 0) {
+            return -1;
+        }
+
+        // String.hashCode of the trimmed name, so no substring is needed to compute it
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + line.charAt(i);
+        }
+
+        int mask = names.length - 1;
+        int slot = mix(hash) & mask;
+        while (names[slot] != null) {
+            String name = names[slot];
+            if (hashes[slot] == hash && name.length() == length && line.regionMatches(start, name, 0, length)) {
+                return ids[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String name = line.substring(start, end);
+        int id = CategoryDictionary.getInstance().idOf(name);
+        hashes[slot] = hash;
+        names[slot] = name;
+        ids[slot] = id;
+        size++;
+        if (size * 2 > names.length) {
+            grow();
+        }
+        return id;
+    }
+
+    private void grow() {
+        int[] oldHashes = hashes;
+        String[] oldNames = names;
+        int[] oldIds = ids;
+
+        int capacity = oldNames.length * 2;
+        hashes = new int[capacity];
+        names = new String[capacity];
+        ids = new int[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] != null) {
+                int slot = mix(oldHashes[i]) & mask;
+                while (names[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = oldHashes[i];
+                names[slot] = oldNames[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,167 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import model.Expense;
+
+/**
+ * Follows a growing CSV file. A background thread watches the file's
+ * directory with a WatchService and parses appended lines with a
+ * CsvTailReader as they arrive. Parsed lines are queued as updates, which
+ * the owner applies on its own thread with {@link #poll()}, so whatever
+ * the updates are applied to needs no locking.
+ * The file is also checked once a second, for platforms whose
+ * WatchService is slow to report changes.
+ */
+public class CsvFollower implements Closeable {
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+
+    private final String filePath;
+    private final CsvTailReader reader;
+    private final WatchService watcher;
+    private final ConcurrentLinkedQueue<Update> updates = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+
+    /**
+     * New data read from the followed file.
+     */
+    public static class Update {
+        private final boolean restart;
+        private final List<Expense> expenses = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+
+        Update(boolean restart) {
+            this.restart = restart;
+        }
+
+        /**
+         * Checks whether the file was truncated or replaced, so everything
+         * read from it before must be discarded before applying this update.
+         *
+         * @return true if reading restarted from the start of the file
+         */
+        public boolean isRestart() {
+            return restart;
+        }
+
+        public List<Expense> getExpenses() {
+            return expenses;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+
+    /**
+     * Reads a file up to its current end and starts following it.
+     * The initial contents are returned by the first call to {@link #poll()}.
+     *
+     * @param filePath path to the CSV file
+     * @throws IOException if the file cannot be read or watched
+     */
+    public CsvFollower(String filePath) throws IOException {
+        this.filePath = filePath;
+        Path path = Paths.get(filePath).toAbsolutePath();
+        this.reader = new CsvTailReader(filePath);
+
+        Update initial = new Update(true);
+        reader.readNew(initial.expenses::add, e -> initial.errors.add(e.getMessage()));
+        updates.add(initial);
+
+        this.watcher = FileSystems.getDefault().newWatchService();
+        try {
+            path.getParent().register(watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watcher.close();
+            throw e;
+        }
+        this.thread = new Thread(this::watch, "budgetbuddy-follow");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the path of the followed file.
+     *
+     * @return the file path
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Returns the oldest update not yet applied.
+     *
+     * @return the next update, or null if there is none
+     */
+    public Update poll() {
+        return updates.poll();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.poll(CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    // Any change in the directory just triggers a check of the file size
+                    key.pollEvents();
+                    key.reset();
+                }
+                readTail();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Stopped by close()
+        }
+    }
+
+    private void readTail() {
+        Update update;
+        try {
+            boolean restart = reader.wasReplaced();
+            if (restart) {
+                reader.reset();
+            }
+            update = new Update(restart);
+        } catch (IOException e) {
+            // The file may be mid-rotation; try again on the next check
+            return;
+        }
+        try {
+            reader.readNew(update.expenses::add, e -> update.errors.add(e.getMessage()));
+        } catch (IOException e) {
+            // Keep the lines read so far; the reader resumes after them
+        }
+        if (update.restart || !update.expenses.isEmpty() || !update.errors.isEmpty()) {
+            updates.add(update);
+        }
+    }
+
+    /**
+     * Stops following the file.
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,19 +1,80 @@
 package io;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
 import model.Expense;
 import util.DateUtils;
+import util.TextUtils;
 
 /**
  * Loads expense data from CSV files.
  * Supports both semicolon and comma separators.
  */
 public class CsvLoader {
+    private static final LatencyHistogram LOAD_TIME = Metrics.histogram("csv.load");
+    private static final LongAdder LOADED_ROWS = Metrics.counter("csv.rows");
+    private static final LongAdder LOADED_BYTES = Metrics.counter("csv.bytes");
+    // Loads that failed, on an invalid line or a read error
+    private static final LongAdder REJECTED_FILES = Metrics.counter("csv.rejectedFiles");
+    // Invalid lines skipped while following a file
+    private static final LongAdder PARSE_ERRORS = Metrics.counter("csv.parseErrors");
+
+    private static CsvLoader instance;
+
+    private String loadMode;
+
+    private CsvLoader(){
+        this.loadMode = System.getProperty("budgetbuddy.loader", "reader").toLowerCase();
+    }
+
+    public static CsvLoader getInstance(){
+        if(instance==null){
+            instance= new CsvLoader();
+        }
+        return instance;
+    }
+    
+    /**
+     * Sets how files are read by loadFromFile.
+     * "reader" parses line by line on the calling thread;
+     * "parallel" parses newline-aligned chunks of the file on a fork-join pool;
+     * "mapped" memory-maps the file and parses the bytes directly.
+     *
+     * @param mode the load mode ("reader", "parallel" or "mapped")
+     * @throws IllegalArgumentException if mode is not supported
+     */
+    public void setLoadMode(String mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Load mode cannot be null");
+        }
+        switch (mode.toLowerCase()) {
+            case "reader":
+            case "parallel":
+            case "mapped":
+                this.loadMode = mode.toLowerCase();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported load mode: " + mode + ". Supported modes: reader, parallel, mapped");
+        }
+    }
+
+    /**
+     * Returns the current load mode.
+     *
+     * @return the load mode name
+     */
+    public String getLoadMode() {
+        return loadMode;
+    }
 
     /**
      * Loads expenses from a CSV file.
@@ -25,27 +86,70 @@ public class CsvLoader {
      * @throws IOException              if file cannot be read
      * @throws IllegalArgumentException if CSV format is invalid
      */
+    public List<Expense> loadFromFile(String filePath) throws IOException {
+        long start = Metrics.start();
+        List<Expense> expenses;
+        try {
+            switch (loadMode) {
+                case "parallel":
+                    expenses = new ParallelCsvParser(this).parse(filePath);
+                    break;
+                case "mapped":
+                    expenses = new ArrayList<>();
+                    new MappedCsvParser().parse(filePath, expenses::add);
+                    break;
+                default:
+                    expenses = new ArrayList<>();
+                    readLines(filePath, expenses::add);
+                    break;
+            }
+        } catch (IOException | RuntimeException e) {
+            REJECTED_FILES.increment();
+            throw e;
+        } finally {
+            LOAD_TIME.recordSince(start);
+        }
+        LOADED_ROWS.add(expenses.size());
+        LOADED_BYTES.add(new File(filePath).length());
 
-    private static CsvLoader instance;
-
-    private CsvLoader(){
-
+        System.out.println("Loaded " + expenses.size() + " entries from " + filePath);
+        return expenses;
     }
 
-    public static CsvLoader getInstance(){
-        if(instance==null){
-            instance= new CsvLoader();
+    /**
+     * Parses a CSV file and passes each expense to a consumer as soon as it
+     * is parsed, without keeping the expenses in memory.
+     * Uses the mapped parser in "mapped" mode and the line reader otherwise.
+     *
+     * @param filePath path to the CSV file
+     * @param consumer receives each parsed expense, in file order
+     * @return number of expenses parsed
+     * @throws IOException              if file cannot be read
+     * @throws IllegalArgumentException if CSV format is invalid
+     */
+    public long streamFromFile(String filePath, Consumer<Expense> consumer) throws IOException {
+        long[] count = new long[1];
+        Consumer<Expense> counting = expense -> {
+            count[0]++;
+            consumer.accept(expense);
+        };
+
+        if (loadMode.equals("mapped")) {
+            new MappedCsvParser().parse(filePath, counting);
+        } else {
+            readLines(filePath, counting);
         }
-        return instance;
+
+        System.out.println("Streamed " + count[0] + " entries from " + filePath);
+        return count[0];
     }
-    
-    public List<Expense> loadFromFile(String filePath) throws IOException {
-        List<Expense> expenses = new ArrayList<>();
 
+    private void readLines(String filePath, Consumer<Expense> consumer) throws IOException {
         try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
             String line;
             int lineNumber = 0;
             boolean firstLine = true;
+            CategoryIdCache categories = new CategoryIdCache();
 
             while ((line = reader.readLine()) != null) {
                 lineNumber++;
@@ -63,16 +167,20 @@ public class CsvLoader {
                 firstLine = false;
 
                 try {
-                    Expense expense = parseLine(line, lineNumber);
-                    expenses.add(expense);
+                    Expense expense = parseLine(line, lineNumber, categories);
+                    consumer.accept(expense);
                 } catch (IllegalArgumentException e) {
                     throw new IllegalArgumentException("Error at line " + lineNumber + ": " + e.getMessage(), e);
                 }
             }
         }
+    }
 
-        System.out.println("Loaded " + expenses.size() + " entries from " + filePath);
-        return expenses;
+    /**
+     * Counts an invalid line that was skipped rather than failing the load.
+     */
+    static void countParseError() {
+        PARSE_ERRORS.increment();
     }
 
     /**
@@ -81,41 +189,44 @@ public class CsvLoader {
      *
      * @param line       the CSV line
      * @param lineNumber the line number (for error messages)
+     * @param categories resolves category names to ids; one per parsing thread
      * @return parsed Expense
      * @throws IllegalArgumentException if line format is invalid
      */
-    private Expense parseLine(String line, int lineNumber) {
-        String[] parts;
-
+    Expense parseLine(String line, int lineNumber, CategoryIdCache categories) {
         // Try semicolon separator first
-        if (line.contains(";")) {
-            parts = line.split(";", -1);
-        } else {
-            parts = line.split(",", -1);
-        }
+        char separator = line.indexOf(';') >= 0 ? ';' : ',';
 
-        if (parts.length < 3) {
+        int dateEnd = line.indexOf(separator);
+        int categoryEnd = dateEnd < 0 ? -1 : line.indexOf(separator, dateEnd + 1);
+        if (categoryEnd < 0) {
             throw new IllegalArgumentException(
-                    "Expected at least 3 fields (date, category, amount), found " + parts.length);
+                    "Expected at least 3 fields (date, category, amount), found " + (dateEnd < 0 ? 1 : 2));
         }
+        int amountEnd = line.indexOf(separator, categoryEnd + 1);
+        String amount = amountEnd < 0 ? line.substring(categoryEnd + 1) : line.substring(categoryEnd + 1, amountEnd);
 
         try {
-            LocalDate date = DateUtils.parseDate(parts[0].trim());
-            String category = parts[1].trim();
-            double amount = Double.parseDouble(parts[2].trim());
-            String notes = parts.length > 3 ? parts[3].trim() : "";
+            LocalDate date = DateUtils.parseDate(line.substring(0, dateEnd).trim());
+            long amountCents = TextUtils.parseAmount(amount);
+            String notes = "";
+            if (amountEnd >= 0) {
+                int notesEnd = line.indexOf(separator, amountEnd + 1);
+                notes = line.substring(amountEnd + 1, notesEnd < 0 ? line.length() : notesEnd).trim();
+            }
 
-            if (category.isEmpty()) {
+            int categoryId = categories.idOf(line, dateEnd + 1, categoryEnd);
+            if (categoryId < 0) {
                 throw new IllegalArgumentException("Category cannot be empty");
             }
 
-            if (amount < 0) {
+            if (amountCents < 0) {
                 throw new IllegalArgumentException("Amount cannot be negative");
             }
 
-            return new Expense(date, category, amount, notes);
+            return Expense.ofCents(date, categoryId, amountCents, notes);
         } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Invalid amount format: " + parts[2], e);
+            throw new IllegalArgumentException("Invalid amount format: " + amount, e);
         }
     }
 }
@@ -0,0 +1,221 @@
+package io;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import model.Expense;
+
+/**
+ * Reads a growing CSV file incrementally. Each call to {@link #readNew}
+ * parses only the complete lines appended since the previous call, and
+ * remembers the byte offset and line number it stopped at.
+ * A trailing line without a line terminator is treated as still being
+ * written: it is left unread until its terminator arrives.
+ * Lines are split, trimmed, numbered and parsed exactly as CsvLoader does.
+ * <p>
+ * The reader remembers which file it was reading (its file key, where the
+ * platform has one) and a checksum of its first bytes, so a file that was
+ * replaced or rewritten, even by a larger one, is detected by wasReplaced().
+ */
+public class CsvTailReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Bytes at the start of the file whose checksum identifies its contents
+    private static final int FINGERPRINT_SIZE = 4096;
+
+    private final String filePath;
+    private final CsvLoader loader;
+    private final CategoryIdCache categories = new CategoryIdCache();
+    private final Charset charset;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] line = new byte[256];
+
+    private long offset;
+    private int lineNumber;
+    private boolean firstLine;
+    // The last consumed terminator was '\r'; a '\n' right after it ends no new line
+    private boolean afterCarriageReturn;
+    // Identity of the file read from offset 0; null if unknown or not supported
+    private Object fileKey;
+    private int fingerprintLength;
+    private long fingerprint;
+
+    /**
+     * Creates a reader positioned at the start of a file.
+     *
+     * @param filePath path to the CSV file
+     */
+    public CsvTailReader(String filePath) {
+        this.filePath = filePath;
+        this.loader = CsvLoader.getInstance();
+        // FileReader decodes with the default charset, so we do the same
+        this.charset = Charset.defaultCharset();
+        reset();
+    }
+
+    /**
+     * Moves the reader back to the start of the file.
+     */
+    public void reset() {
+        offset = 0;
+        lineNumber = 0;
+        firstLine = true;
+        afterCarriageReturn = false;
+        fileKey = null;
+        fingerprintLength = 0;
+        fingerprint = 0;
+    }
+
+    /**
+     * Returns the byte offset just past the last consumed line.
+     *
+     * @return consumed byte count
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of the last consumed line.
+     *
+     * @return line number, starting at 1
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Checks whether the file is no longer the one read so far, so it must
+     * be read again from the start: it is shorter than the consumed offset,
+     * it is a different file (another file key, as after a rename or
+     * rotation), or its first consumed bytes have changed (as after a rewrite
+     * in place).
+     *
+     * @return true if the file was truncated, replaced or rewritten
+     * @throws IOException if the file cannot be read
+     */
+    public boolean wasReplaced() throws IOException {
+        Object currentKey = fileKey();
+        if (fileKey != null && currentKey != null && !fileKey.equals(currentKey)) {
+            return true;
+        }
+        try (FileInputStream input = new FileInputStream(filePath);
+                FileChannel channel = input.getChannel()) {
+            if (channel.size() < offset) {
+                return true;
+            }
+            return fingerprintLength > 0 && checksum(channel, fingerprintLength) != fingerprint;
+        }
+    }
+
+    /**
+     * Parses the complete lines appended since the last call.
+     * An invalid line is reported and skipped; reading continues after it.
+     *
+     * @param consumer receives each parsed expense, in file order
+     * @param errors   receives an error for each invalid line, with its line number
+     * @return number of expenses parsed
+     * @throws IOException if the file cannot be read
+     */
+    public long readNew(Consumer<Expense> consumer, Consumer<IllegalArgumentException> errors) throws IOException {
+        long count = 0;
+        // FileInputStream reports a missing file the same way FileReader does
+        try (FileInputStream input = new FileInputStream(filePath);
+                FileChannel channel = input.getChannel()) {
+            if (offset == 0) {
+                fileKey = fileKey();
+            }
+            long position = offset;
+            int lineLength = 0;
+            buffer.clear();
+            while (channel.read(buffer, position) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    position++;
+                    if (b == '\n' || b == '\r') {
+                        if (b == '\n' && afterCarriageReturn && lineLength == 0) {
+                            afterCarriageReturn = false;
+                            offset = position;
+                            continue;
+                        }
+                        afterCarriageReturn = b == '\r';
+                        lineNumber++;
+                        offset = position;
+                        if (parse(lineLength, consumer, errors)) {
+                            count++;
+                        }
+                        lineLength = 0;
+                    } else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, line.length * 2);
+                        }
+                        line[lineLength++] = b;
+                        afterCarriageReturn = false;
+                    }
+                }
+                buffer.clear();
+            }
+            if (fingerprintLength < FINGERPRINT_SIZE && offset > fingerprintLength) {
+                fingerprintLength = (int) Math.min(offset, FINGERPRINT_SIZE);
+                fingerprint = checksum(channel, fingerprintLength);
+            }
+        }
+        return count;
+    }
+
+    private Object fileKey() throws IOException {
+        return Files.readAttributes(Paths.get(filePath), BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Returns the checksum of the first bytes of a file, or -1 if it has fewer.
+     */
+    private static long checksum(FileChannel channel, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, bytes.position()) < 0) {
+                return -1;
+            }
+        }
+        bytes.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    /**
+     * Parses one complete line held in the line buffer.
+     *
+     * @return true if the line held an expense
+     */
+    private boolean parse(int length, Consumer<Expense> consumer, Consumer<IllegalArgumentException> errors) {
+        String text = new String(line, 0, length, charset).trim();
+        if (text.isEmpty()) {
+            return false;
+        }
+
+        // Skip header line if it starts with "date"
+        if (firstLine && text.toLowerCase().startsWith("date")) {
+            firstLine = false;
+            return false;
+        }
+        firstLine = false;
+
+        try {
+            consumer.accept(loader.parseLine(text, lineNumber, categories));
+            return true;
+        } catch (IllegalArgumentException e) {
+            CsvLoader.countParseError();
+            errors.accept(new IllegalArgumentException("Error at line " + lineNumber + ": " + e.getMessage(), e));
+            return false;
+        }
+    }
+}
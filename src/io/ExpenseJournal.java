@@ -0,0 +1,421 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import model.Expense;
+import util.DateUtils;
+import util.TextUtils;
+
+/**
+ * Append-only journal of expenses added on top of a base CSV file.
+ * New expenses are appended to {@code <base>.journal} and replayed after the
+ * base file is loaded, so adding an expense costs O(1) instead of a full
+ * reload. Compaction atomically replaces the base file with one that also
+ * holds the journaled expenses, then empties the journal.
+ *
+ * <p>The journal (little-endian) starts with a header recording the base
+ * file's size and modification time, followed by records of the form
+ * {@code int length, int CRC32C, payload}; a payload holds the date as an
+ * epoch day, the amount in cents as a long, then the category and notes as
+ * length-prefixed UTF-8. A journal whose header does not
+ * match its base file (for example after the base was edited) is set aside
+ * as {@code <journal>.stale} instead of being replayed. A torn record at the
+ * end, left by a crash during an append, is dropped on replay.
+ *
+ * <p>Appends reach the operating system immediately, so they survive a JVM
+ * crash; they are forced to disk in batches (see {@link #setSyncEvery(int)}),
+ * by the first append once a second has passed since the last sync, and on
+ * {@link #sync()} and {@link #close()}. There is no background sync, so an
+ * append followed by idle time stays unforced until one of those happens.
+ */
+public class ExpenseJournal implements Closeable {
+    private static final int MAGIC = 0x4c4a4242; // "BBJL" read little-endian
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES;
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final long SYNC_INTERVAL_MILLIS = 1000;
+
+    private final Path basePath;
+    private final Path journalPath;
+    private FileChannel channel;
+    private int syncEvery;
+    private int unsynced;
+    private long lastSync;
+    private long recordCount;
+
+    private ExpenseJournal(Path basePath, Path journalPath) {
+        this.basePath = basePath;
+        this.journalPath = journalPath;
+        this.syncEvery = Integer.getInteger("budgetbuddy.journal.syncEvery", 32);
+    }
+
+    /**
+     * Returns the journal path for a base file.
+     *
+     * @param basePath the base CSV file path
+     * @return the journal path
+     */
+    public static String defaultPath(String basePath) {
+        return basePath + ".journal";
+    }
+
+    /**
+     * Checks whether a base file has a journal.
+     *
+     * @param basePath the base CSV file path
+     * @return true if a journal file exists for it
+     */
+    public static boolean exists(String basePath) {
+        return Files.exists(Paths.get(defaultPath(basePath)));
+    }
+
+    /**
+     * Opens the journal of a base file, creating it if needed.
+     * A journal written against a different version of the base file is
+     * renamed to {@code <journal>.stale} and a new, empty journal is started.
+     *
+     * @param basePath the base CSV file path
+     * @return the open journal
+     * @throws IOException if the journal cannot be opened or created
+     */
+    public static ExpenseJournal open(String basePath) throws IOException {
+        Path base = Paths.get(basePath);
+        Path journalPath = Paths.get(defaultPath(basePath));
+        ExpenseJournal journal = new ExpenseJournal(base, journalPath);
+        journal.channel = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (journal.channel.size() == 0) {
+                journal.writeHeader();
+            } else if (!journal.headerMatchesBase()) {
+                journal.channel.close();
+                Path stale = Paths.get(journalPath + ".stale");
+                Files.move(journalPath, stale, StandardCopyOption.REPLACE_EXISTING);
+                System.err.println("Journal " + journalPath + " does not match " + basePath
+                        + "; moved it to " + stale);
+                journal.channel = FileChannel.open(journalPath,
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                journal.writeHeader();
+            }
+        } catch (IOException | RuntimeException e) {
+            journal.channel.close();
+            throw e;
+        }
+        journal.lastSync = System.currentTimeMillis();
+        return journal;
+    }
+
+    /**
+     * Sets how many appends may be buffered by the operating system before
+     * the journal is forced to disk. Defaults to the
+     * "budgetbuddy.journal.syncEvery" system property, or 32. An append is
+     * also forced if a second has passed since the last sync.
+     *
+     * @param syncEvery number of appends per sync; 1 syncs every append
+     */
+    public void setSyncEvery(int syncEvery) {
+        if (syncEvery < 1) {
+            throw new IllegalArgumentException("Sync batch size must be at least 1");
+        }
+        this.syncEvery = syncEvery;
+    }
+
+    /**
+     * Returns the number of expenses in the journal.
+     *
+     * @return record count, as of the last replay or append
+     */
+    public long size() {
+        return recordCount;
+    }
+
+    /**
+     * Replays all journaled expenses. A torn or corrupt record ends the
+     * journal; it and anything after it are removed.
+     *
+     * @param consumer receives each expense, in the order it was appended
+     * @return number of expenses replayed
+     * @throws IOException if the journal cannot be read
+     */
+    public long replay(Consumer<Expense> consumer) throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer data = ByteBuffer.allocate((int) (fileSize - HEADER_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+        while (data.hasRemaining()) {
+            if (channel.read(data, HEADER_SIZE + data.position()) < 0) {
+                break;
+            }
+        }
+        data.flip();
+
+        CRC32C checksum = new CRC32C();
+        long count = 0;
+        while (data.remaining() >= RECORD_HEADER_SIZE) {
+            int start = data.position();
+            int length = data.getInt();
+            int expected = data.getInt();
+            if (length < 0 || length > data.remaining()) {
+                data.position(start);
+                break;
+            }
+            ByteBuffer payload = data.slice(data.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+            checksum.reset();
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != expected) {
+                data.position(start);
+                break;
+            }
+            consumer.accept(decode(payload));
+            data.position(data.position() + length);
+            count++;
+        }
+
+        long end = HEADER_SIZE + data.position();
+        if (end < fileSize) {
+            System.err.println("Dropped " + (fileSize - end) + " bytes of incomplete journal data from " + journalPath);
+            channel.truncate(end);
+        }
+        recordCount = count;
+        return count;
+    }
+
+    /**
+     * Appends an expense to the journal.
+     *
+     * @param expense the expense to append
+     * @throws IOException if the expense cannot be written
+     */
+    public void append(Expense expense) throws IOException {
+        byte[] category = expense.getCategory().getBytes(StandardCharsets.UTF_8);
+        byte[] notes = expense.getNotes().getBytes(StandardCharsets.UTF_8);
+        int length = Integer.BYTES + Long.BYTES + Integer.BYTES + category.length + Integer.BYTES + notes.length;
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length).order(ByteOrder.LITTLE_ENDIAN);
+        record.position(RECORD_HEADER_SIZE);
+        record.putInt((int) expense.getDate().toEpochDay());
+        record.putLong(expense.getAmountCents());
+        record.putInt(category.length).put(category);
+        record.putInt(notes.length).put(notes);
+
+        CRC32C checksum = new CRC32C();
+        checksum.update(record.array(), RECORD_HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(Integer.BYTES, (int) checksum.getValue());
+        record.flip();
+
+        long position = channel.size();
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        recordCount++;
+        unsynced++;
+        if (unsynced >= syncEvery || System.currentTimeMillis() - lastSync >= SYNC_INTERVAL_MILLIS) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces all appended expenses to disk.
+     *
+     * @throws IOException if the journal cannot be synced
+     */
+    public void sync() throws IOException {
+        if (unsynced > 0) {
+            channel.force(false);
+            unsynced = 0;
+        }
+        lastSync = System.currentTimeMillis();
+    }
+
+    /**
+     * Writes a new base file holding the old one followed by all journaled
+     * expenses as CSV lines, then empties the journal. Lines are written as
+     * {@code date;category;amount;notes}, which CsvLoader reads in files
+     * using either separator.
+     *
+     * <p>The new file is written next to the base as {@code <base>.compact},
+     * forced to disk and renamed over the base in one atomic step, so a crash
+     * leaves either the old or the new base file, never a torn one. The
+     * journal is emptied only after the rename; a crash in between leaves a
+     * journal that no longer matches the new base, which the next open sets
+     * aside as stale, so its expenses are not added twice.
+     *
+     * @return number of expenses moved to the base file
+     * @throws IOException if the base file or the journal cannot be written
+     */
+    public long compact() throws IOException {
+        sync();
+        List<Expense> journaled = new ArrayList<>();
+        replay(journaled::add);
+        if (journaled.isEmpty()) {
+            return 0;
+        }
+
+        Path compacted = basePath.resolveSibling(basePath.getFileName() + ".compact");
+        try {
+            writeCompacted(compacted, journaled);
+            Files.move(compacted, basePath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(compacted);
+            throw e;
+        }
+        syncDirectory(basePath.toAbsolutePath().getParent());
+
+        channel.truncate(0);
+        writeHeader();
+        recordCount = 0;
+        return journaled.size();
+    }
+
+    /**
+     * Writes the base file's bytes and then the journaled expenses to a new file, and forces it to disk.
+     */
+    private void writeCompacted(Path target, List<Expense> journaled) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            boolean needsNewline = false;
+            try (FileChannel base = FileChannel.open(basePath, StandardOpenOption.READ)) {
+                long size = base.size();
+                for (long position = 0; position < size; ) {
+                    position += base.transferTo(position, size - position, out);
+                }
+                if (size > 0) {
+                    ByteBuffer last = ByteBuffer.allocate(1);
+                    base.read(last, size - 1);
+                    needsNewline = last.get(0) != '\n';
+                }
+            }
+            // CsvLoader reads the base file with the default charset
+            Writer writer = Channels.newWriter(out, Charset.defaultCharset());
+            StringBuilder line = new StringBuilder();
+            if (needsNewline) {
+                writer.write('\n');
+            }
+            for (Expense expense : journaled) {
+                line.setLength(0);
+                DateUtils.appendDate(line, expense.getDate());
+                line.append(';').append(expense.getCategory()).append(';');
+                TextUtils.appendAmount(line, expense.getAmountCents());
+                line.append(';').append(expense.getNotes()).append('\n');
+                writer.write(line.toString());
+            }
+            writer.flush();
+            out.force(true);
+        }
+    }
+
+    /**
+     * Forces a directory's entries to disk, so a rename in it survives a
+     * crash. Not every platform can open a directory; there the rename is
+     * left to the file system.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported here (for example on Windows)
+        }
+    }
+
+    /**
+     * Checks that an expense can be journaled and later compacted into a CSV
+     * line that reads back as the same expense.
+     *
+     * @param expense the expense to check
+     * @throws IllegalArgumentException if a field cannot be written as CSV
+     */
+    public static void validate(Expense expense) {
+        checkField("Category", expense.getCategory());
+        checkField("Notes", expense.getNotes());
+    }
+
+    private static void checkField(String name, String value) {
+        if (value.indexOf(';') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException(name + " cannot contain ';' or line breaks");
+        }
+        if (!value.equals(value.trim())) {
+            throw new IllegalArgumentException(name + " cannot start or end with whitespace");
+        }
+        if (!Charset.defaultCharset().newEncoder().canEncode(value)) {
+            throw new IllegalArgumentException(name + " contains characters that cannot be saved in "
+                    + Charset.defaultCharset());
+        }
+    }
+
+    /**
+     * Syncs and closes the journal.
+     *
+     * @throws IOException if the journal cannot be synced or closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(Files.size(basePath));
+        header.putLong(Files.getLastModifiedTime(basePath).toMillis());
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+        channel.force(true);
+    }
+
+    private boolean headerMatchesBase() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                return false;
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a BudgetBuddy journal: " + journalPath);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported journal version " + version + "; expected " + VERSION);
+        }
+        return header.getLong() == Files.size(basePath)
+                && header.getLong() == Files.getLastModifiedTime(basePath).toMillis();
+    }
+
+    private static Expense decode(ByteBuffer payload) {
+        LocalDate date = LocalDate.ofEpochDay(payload.getInt());
+        long amountCents = payload.getLong();
+        String category = getString(payload);
+        String notes = getString(payload);
+        return Expense.ofCents(date, category, amountCents, notes);
+    }
+
+    private static String getString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,499 @@
+package io;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import model.CategoryDictionary;
+import model.Expense;
+
+/**
+ * Reads and writes binary snapshots of parsed expenses, so a ledger can be
+ * reloaded without parsing its CSV text again.
+ *
+ * <p>A snapshot (little-endian) holds a header, a category string table,
+ * blocks of rows and a CRC32C checksum of everything before it:
+ * <pre>
+ *   int magic, int version, long rowCount,
+ *   long sourceSize, long sourceModified, int length + UTF-8 sourcePath,
+ *   long journalRows,
+ *   int categoryCount, then per category: int length + UTF-8 name
+ *   per block: int rows, int notesLength,
+ *              int[rows] epochDay, long[rows] amountCents,
+ *              int[rows] categoryId, int[rows] notesEnd, UTF-8 notes
+ *   long checksum
+ * </pre>
+ * The source fields record the CSV file the rows came from; a snapshot is
+ * stale once that file's size or modification time changes. The last
+ * journalRows rows came from that file's journal (see ExpenseJournal), so
+ * only journal records after them need replaying on top of the snapshot.
+ * Snapshots are read through memory-mapped regions of the file.
+ */
+public class ExpenseSnapshot implements Closeable {
+    /** Current snapshot format version. */
+    public static final int VERSION = 3;
+
+    private static final int MAGIC = 0x50534242; // "BBSP" read little-endian
+    private static final int BLOCK_ROWS = 16 * 1024;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int REGION_SIZE = 1 << 30;
+    private static final int MAX_NOTES_ENTRIES = 1 << 16;
+    private static final int DATE_CACHE_SIZE = 4096;
+
+    private final FileInputStream input;
+    private final SnapshotInput in;
+    private final Header header;
+
+    private ExpenseSnapshot(FileInputStream input, SnapshotInput in, Header header) {
+        this.input = input;
+        this.in = in;
+        this.header = header;
+    }
+
+    /**
+     * Returns the snapshot path used for a CSV file when none is given.
+     *
+     * @param csvPath the CSV file path
+     * @return the default snapshot path
+     */
+    public static String defaultPath(String csvPath) {
+        return csvPath + ".snap";
+    }
+
+    /**
+     * Writes expenses to a snapshot file.
+     *
+     * @param snapshotPath the snapshot file to create or replace
+     * @param expenses     the expenses to save, in order
+     * @param sourcePath   the CSV file the expenses were loaded from, or null
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void save(String snapshotPath, List<Expense> expenses, String sourcePath) throws IOException {
+        save(snapshotPath, expenses, sourcePath, 0);
+    }
+
+    /**
+     * Writes expenses to a snapshot file, the last of which were replayed
+     * from the source file's journal.
+     *
+     * @param snapshotPath the snapshot file to create or replace
+     * @param expenses     the expenses to save, in order
+     * @param sourcePath   the CSV file the expenses were loaded from, or null
+     * @param journalRows  how many of the last expenses are the first records of the source's journal
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void save(String snapshotPath, List<Expense> expenses, String sourcePath, long journalRows)
+            throws IOException {
+        // Snapshot category ids, indexed by CategoryDictionary id; -1 if not used
+        List<String> categories = new ArrayList<>();
+        int[] categoryIds = new int[CategoryDictionary.getInstance().size()];
+        Arrays.fill(categoryIds, -1);
+        for (Expense expense : expenses) {
+            int categoryId = expense.getCategoryId();
+            if (categoryIds[categoryId] < 0) {
+                categoryIds[categoryId] = categories.size();
+                categories.add(expense.getCategory());
+            }
+        }
+
+        try (SnapshotOutput out = new SnapshotOutput(new FileOutputStream(snapshotPath).getChannel())) {
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(expenses.size());
+            if (sourcePath != null) {
+                Path source = Paths.get(sourcePath).toAbsolutePath().normalize();
+                out.putLong(Files.size(source));
+                out.putLong(Files.getLastModifiedTime(source).toMillis());
+                out.putString(source.toString());
+            } else {
+                out.putLong(-1);
+                out.putLong(-1);
+                out.putString("");
+            }
+            out.putLong(journalRows);
+            out.putInt(categories.size());
+            for (String category : categories) {
+                out.putString(category);
+            }
+
+            byte[][] notes = new byte[BLOCK_ROWS][];
+            for (int blockStart = 0; blockStart < expenses.size(); blockStart += BLOCK_ROWS) {
+                int rows = Math.min(BLOCK_ROWS, expenses.size() - blockStart);
+                List<Expense> block = expenses.subList(blockStart, blockStart + rows);
+
+                int notesLength = 0;
+                for (int i = 0; i < rows; i++) {
+                    notes[i] = block.get(i).getNotes().getBytes(StandardCharsets.UTF_8);
+                    notesLength += notes[i].length;
+                }
+                out.putInt(rows);
+                out.putInt(notesLength);
+                for (Expense expense : block) {
+                    out.putInt((int) expense.getDate().toEpochDay());
+                }
+                for (Expense expense : block) {
+                    out.putLong(expense.getAmountCents());
+                }
+                for (Expense expense : block) {
+                    out.putInt(categoryIds[expense.getCategoryId()]);
+                }
+                int notesEnd = 0;
+                for (int i = 0; i < rows; i++) {
+                    notesEnd += notes[i].length;
+                    out.putInt(notesEnd);
+                }
+                for (int i = 0; i < rows; i++) {
+                    out.putBytes(notes[i]);
+                }
+            }
+            out.putChecksum();
+        }
+    }
+
+    /**
+     * Checks whether a snapshot was saved from a CSV file that has not changed
+     * since, so it can be loaded in place of that file.
+     *
+     * @param snapshotPath the snapshot file
+     * @param csvPath      the CSV file
+     * @return true if the snapshot exists, was saved from the CSV file and is
+     *         not out of date
+     * @throws IOException if the snapshot exists but cannot be read or is not a snapshot
+     */
+    public static boolean isUpToDate(String snapshotPath, String csvPath) throws IOException {
+        if (!Files.exists(Paths.get(snapshotPath))) {
+            return false;
+        }
+        try (FileInputStream input = new FileInputStream(snapshotPath);
+                FileChannel channel = input.getChannel()) {
+            Header header = new SnapshotInput(channel).readHeader();
+            String source = Paths.get(csvPath).toAbsolutePath().normalize().toString();
+            return header.sourcePath.equals(source) && Files.exists(Paths.get(source)) && header.isFresh();
+        }
+    }
+
+    /**
+     * Opens a snapshot for loading. The checksum, format version and source
+     * file are all checked here, before any expense is read.
+     *
+     * @param snapshotPath the snapshot file
+     * @return the open snapshot
+     * @throws IOException if the snapshot cannot be read, is corrupt, has an
+     *                     unsupported version or is out of date
+     */
+    public static ExpenseSnapshot open(String snapshotPath) throws IOException {
+        FileInputStream input = new FileInputStream(snapshotPath);
+        try {
+            SnapshotInput in = new SnapshotInput(input.getChannel());
+            in.verifyChecksum();
+            Header header = in.readHeader();
+            if (!header.isFresh()) {
+                throw new IOException("Snapshot is out of date: " + header.sourcePath
+                        + " has changed since the snapshot was saved");
+            }
+            return new ExpenseSnapshot(input, in, header);
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of expenses in the snapshot.
+     *
+     * @return row count
+     */
+    public long getRowCount() {
+        return header.rowCount;
+    }
+
+    /**
+     * Returns how many of the last expenses were replayed from the source
+     * file's journal when the snapshot was saved.
+     *
+     * @return journal record count covered by the snapshot
+     */
+    public long getJournalRows() {
+        return header.journalRows;
+    }
+
+    /**
+     * Reads all expenses from the snapshot.
+     *
+     * @param consumer receives each expense, in saved order
+     * @return number of expenses read
+     * @throws IOException if the snapshot cannot be read
+     */
+    public long readAll(Consumer<Expense> consumer) throws IOException {
+        return in.readRows(header, consumer, () -> { });
+    }
+
+    /**
+     * Reads all expenses from the snapshot one saved block at a time, so
+     * they can be added in bulk (see ExpenseRepository.addAll).
+     *
+     * @param consumer receives each block's expenses, in saved order; the
+     *                 list is reused once the consumer returns
+     * @return number of expenses read
+     * @throws IOException if the snapshot cannot be read
+     */
+    public long readBlocks(Consumer<List<Expense>> consumer) throws IOException {
+        List<Expense> block = new ArrayList<>();
+        return in.readRows(header, block::add, () -> {
+            consumer.accept(block);
+            block.clear();
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * Header fields of a snapshot.
+     */
+    private static class Header {
+        long rowCount;
+        long sourceSize;
+        long sourceModified;
+        String sourcePath;
+        long journalRows;
+        String[] categories;
+
+        boolean isFresh() throws IOException {
+            if (sourcePath.isEmpty()) {
+                return true;
+            }
+            Path source = Paths.get(sourcePath);
+            if (!Files.exists(source)) {
+                // Nothing to compare against; the snapshot stands on its own
+                return true;
+            }
+            return Files.size(source) == sourceSize
+                    && Files.getLastModifiedTime(source).toMillis() == sourceModified;
+        }
+    }
+
+    /**
+     * Buffered little-endian writer that keeps a running checksum.
+     */
+    private static class SnapshotOutput implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C checksum = new CRC32C();
+
+        SnapshotOutput(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            putBytes(bytes);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * Writes the checksum of everything written so far.
+         */
+        void putChecksum() throws IOException {
+            flush();
+            buffer.putLong(checksum.getValue());
+            flush();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads a snapshot through memory-mapped regions of the file.
+     */
+    private static class SnapshotInput {
+        private final FileChannel channel;
+        private final long fileSize;
+        private MappedByteBuffer region;
+        private long regionStart;
+        private long position;
+
+        SnapshotInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.fileSize = channel.size();
+        }
+
+        /**
+         * Checks the trailing checksum against the rest of the file.
+         */
+        void verifyChecksum() throws IOException {
+            long dataSize = fileSize - Long.BYTES;
+            if (dataSize < 0) {
+                throw new IOException("Not a BudgetBuddy snapshot");
+            }
+            CRC32C checksum = new CRC32C();
+            for (long start = 0; start < dataSize; start += REGION_SIZE) {
+                long length = Math.min(REGION_SIZE, dataSize - start);
+                checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+            }
+            ByteBuffer stored = channel.map(FileChannel.MapMode.READ_ONLY, dataSize, Long.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (stored.getLong(0) != checksum.getValue()) {
+                throw new IOException("Snapshot checksum mismatch; the file is corrupt");
+            }
+        }
+
+        Header readHeader() throws IOException {
+            position = 0;
+            if (fileSize < 2 * Integer.BYTES || getInt() != MAGIC) {
+                throw new IOException("Not a BudgetBuddy snapshot");
+            }
+            int version = getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + "; expected " + VERSION);
+            }
+            Header header = new Header();
+            header.rowCount = getLong();
+            header.sourceSize = getLong();
+            header.sourceModified = getLong();
+            header.sourcePath = getString();
+            header.journalRows = getLong();
+            header.categories = new String[getInt()];
+            for (int i = 0; i < header.categories.length; i++) {
+                header.categories[i] = getString();
+            }
+            return header;
+        }
+
+        long readRows(Header header, Consumer<Expense> consumer, Runnable blockEnd) throws IOException {
+            ByteStringDictionary notes = new ByteStringDictionary(StandardCharsets.UTF_8, MAX_NOTES_ENTRIES);
+            LocalDate[] dateCache = new LocalDate[DATE_CACHE_SIZE];
+            int[] dictionaryIds = new int[header.categories.length];
+            for (int i = 0; i < dictionaryIds.length; i++) {
+                dictionaryIds[i] = CategoryDictionary.getInstance().idOf(header.categories[i]);
+            }
+
+            long loaded = 0;
+            while (loaded < header.rowCount) {
+                int rows = getInt();
+                int notesLength = getInt();
+                int offset = map(position, (long) rows * 20 + notesLength);
+                int days = offset;
+                int amounts = days + rows * Integer.BYTES;
+                int categoryIds = amounts + rows * Long.BYTES;
+                int notesEnds = categoryIds + rows * Integer.BYTES;
+                int notesStart = notesEnds + rows * Integer.BYTES;
+
+                int noteStart = 0;
+                for (int i = 0; i < rows; i++) {
+                    int epochDay = region.getInt(days + i * Integer.BYTES);
+                    int key = epochDay & (DATE_CACHE_SIZE - 1);
+                    LocalDate date = dateCache[key];
+                    if (date == null || date.toEpochDay() != epochDay) {
+                        date = LocalDate.ofEpochDay(epochDay);
+                        dateCache[key] = date;
+                    }
+                    int noteEnd = region.getInt(notesEnds + i * Integer.BYTES);
+                    consumer.accept(Expense.ofCents(date,
+                            dictionaryIds[region.getInt(categoryIds + i * Integer.BYTES)],
+                            region.getLong(amounts + i * Long.BYTES),
+                            notes.lookup(region, notesStart + noteStart, notesStart + noteEnd)));
+                    noteStart = noteEnd;
+                }
+                position += (long) rows * 20 + notesLength;
+                loaded += rows;
+                blockEnd.run();
+            }
+            return loaded;
+        }
+
+        private int getInt() throws IOException {
+            int offset = map(position, Integer.BYTES);
+            int value = region.getInt(offset);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        private long getLong() throws IOException {
+            int offset = map(position, Long.BYTES);
+            long value = region.getLong(offset);
+            position += Long.BYTES;
+            return value;
+        }
+
+        private String getString() throws IOException {
+            int length = getInt();
+            int offset = map(position, length);
+            byte[] bytes = new byte[length];
+            region.get(offset, bytes);
+            position += length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Makes sure [start, start + length) is mapped and returns the offset
+         * of start within the mapped region.
+         */
+        private int map(long start, long length) throws IOException {
+            if (start + length > fileSize - Long.BYTES) {
+                throw new IOException("Snapshot is truncated");
+            }
+            if (region == null || start < regionStart || start + length > regionStart + region.capacity()) {
+                long size = Math.min(Math.max(REGION_SIZE, length), fileSize - start);
+                region = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                region.order(ByteOrder.LITTLE_ENDIAN);
+                regionStart = start;
+            }
+            return (int) (start - regionStart);
+        }
+    }
+}
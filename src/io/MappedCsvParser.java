@@ -0,0 +1,286 @@
+package io;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import model.CategoryDictionary;
+import model.Expense;
+import util.DateUtils;
+import util.TextUtils;
+
+/**
+ * Parses a CSV file by memory-mapping it and scanning the bytes directly.
+ * Dates in YYYY-MM-DD form and plain decimal amounts are parsed straight
+ * from the mapped bytes; notes strings are interned through a dictionary,
+ * and each distinct category is resolved to its dictionary id once. Values in any other form go through the same parsers as
+ * CsvLoader.parseLine, so results and error messages are identical.
+ */
+class MappedCsvParser {
+    private static final int REGION_SIZE = 1 << 30;
+    private static final int MAX_NOTES_ENTRIES = 1 << 16;
+    // Integer digits that always fit in a long once scaled to cents
+    private static final int MAX_AMOUNT_DIGITS = 16;
+    private static final int DATE_CACHE_SIZE = 4096;
+
+    private final Charset charset;
+    private final ByteStringDictionary categories;
+    private final ByteStringDictionary notes;
+    private final ToIntFunction<String> categoryIds = CategoryDictionary.getInstance()::idOf;
+    private final LocalDate[] dateCache = new LocalDate[DATE_CACHE_SIZE];
+    // Field boundaries of the current line: field i spans [bounds[i], bounds[i + 1] - 1)
+    private final int[] bounds = new int[5];
+
+    /**
+     * Creates a parser for a single file.
+     */
+    MappedCsvParser() {
+        // FileReader decodes with the default charset, so we do the same
+        this.charset = Charset.defaultCharset();
+        this.categories = new ByteStringDictionary(charset, Integer.MAX_VALUE);
+        this.notes = new ByteStringDictionary(charset, MAX_NOTES_ENTRIES);
+    }
+
+    /**
+     * Parses all expenses in a file.
+     *
+     * @param filePath path to the CSV file
+     * @param consumer receives each parsed expense, in file order
+     * @throws IOException              if file cannot be read
+     * @throws IllegalArgumentException if a line is invalid
+     */
+    void parse(String filePath, Consumer<Expense> consumer) throws IOException {
+        // FileInputStream reports a missing file the same way FileReader does
+        try (FileInputStream input = new FileInputStream(filePath);
+                FileChannel channel = input.getChannel()) {
+            long fileSize = channel.size();
+            long regionStart = 0;
+            int lineNumber = 0;
+            boolean firstLine = true;
+            boolean skipLineFeed = false;
+
+            while (regionStart < fileSize) {
+                int length = (int) Math.min(REGION_SIZE, fileSize - regionStart);
+                boolean lastRegion = regionStart + length == fileSize;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, length);
+
+                int position = 0;
+                if (skipLineFeed && buffer.get(0) == '\n') {
+                    position = 1;
+                }
+                skipLineFeed = false;
+
+                while (position < length) {
+                    int end = position;
+                    while (end < length && buffer.get(end) != '\n' && buffer.get(end) != '\r') {
+                        end++;
+                    }
+                    if (end == length && !lastRegion) {
+                        if (position == 0) {
+                            throw new IOException("Line " + (lineNumber + 1) + " is too long");
+                        }
+                        // Line continues past this region; map again from its start
+                        break;
+                    }
+                    lineNumber++;
+
+                    int start = trimStart(buffer, position, end);
+                    int stop = trimEnd(buffer, start, end);
+                    if (start < stop) {
+                        if (firstLine && isHeader(buffer, start, stop)) {
+                            firstLine = false;
+                        } else {
+                            firstLine = false;
+                            try {
+                                consumer.accept(parseLine(buffer, start, stop));
+                            } catch (IllegalArgumentException e) {
+                                throw new IllegalArgumentException(
+                                        "Error at line " + lineNumber + ": " + e.getMessage(), e);
+                            }
+                        }
+                    }
+
+                    if (end < length && buffer.get(end) == '\r') {
+                        if (end + 1 < length) {
+                            if (buffer.get(end + 1) == '\n') {
+                                end++;
+                            }
+                        } else {
+                            skipLineFeed = true;
+                        }
+                    }
+                    position = end + 1;
+                }
+                regionStart += position;
+            }
+        }
+    }
+
+    private static boolean isHeader(MappedByteBuffer buffer, int start, int stop) {
+        return stop - start >= 4
+                && (buffer.get(start) == 'd' || buffer.get(start) == 'D')
+                && (buffer.get(start + 1) == 'a' || buffer.get(start + 1) == 'A')
+                && (buffer.get(start + 2) == 't' || buffer.get(start + 2) == 'T')
+                && (buffer.get(start + 3) == 'e' || buffer.get(start + 3) == 'E');
+    }
+
+    /**
+     * Parses the trimmed line in [start, stop), mirroring CsvLoader.parseLine.
+     */
+    private Expense parseLine(MappedByteBuffer buffer, int start, int stop) {
+        byte separator = ',';
+        for (int i = start; i < stop; i++) {
+            if (buffer.get(i) == ';') {
+                separator = ';';
+                break;
+            }
+        }
+
+        bounds[0] = start;
+        int fields = 1;
+        for (int i = start; i < stop; i++) {
+            if (buffer.get(i) == separator) {
+                if (fields < bounds.length) {
+                    bounds[fields] = i + 1;
+                }
+                fields++;
+            }
+        }
+        for (int i = fields; i < bounds.length; i++) {
+            bounds[i] = stop + 1;
+        }
+
+        if (fields < 3) {
+            throw new IllegalArgumentException(
+                    "Expected at least 3 fields (date, category, amount), found " + fields);
+        }
+
+        LocalDate date = parseDate(buffer, bounds[0], bounds[1] - 1);
+        long amountCents = parseAmount(buffer, bounds[2], bounds[3] - 1);
+
+        int categoryStart = trimStart(buffer, bounds[1], bounds[2] - 1);
+        int categoryEnd = trimEnd(buffer, categoryStart, bounds[2] - 1);
+        if (categoryStart == categoryEnd) {
+            throw new IllegalArgumentException("Category cannot be empty");
+        }
+        int categoryId = categories.lookupId(buffer, categoryStart, categoryEnd, categoryIds);
+
+        String note = "";
+        if (fields > 3) {
+            int notesStart = trimStart(buffer, bounds[3], bounds[4] - 1);
+            int notesEnd = trimEnd(buffer, notesStart, bounds[4] - 1);
+            note = notes.lookup(buffer, notesStart, notesEnd);
+        }
+
+        if (amountCents < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative");
+        }
+
+        return Expense.ofCents(date, categoryId, amountCents, note);
+    }
+
+    private LocalDate parseDate(MappedByteBuffer buffer, int fieldStart, int fieldEnd) {
+        int start = trimStart(buffer, fieldStart, fieldEnd);
+        int end = trimEnd(buffer, start, fieldEnd);
+
+        if (end - start == 10 && buffer.get(start + 4) == '-' && buffer.get(start + 7) == '-') {
+            int year = digits(buffer, start, 4);
+            int month = digits(buffer, start + 5, 2);
+            int day = digits(buffer, start + 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                int key = (year * 416 + month * 32 + day) & (DATE_CACHE_SIZE - 1);
+                LocalDate cached = dateCache[key];
+                if (cached != null && cached.getYear() == year
+                        && cached.getMonthValue() == month && cached.getDayOfMonth() == day) {
+                    return cached;
+                }
+                try {
+                    LocalDate date = LocalDate.of(year, month, day);
+                    dateCache[key] = date;
+                    return date;
+                } catch (DateTimeException e) {
+                    // Let DateUtils produce the usual error message
+                }
+            }
+        }
+        return DateUtils.parseDate(decode(buffer, start, end));
+    }
+
+    private long parseAmount(MappedByteBuffer buffer, int fieldStart, int fieldEnd) {
+        int start = trimStart(buffer, fieldStart, fieldEnd);
+        int end = trimEnd(buffer, start, fieldEnd);
+
+        // Plain decimals are converted to cents straight from the bytes,
+        // rounding half-up like TextUtils.parseAmount
+        long units = 0;
+        int digitCount = 0;
+        int fractionDigits = -1;
+        long fraction = 0;
+        boolean roundUp = false;
+        boolean plain = start < end;
+        for (int i = start; i < end && plain; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                if (fractionDigits < 0) {
+                    units = units * 10 + (b - '0');
+                    plain = ++digitCount <= MAX_AMOUNT_DIGITS;
+                } else if (++fractionDigits <= 2) {
+                    fraction = fraction * 10 + (b - '0');
+                } else if (fractionDigits == 3) {
+                    roundUp = b >= '5';
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                plain = false;
+            }
+        }
+
+        if (plain && (digitCount > 0 || fractionDigits > 0)) {
+            return units * 100 + (fractionDigits == 1 ? fraction * 10 : fraction) + (roundUp ? 1 : 0);
+        }
+
+        try {
+            return TextUtils.parseAmount(decode(buffer, start, end));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount format: " + decode(buffer, fieldStart, fieldEnd), e);
+        }
+    }
+
+    private static int digits(MappedByteBuffer buffer, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private String decode(MappedByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, charset);
+    }
+
+    private static int trimStart(MappedByteBuffer buffer, int start, int end) {
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(MappedByteBuffer buffer, int start, int end) {
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,291 @@
+package io;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import model.Expense;
+
+/**
+ * Parses a CSV file in parallel by splitting it into newline-aligned byte
+ * ranges, parsing each range on a fork-join pool and merging the results in
+ * file order. Line numbers in error messages are absolute, as in the
+ * sequential reader.
+ */
+class ParallelCsvParser {
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 64 << 20;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final CsvLoader loader;
+    private final ForkJoinPool pool;
+    private final Charset charset;
+
+    /**
+     * Creates a parallel parser that uses the loader's line parser.
+     *
+     * @param loader the loader whose parseLine is used for each record
+     */
+    ParallelCsvParser(CsvLoader loader) {
+        this.loader = loader;
+        this.pool = ForkJoinPool.commonPool();
+        // FileReader decodes with the default charset, so we do the same
+        this.charset = Charset.defaultCharset();
+    }
+
+    /**
+     * Parses all expenses in a file.
+     *
+     * @param filePath path to the CSV file
+     * @return list of parsed expenses, in file order
+     * @throws IOException              if file cannot be read
+     * @throws IllegalArgumentException if a line is invalid
+     */
+    List<Expense> parse(String filePath) throws IOException {
+        // FileInputStream reports a missing file the same way FileReader does
+        try (FileInputStream input = new FileInputStream(filePath);
+                FileChannel channel = input.getChannel()) {
+            long fileSize = channel.size();
+            long[] header = findDataStart(channel, fileSize);
+            long dataStart = header[0];
+            int lineBase = (int) header[1];
+
+            List<long[]> ranges = splitRanges(channel, dataStart, fileSize);
+            List<ChunkTask> tasks = new ArrayList<>(ranges.size());
+            for (long[] range : ranges) {
+                tasks.add(new ChunkTask(channel, range[0], (int) (range[1] - range[0])));
+            }
+
+            List<ChunkResult> results = pool.submit(() -> {
+                List<ChunkResult> collected = new ArrayList<>(tasks.size());
+                for (ChunkTask task : RecursiveTask.invokeAll(tasks)) {
+                    collected.add(task.join());
+                }
+                return collected;
+            }).join();
+
+            return merge(results, lineBase);
+        } catch (ChunkReadException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Finds where data lines begin. If the first non-empty line is a header
+     * (starts with "date"), data begins after it.
+     *
+     * @return {byte offset of the first data line, number of lines before it}
+     */
+    private long[] findDataStart(FileChannel channel, long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        StringBuilder firstLine = new StringBuilder();
+        long position = 0;
+        int lines = 0;
+        boolean previousCr = false;
+
+        while (position < fileSize) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++, position++) {
+                byte b = buffer.get(i);
+                if (b == '\n' || b == '\r') {
+                    if (b == '\n' && previousCr) {
+                        // Second half of a \r\n terminator
+                        previousCr = false;
+                        continue;
+                    }
+                    if (firstLine.length() > 0) {
+                        return headerResult(firstLine, position, b == '\r', channel, lines);
+                    }
+                    lines++;
+                    previousCr = b == '\r';
+                    continue;
+                }
+                previousCr = false;
+                if (firstLine.length() > 0 || (b & 0xFF) > ' ') {
+                    if (firstLine.length() < 4) {
+                        firstLine.append((char) (b & 0xFF));
+                    }
+                }
+            }
+        }
+
+        if (firstLine.length() > 0) {
+            return headerResult(firstLine, fileSize, false, channel, lines);
+        }
+        return new long[] { fileSize, lines };
+    }
+
+    private long[] headerResult(StringBuilder firstLine, long lineEnd, boolean endsWithCr, FileChannel channel,
+            int lines) throws IOException {
+        if (!firstLine.toString().toLowerCase().startsWith("date")) {
+            return new long[] { 0, 0 };
+        }
+        long next = lineEnd + 1;
+        if (endsWithCr && next < channel.size()) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            if (channel.read(one, next) == 1 && one.get(0) == '\n') {
+                next++;
+            }
+        }
+        return new long[] { Math.min(next, channel.size()), lines + 1 };
+    }
+
+    /**
+     * Splits [start, end) into ranges that each end just after a '\n' byte.
+     */
+    private List<long[]> splitRanges(FileChannel channel, long start, long end) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        long length = end - start;
+        long target = length / (pool.getParallelism() * 4L);
+        int chunkSize = (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, target));
+
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long rangeStart = start;
+        while (rangeStart < end) {
+            long rangeEnd = rangeStart + chunkSize;
+            if (rangeEnd >= end) {
+                rangeEnd = end;
+            } else {
+                rangeEnd = nextLineStart(channel, rangeEnd, end, buffer);
+            }
+            ranges.add(new long[] { rangeStart, rangeEnd });
+            rangeStart = rangeEnd;
+        }
+        return ranges;
+    }
+
+    private long nextLineStart(FileChannel channel, long position, long end, ByteBuffer buffer) throws IOException {
+        while (position < end) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    private List<Expense> merge(List<ChunkResult> results, int lineBase) {
+        int total = 0;
+        int linesBefore = lineBase;
+        for (ChunkResult result : results) {
+            if (result.error != null) {
+                int lineNumber = linesBefore + result.errorLine;
+                throw new IllegalArgumentException(
+                        "Error at line " + lineNumber + ": " + result.error.getMessage(), result.error);
+            }
+            total += result.expenses.size();
+            linesBefore += result.lineCount;
+        }
+
+        List<Expense> expenses = new ArrayList<>(total);
+        for (ChunkResult result : results) {
+            expenses.addAll(result.expenses);
+        }
+        return expenses;
+    }
+
+    /**
+     * Parsed contents of one byte range.
+     */
+    private static class ChunkResult {
+        final List<Expense> expenses = new ArrayList<>();
+        int lineCount;
+        int errorLine;
+        IllegalArgumentException error;
+    }
+
+    /**
+     * Wraps an IOException thrown inside a fork-join task.
+     */
+    private static class ChunkReadException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ChunkReadException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Reads and parses one byte range. Lines are split the same way as
+     * BufferedReader.readLine: on "\n", "\r" or "\r\n".
+     */
+    private class ChunkTask extends RecursiveTask<ChunkResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long offset;
+        private final int length;
+
+        ChunkTask(FileChannel channel, long offset, int length) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new ChunkReadException(e);
+            }
+
+            String text = new String(buffer.array(), 0, buffer.position(), charset);
+            ChunkResult result = new ChunkResult();
+            CategoryIdCache categories = new CategoryIdCache();
+            int lineStart = 0;
+            int textLength = text.length();
+            while (lineStart < textLength) {
+                int lineEnd = lineStart;
+                while (lineEnd < textLength && text.charAt(lineEnd) != '\n' && text.charAt(lineEnd) != '\r') {
+                    lineEnd++;
+                }
+                result.lineCount++;
+
+                String line = text.substring(lineStart, lineEnd).trim();
+                if (!line.isEmpty()) {
+                    try {
+                        result.expenses.add(loader.parseLine(line, result.lineCount, categories));
+                    } catch (IllegalArgumentException e) {
+                        result.errorLine = result.lineCount;
+                        result.error = e;
+                        return result;
+                    }
+                }
+
+                if (lineEnd < textLength && text.charAt(lineEnd) == '\r'
+                        && lineEnd + 1 < textLength && text.charAt(lineEnd + 1) == '\n') {
+                    lineEnd++;
+                }
+                lineStart = lineEnd + 1;
+            }
+            return result;
+        }
+    }
+}
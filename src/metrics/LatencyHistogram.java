@@ -0,0 +1,151 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds, laid out like an HdrHistogram:
+ * values below 2 * SUB_BUCKETS are counted exactly, and every power-of-two
+ * range above is split into SUB_BUCKETS equal sub-buckets. A percentile is
+ * reported as its sub-bucket's midpoint, which is within 1% of every value
+ * in the sub-bucket. Memory is fixed (about 29 KB), whatever is recorded.
+ * <p>
+ * Recording is a few uncontended atomic adds, so it is safe and cheap from
+ * any number of threads; reads while recording see a recent, possibly
+ * slightly inconsistent, state.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below 2 * SUB_BUCKETS, then SUB_BUCKETS per power of two up to 2^63
+    private static final int BUCKETS = 2 * SUB_BUCKETS + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Creates an empty histogram. Use Metrics.histogram to get a registered one.
+     *
+     * @param name the metric name, such as "csv.load"
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the metric name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records the time since a start time from Metrics.start(). Does
+     * nothing when metrics are disabled.
+     *
+     * @param startNanos the start time
+     */
+    public void recordSince(long startNanos) {
+        if (Metrics.ENABLED) {
+            record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        totalNanos.add(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Returns the number of durations recorded.
+     *
+     * @return count
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the sum of the durations recorded.
+     *
+     * @return total in nanoseconds
+     */
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Returns the longest duration recorded, exactly.
+     *
+     * @return maximum in nanoseconds, or 0 if none
+     */
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns an approximate nearest-rank percentile of the durations.
+     *
+     * @param percent the percentile, above 0 and at most 100
+     * @return the percentile in nanoseconds, or 0 if none were recorded
+     */
+    public long percentile(double percent) {
+        if (percent <= 0 || percent > 100) {
+            throw new IllegalArgumentException("Percentile must be above 0 and at most 100: " + percent);
+        }
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent * total / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (rank <= seen) {
+                return Math.min(maxNanos(), midpoint(i));
+            }
+        }
+        return maxNanos();
+    }
+
+    static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        // value is in [2^magnitude, 2^(magnitude + 1)), magnitude > SUB_BUCKET_BITS
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long midpoint(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long low = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return low + (1L << shift) / 2;
+    }
+}
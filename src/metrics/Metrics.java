@@ -0,0 +1,198 @@
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of named counters and latency histograms for the
+ * hot paths (loading, summarizing, repository queries, report writing).
+ * Instrumented classes look their metrics up once, into static fields, so
+ * recording costs two System.nanoTime() calls and a few atomic adds.
+ * Setting -Dbudgetbuddy.metrics=false turns timing off.
+ * <p>
+ * Metrics can be written as JSON or in the Prometheus text format, to
+ * compare runs over time. Names are dotted, such as "csv.load"; durations
+ * are in nanoseconds in JSON and in seconds for Prometheus.
+ */
+public final class Metrics {
+    /** Whether durations are recorded; from -Dbudgetbuddy.metrics (default true). */
+    public static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty("budgetbuddy.metrics", "true"));
+
+    /** Percentiles written for each histogram. */
+    public static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private static final String PROMETHEUS_PREFIX = "budgetbuddy_";
+
+    // Sorted by name, so output is in a stable order
+    private static final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the counter with a name, creating it if needed.
+     *
+     * @param name the counter name, such as "csv.rows"
+     * @return the counter
+     */
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Returns the histogram with a name, creating it if needed.
+     *
+     * @param name the histogram name, such as "csv.load"
+     * @return the histogram
+     */
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    /**
+     * Returns a start time for LatencyHistogram.recordSince.
+     *
+     * @return the current System.nanoTime(), or 0 if metrics are disabled
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Returns the counters, sorted by name.
+     *
+     * @return unmodifiable view of the counters
+     */
+    public static Map<String, LongAdder> counters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    /**
+     * Returns the histograms, sorted by name.
+     *
+     * @return unmodifiable view of the histograms
+     */
+    public static Map<String, LatencyHistogram> histograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * Writes all metrics to a file.
+     *
+     * @param format   "json" or "prometheus" (or "prom")
+     * @param filePath the file to write
+     * @throws IllegalArgumentException if the format is not supported
+     * @throws IOException              if the file cannot be written
+     */
+    public static void writeTo(String format, String filePath) throws IOException {
+        boolean json;
+        switch (format == null ? "" : format.toLowerCase()) {
+            case "json":
+                json = true;
+                break;
+            case "prometheus":
+            case "prom":
+                json = false;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported metrics format: " + format
+                        + ". Supported formats: json, prometheus");
+        }
+        Path path = Paths.get(filePath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            if (json) {
+                writeJson(writer);
+            } else {
+                writePrometheus(writer);
+            }
+        }
+    }
+
+    /**
+     * Writes all metrics as one JSON object with "counters" and
+     * "histograms" members; histogram values are in nanoseconds.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public static void writeJson(Appendable out) throws IOException {
+        out.append("{\n  \"counters\": {");
+        String separator = "\n";
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            out.append(separator).append("    \"").append(entry.getKey()).append("\": ")
+                    .append(Long.toString(entry.getValue().sum()));
+            separator = ",\n";
+        }
+        out.append("\n  },\n  \"histograms\": {");
+        separator = "\n";
+        for (LatencyHistogram histogram : histograms.values()) {
+            out.append(separator).append("    \"").append(histogram.getName()).append("\": {")
+                    .append("\"count\": ").append(Long.toString(histogram.count()))
+                    .append(", \"totalNanos\": ").append(Long.toString(histogram.totalNanos()));
+            for (double percent : PERCENTILES) {
+                out.append(", \"p").append(percentileLabel(percent)).append("\": ")
+                        .append(Long.toString(histogram.percentile(percent)));
+            }
+            out.append(", \"max\": ").append(Long.toString(histogram.maxNanos())).append('}');
+            separator = ",\n";
+        }
+        out.append("\n  }\n}\n");
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format: counters
+     * as "_total" counters, histograms as summaries in seconds.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public static void writePrometheus(Appendable out) throws IOException {
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            String name = PROMETHEUS_PREFIX + entry.getKey().replace('.', '_') + "_total";
+            out.append("# TYPE ").append(name).append(" counter\n");
+            out.append(name).append(' ').append(Long.toString(entry.getValue().sum())).append('\n');
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            String name = PROMETHEUS_PREFIX + histogram.getName().replace('.', '_') + "_seconds";
+            out.append("# TYPE ").append(name).append(" summary\n");
+            for (double percent : PERCENTILES) {
+                out.append(name).append("{quantile=\"").append(quantileLabel(percent)).append("\"} ")
+                        .append(seconds(histogram.percentile(percent))).append('\n');
+            }
+            out.append(name).append("_sum ").append(seconds(histogram.totalNanos())).append('\n');
+            out.append(name).append("_count ").append(Long.toString(histogram.count())).append('\n');
+        }
+    }
+
+    /**
+     * Returns a percentile as used in metric names: "50", "99", "99.9".
+     *
+     * @param percent the percentile
+     * @return the label
+     */
+    public static String percentileLabel(double percent) {
+        return percent == Math.rint(percent) ? Long.toString((long) percent) : Double.toString(percent);
+    }
+
+    private static String quantileLabel(double percent) {
+        return new BigDecimal(Double.toString(percent)).movePointLeft(2).stripTrailingZeros().toPlainString();
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -0,0 +1,84 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps category names to dense int ids, shared by the whole application.
+ * Ids are handed out in the order names are first seen, starting at 0, and
+ * are never reused, so totals can be kept in arrays indexed by id and the
+ * names looked up only when results are shown. Ids are not reset when the
+ * repository is cleared, since expenses held elsewhere keep theirs; arrays
+ * indexed by id are sized by the ids actually in use instead.
+ * Lookups of known names do not lock; new names are added one at a time.
+ */
+public class CategoryDictionary {
+    private static CategoryDictionary instance;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private volatile int size;
+
+    private CategoryDictionary() {
+    }
+
+    public static synchronized CategoryDictionary getInstance() {
+        if (instance == null) {
+            instance = new CategoryDictionary();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the id of a category, adding the category if it is new.
+     *
+     * @param name the category name
+     * @return the category id
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(name);
+            if (id == null) {
+                id = size;
+                String[] current = names;
+                if (id == current.length) {
+                    current = Arrays.copyOf(current, id * 2);
+                }
+                current[id] = name;
+                names = current;
+                size = id + 1;
+                // Published last, so anyone who sees the id can also see the name
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Returns the name of a category id.
+     *
+     * @param id the category id
+     * @return the category name
+     * @throws IllegalArgumentException if no category has that id
+     */
+    public String nameOf(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown category id: " + id);
+        }
+        return names[id];
+    }
+
+    /**
+     * Returns the number of known categories. Every id is below this value.
+     *
+     * @return category count
+     */
+    public int size() {
+        return size;
+    }
+}
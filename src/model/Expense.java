@@ -1,20 +1,29 @@
 package model;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.Objects;
+import util.DateUtils;
+import util.TextUtils;
 
 /**
  * Represents a single expense entry with date, category, amount, and notes.
  * Immutable data class for expense records.
+ * Amounts are held as a whole number of cents, so sums are exact.
+ * The category is also kept as its CategoryDictionary id, so code that
+ * groups by category can index arrays instead of hashing names.
  */
 public class Expense {
     private final LocalDate date;
     private final String category;
-    private final double amount;
+    private final int categoryId;
+    private final long amountCents;
     private final String notes;
 
     /**
      * Creates a new Expense instance.
+     * The amount is rounded half-up to whole cents.
      *
      * @param date     the date of the expense
      * @param category the category (e.g., Food, Rent, Transport)
@@ -22,15 +31,70 @@ public class Expense {
      * @param notes    additional notes or description
      */
     public Expense(LocalDate date, String category, double amount, String notes) {
+        this(date, CategoryDictionary.getInstance().idOf(Objects.requireNonNull(category, "Category cannot be null")),
+                toCents(amount), notes);
+    }
+
+    private Expense(LocalDate date, int categoryId, long amountCents, String notes) {
         this.date = Objects.requireNonNull(date, "Date cannot be null");
-        this.category = Objects.requireNonNull(category, "Category cannot be null");
-        if (amount < 0) {
+        // The dictionary's copy, so all expenses share one string per category
+        this.category = CategoryDictionary.getInstance().nameOf(categoryId);
+        this.categoryId = categoryId;
+        if (amountCents < 0) {
             throw new IllegalArgumentException("Amount cannot be negative");
         }
-        this.amount = amount;
+        this.amountCents = amountCents;
         this.notes = notes != null ? notes : "";
     }
 
+    /**
+     * Creates an expense with an amount given in cents.
+     *
+     * @param date        the date of the expense
+     * @param category    the category (e.g., Food, Rent, Transport)
+     * @param amountCents the amount spent, in cents
+     * @param notes       additional notes or description
+     * @return the new expense
+     */
+    public static Expense ofCents(LocalDate date, String category, long amountCents, String notes) {
+        Objects.requireNonNull(category, "Category cannot be null");
+        return new Expense(date, CategoryDictionary.getInstance().idOf(category), amountCents, notes);
+    }
+
+    /**
+     * Creates an expense with an amount given in cents, for a category that
+     * already has an id.
+     *
+     * @param date        the date of the expense
+     * @param categoryId  the CategoryDictionary id of the category
+     * @param amountCents the amount spent, in cents
+     * @param notes       additional notes or description
+     * @return the new expense
+     * @throws IllegalArgumentException if the category id is unknown
+     */
+    public static Expense ofCents(LocalDate date, int categoryId, long amountCents, String notes) {
+        return new Expense(date, categoryId, amountCents, notes);
+    }
+
+    private static long toCents(double amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative");
+        }
+        if (!Double.isFinite(amount)) {
+            throw new IllegalArgumentException("Amount must be a finite number");
+        }
+        long cents = Math.round(amount * 100);
+        if (cents / 100.0 == amount) {
+            return cents;
+        }
+        // Not a whole number of cents: round the decimal value, as it is written
+        try {
+            return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount is too large: " + amount, e);
+        }
+    }
+
     public LocalDate getDate() {
         return date;
     }
@@ -39,18 +103,56 @@ public class Expense {
         return category;
     }
 
+    public int getCategoryId() {
+        return categoryId;
+    }
+
+    /**
+     * Returns the amount in currency units. Use getAmountCents() for arithmetic.
+     *
+     * @return the amount
+     */
     public double getAmount() {
-        return amount;
+        return amountCents / 100.0;
+    }
+
+    public long getAmountCents() {
+        return amountCents;
     }
 
     public String getNotes() {
         return notes;
     }
 
+    /**
+     * Appends the expense as one line: date, category padded to 12
+     * characters, amount right-aligned in 10 with 2 decimals, then notes.
+     * The amount always uses '.' as decimal separator, whatever the locale.
+     *
+     * @param text the builder to append to
+     */
+    public void appendTo(StringBuilder text) {
+        DateUtils.appendDate(text, date);
+        text.append("  ");
+        int start = text.length();
+        text.append(category);
+        for (int length = text.length() - start; length < 12; length++) {
+            text.append(' ');
+        }
+        text.append(' ');
+        start = text.length();
+        TextUtils.appendAmount(text, amountCents);
+        for (int padding = 10 - (text.length() - start); padding > 0; padding--) {
+            text.insert(start, ' ');
+        }
+        text.append("   ").append(notes);
+    }
+
     @Override
     public String toString() {
-        return String.format("%s  %-12s %10.2f   %s",
-                date, category, amount, notes);
+        StringBuilder text = new StringBuilder(64);
+        appendTo(text);
+        return text.toString();
     }
 
     @Override
@@ -60,14 +162,14 @@ public class Expense {
         if (o == null || getClass() != o.getClass())
             return false;
         Expense expense = (Expense) o;
-        return Double.compare(expense.amount, amount) == 0 &&
+        return amountCents == expense.amountCents &&
                 date.equals(expense.date) &&
-                category.equals(expense.category) &&
+                categoryId == expense.categoryId &&
                 notes.equals(expense.notes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(date, category, amount, notes);
+        return Objects.hash(date, category, amountCents, notes);
     }
 }
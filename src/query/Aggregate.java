@@ -0,0 +1,110 @@
+package query;
+
+/**
+ * An aggregate function computed for each query group: sum, count, min,
+ * max, avg, or a percentile such as p95. All but count are amounts in cents.
+ */
+public class Aggregate {
+    private enum Function { SUM, COUNT, MIN, MAX, AVG, PERCENTILE }
+
+    private final String name;
+    private final Function function;
+    private final double percent;
+
+    private Aggregate(String name, Function function, double percent) {
+        this.name = name;
+        this.function = function;
+        this.percent = percent;
+    }
+
+    /**
+     * Returns the aggregate for a name.
+     *
+     * @param name the aggregate name: sum, count, min, max, avg, or p followed
+     *             by a percentile above 0 and at most 100 (e.g. p50, p99.9)
+     * @return the aggregate
+     * @throws IllegalArgumentException if the name is not an aggregate
+     */
+    public static Aggregate parse(String name) {
+        String lower = name.toLowerCase();
+        switch (lower) {
+            case "sum":
+                return new Aggregate(lower, Function.SUM, 0);
+            case "count":
+                return new Aggregate(lower, Function.COUNT, 0);
+            case "min":
+                return new Aggregate(lower, Function.MIN, 0);
+            case "max":
+                return new Aggregate(lower, Function.MAX, 0);
+            case "avg":
+                return new Aggregate(lower, Function.AVG, 0);
+            default:
+                break;
+        }
+        if (lower.startsWith("p") && lower.length() > 1) {
+            double percent;
+            try {
+                percent = Double.parseDouble(lower.substring(1));
+            } catch (NumberFormatException e) {
+                percent = Double.NaN;
+            }
+            if (percent > 0 && percent <= 100) {
+                return new Aggregate(lower, Function.PERCENTILE, percent);
+            }
+        }
+        throw new IllegalArgumentException("Unsupported aggregate: " + name
+                + ". Supported aggregates: sum, count, min, max, avg, p<percentile> (e.g. p95)");
+    }
+
+    /**
+     * Returns the aggregate name, as used in queries and result headers.
+     *
+     * @return the aggregate name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns whether the value is an amount in cents, rather than a count.
+     *
+     * @return false for count, true otherwise
+     */
+    public boolean isAmount() {
+        return function != Function.COUNT;
+    }
+
+    /**
+     * Returns whether this aggregate needs every amount of its group.
+     */
+    boolean needsAmounts() {
+        return function == Function.PERCENTILE;
+    }
+
+    /**
+     * Returns whether this aggregate can be read from pre-computed totals.
+     */
+    boolean isTotal() {
+        return function == Function.SUM || function == Function.COUNT;
+    }
+
+    /**
+     * Computes the aggregate for a group.
+     */
+    long valueOf(GroupStats stats) {
+        switch (function) {
+            case SUM:
+                return stats.sum();
+            case COUNT:
+                return stats.count();
+            case MIN:
+                return stats.min();
+            case MAX:
+                return stats.max();
+            case AVG:
+                return stats.average();
+            default:
+                return stats.percentile(percent);
+        }
+    }
+}
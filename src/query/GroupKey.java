@@ -0,0 +1,96 @@
+package query;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.IsoFields;
+import model.Expense;
+
+/**
+ * A dimension expenses can be grouped by in a query.
+ * Each key maps an expense to a comparable value, so groups sort in
+ * calendar or alphabetical order. The keyword key is the only one with
+ * several values per expense: one per distinct word of its notes.
+ */
+public enum GroupKey {
+    DAY("day"),
+    WEEK("week"),
+    MONTH("month"),
+    QUARTER("quarter"),
+    YEAR("year"),
+    CATEGORY("category"),
+    KEYWORD("keyword");
+
+    private final String name;
+
+    GroupKey(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the key for a name.
+     *
+     * @param name the key name, e.g. "month"
+     * @return the group key
+     * @throws IllegalArgumentException if the name is not a group key
+     */
+    public static GroupKey parse(String name) {
+        for (GroupKey key : values()) {
+            if (key.name.equalsIgnoreCase(name)) {
+                return key;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported group key: " + name
+                + ". Supported keys: day, week, month, quarter, year, category, keyword");
+    }
+
+    /**
+     * Returns the key name, as used in queries and result headers.
+     *
+     * @return the key name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns whether every value of this key covers whole months, so its
+     * totals can be rolled up from monthly totals.
+     *
+     * @return true for month, quarter and year
+     */
+    boolean isMonthBased() {
+        return this == MONTH || this == QUARTER || this == YEAR;
+    }
+
+    /**
+     * Returns the group value of an expense. Not used for KEYWORD.
+     */
+    Comparable<?> valueOf(Expense expense) {
+        if (this == CATEGORY) {
+            return expense.getCategory();
+        }
+        return valueOf(expense.getDate());
+    }
+
+    /**
+     * Returns the group value of a date, for the date-based keys.
+     */
+    Comparable<?> valueOf(LocalDate date) {
+        switch (this) {
+            case DAY:
+                return date;
+            case WEEK:
+                // Zero-padded, so values sort in week order
+                return String.format("%04d-W%02d", date.get(IsoFields.WEEK_BASED_YEAR),
+                        date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+            case MONTH:
+                return YearMonth.from(date);
+            case QUARTER:
+                return date.getYear() + "-Q" + date.get(IsoFields.QUARTER_OF_YEAR);
+            case YEAR:
+                return date.getYear();
+            default:
+                throw new IllegalStateException(name + " is not a date key");
+        }
+    }
+}
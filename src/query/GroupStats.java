@@ -0,0 +1,99 @@
+package query;
+
+import java.util.Arrays;
+
+/**
+ * Running statistics for one query group. Amounts are only kept when a
+ * percentile was asked for; the other aggregates need constant space.
+ */
+class GroupStats {
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private long[] amounts;
+    private int size;
+    private boolean sorted;
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param keepAmounts whether to keep every amount, for percentiles
+     */
+    GroupStats(boolean keepAmounts) {
+        this.amounts = keepAmounts ? new long[16] : null;
+    }
+
+    /**
+     * Adds one expense amount.
+     *
+     * @param amountCents the amount, in cents
+     */
+    void add(long amountCents) {
+        count++;
+        sum += amountCents;
+        min = Math.min(min, amountCents);
+        max = Math.max(max, amountCents);
+        if (amounts != null) {
+            if (size == amounts.length) {
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            amounts[size++] = amountCents;
+            sorted = false;
+        }
+    }
+
+    /**
+     * Adds a pre-computed total of several expenses. Only count and sum
+     * are meaningful afterwards.
+     *
+     * @param totalCents the total, in cents
+     * @param rows       the number of expenses in the total
+     */
+    void addTotal(long totalCents, long rows) {
+        count += rows;
+        sum += totalCents;
+    }
+
+    long count() {
+        return count;
+    }
+
+    long sum() {
+        return sum;
+    }
+
+    long min() {
+        return count > 0 ? min : 0;
+    }
+
+    long max() {
+        return count > 0 ? max : 0;
+    }
+
+    /**
+     * Returns the mean amount, rounded half-up to whole cents.
+     */
+    long average() {
+        return count > 0 ? (sum + count / 2) / count : 0;
+    }
+
+    /**
+     * Returns the nearest-rank percentile: the smallest amount that at
+     * least the given percentage of amounts are less than or equal to.
+     *
+     * @param percent the percentile, above 0 and at most 100
+     */
+    long percentile(double percent) {
+        if (size == 0) {
+            return 0;
+        }
+        if (!sorted) {
+            Arrays.sort(amounts, 0, size);
+            sorted = true;
+        }
+        // percent * size is exact for whole percentiles, so ranks land exactly
+        int rank = (int) Math.ceil(percent * size / 100.0);
+        return amounts[Math.max(rank, 1) - 1];
+    }
+}
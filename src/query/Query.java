@@ -0,0 +1,128 @@
+package query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import util.DateUtils;
+import util.TextUtils;
+
+/**
+ * A group-by query over expenses: the keys to group by, the aggregates to
+ * compute per group, and a filter. Parsed from clauses such as
+ * {@code by month,category show sum,p95 from 2025-01-01 category Food}.
+ */
+public class Query {
+    private final List<GroupKey> keys = new ArrayList<>();
+    private final List<Aggregate> aggregates = new ArrayList<>();
+    private final QueryFilter filter = new QueryFilter();
+
+    /**
+     * Parses a query from its clauses, in any order:
+     * <ul>
+     * <li>{@code by <key>[,<key>...]} - group keys (see GroupKey); no keys gives one group</li>
+     * <li>{@code show <aggregate>[,<aggregate>...]} - aggregates (see Aggregate); default sum,count</li>
+     * <li>{@code from <YYYY-MM-DD>}, {@code to <YYYY-MM-DD>} - date range, inclusive</li>
+     * <li>{@code category <name>[,<name>...]} - categories to include</li>
+     * <li>{@code note <word>} - a word the notes must contain</li>
+     * <li>{@code min-amount <amount>}, {@code max-amount <amount>} - amount range, inclusive</li>
+     * </ul>
+     *
+     * @param tokens the clause words
+     * @return the query
+     * @throws IllegalArgumentException if a clause is unknown, incomplete or invalid
+     */
+    public static Query parse(List<String> tokens) {
+        Query query = new Query();
+        for (int i = 0; i < tokens.size(); i += 2) {
+            String clause = tokens.get(i).toLowerCase();
+            if (i + 1 >= tokens.size()) {
+                throw new IllegalArgumentException("Missing value after '" + clause + "'");
+            }
+            String value = tokens.get(i + 1);
+            switch (clause) {
+                case "by":
+                    for (String name : value.split(",")) {
+                        GroupKey key = GroupKey.parse(name);
+                        if (query.keys.contains(key)) {
+                            throw new IllegalArgumentException("Duplicate group key: " + name);
+                        }
+                        query.keys.add(key);
+                    }
+                    break;
+                case "show":
+                    for (String name : value.split(",")) {
+                        query.aggregates.add(Aggregate.parse(name));
+                    }
+                    break;
+                case "from":
+                    query.filter.setFrom(DateUtils.parseDate(value));
+                    break;
+                case "to":
+                    query.filter.setTo(DateUtils.parseDate(value));
+                    break;
+                case "category":
+                    for (String name : value.split(",")) {
+                        query.filter.addCategory(name);
+                    }
+                    break;
+                case "note":
+                    query.filter.setNoteWord(value);
+                    break;
+                case "min-amount":
+                    query.filter.setMinAmountCents(parseAmount(value));
+                    break;
+                case "max-amount":
+                    query.filter.setMaxAmountCents(parseAmount(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown query clause: " + clause
+                            + ". Clauses: by, show, from, to, category, note, min-amount, max-amount");
+            }
+        }
+        if (query.aggregates.isEmpty()) {
+            query.aggregates.add(Aggregate.parse("sum"));
+            query.aggregates.add(Aggregate.parse("count"));
+        }
+        return query;
+    }
+
+    private static long parseAmount(String value) {
+        long amountCents;
+        try {
+            amountCents = TextUtils.parseAmount(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount format: " + value, e);
+        }
+        if (amountCents < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative: " + value);
+        }
+        return amountCents;
+    }
+
+    /**
+     * Returns the group keys, in column order.
+     *
+     * @return unmodifiable list of keys
+     */
+    public List<GroupKey> getKeys() {
+        return Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * Returns the aggregates, in column order.
+     *
+     * @return unmodifiable list of aggregates
+     */
+    public List<Aggregate> getAggregates() {
+        return Collections.unmodifiableList(aggregates);
+    }
+
+    /**
+     * Returns the filter.
+     *
+     * @return the filter
+     */
+    public QueryFilter getFilter() {
+        return filter;
+    }
+}
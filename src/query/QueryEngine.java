@@ -0,0 +1,243 @@
+package query;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import model.Expense;
+import service.ExpenseRepository;
+import util.TextUtils;
+
+/**
+ * Runs queries against an ExpenseRepository. The planner picks the
+ * cheapest way to answer each query:
+ * <ul>
+ * <li>totals: sums and counts grouped by month, quarter or year (or sums
+ * by category) over whole months are read from the repository's running
+ * monthly totals, without touching any rows;</li>
+ * <li>index scan: with a note word or categories, only the rows the notes
+ * and category indexes return for them (and the date range) are scanned;</li>
+ * <li>date index scan: with a date range, only the rows the date index
+ * returns for that range are scanned;</li>
+ * <li>full scan: otherwise every row is scanned.</li>
+ * </ul>
+ * Scans are a single fused pass that filters, groups and updates every
+ * aggregate of a row at once.
+ */
+public class QueryEngine {
+    private final ExpenseRepository repository;
+
+    /**
+     * Creates an engine over a repository.
+     *
+     * @param repository the repository to query
+     */
+    public QueryEngine(ExpenseRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Runs a query.
+     *
+     * @param query the query
+     * @return the groups, sorted by key values
+     */
+    public QueryResult run(Query query) {
+        QueryFilter filter = query.getFilter();
+        Map<GroupValues, GroupStats> groups = new HashMap<>();
+        String plan;
+
+        if (canUseTotals(query)) {
+            int months = addMonthlyTotals(query, groups);
+            plan = "monthly totals of " + months + " months, no row scan";
+        } else if (filter.getNoteWord() != null || !filter.getCategories().isEmpty()) {
+            List<String> categories = filter.getCategories().isEmpty() ? null : filter.getCategories();
+            List<Expense> rows = repository.findMatching(filter.getNoteWord(), categories,
+                    filter.getFrom(), filter.getTo());
+            scan(query, rows, groups);
+            String indexes = filter.getNoteWord() == null ? "category"
+                    : categories == null ? "notes"
+                    : "notes and category";
+            plan = indexes + " index scan of " + rows.size() + " rows, one pass";
+        } else if (filter.getFrom() != null || filter.getTo() != null) {
+            LocalDate from = filter.getFrom() != null ? filter.getFrom() : LocalDate.ofEpochDay(Integer.MIN_VALUE);
+            LocalDate to = filter.getTo() != null ? filter.getTo() : LocalDate.ofEpochDay(Integer.MAX_VALUE);
+            List<Expense> rows = repository.findBetween(from, to);
+            scan(query, rows, groups);
+            plan = "date index range scan of " + rows.size() + " rows, one pass";
+        } else {
+            List<Expense> rows = repository.findAll();
+            scan(query, rows, groups);
+            plan = "full scan of " + rows.size() + " rows, one pass";
+        }
+
+        List<GroupValues> sorted = new ArrayList<>(groups.keySet());
+        sorted.sort(null);
+        List<Aggregate> aggregates = query.getAggregates();
+        List<QueryResult.Row> rows = new ArrayList<>(sorted.size());
+        for (GroupValues key : sorted) {
+            GroupStats stats = groups.get(key);
+            long[] values = new long[aggregates.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = aggregates.get(i).valueOf(stats);
+            }
+            rows.add(new QueryResult.Row(key.toStrings(), values));
+        }
+        return new QueryResult(query, plan, rows);
+    }
+
+    /**
+     * Returns whether the query can be answered from monthly totals.
+     */
+    private static boolean canUseTotals(Query query) {
+        QueryFilter filter = query.getFilter();
+        if (!filter.isDateOnly()) {
+            return false;
+        }
+        if (filter.getFrom() != null && filter.getFrom().getDayOfMonth() != 1) {
+            return false;
+        }
+        if (filter.getTo() != null && !filter.getTo().equals(YearMonth.from(filter.getTo()).atEndOfMonth())) {
+            return false;
+        }
+
+        boolean byCategory = query.getKeys().contains(GroupKey.CATEGORY);
+        for (GroupKey key : query.getKeys()) {
+            if (!key.isMonthBased() && key != GroupKey.CATEGORY) {
+                return false;
+            }
+        }
+        for (Aggregate aggregate : query.getAggregates()) {
+            // Counts are only kept per month, not per category
+            if (!aggregate.isTotal() || (byCategory && !aggregate.isAmount())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the monthly totals in the filter's date range to the groups.
+     *
+     * @return the number of months read
+     */
+    private int addMonthlyTotals(Query query, Map<GroupValues, GroupStats> groups) {
+        QueryFilter filter = query.getFilter();
+        List<GroupKey> keys = query.getKeys();
+        int categoryIndex = keys.indexOf(GroupKey.CATEGORY);
+        Object[] probe = new Object[keys.size()];
+        int months = 0;
+
+        for (Map.Entry<YearMonth, Long> entry : repository.monthlyTotals().entrySet()) {
+            YearMonth month = entry.getKey();
+            if ((filter.getFrom() != null && month.isBefore(YearMonth.from(filter.getFrom())))
+                    || (filter.getTo() != null && month.isAfter(YearMonth.from(filter.getTo())))) {
+                continue;
+            }
+            months++;
+            for (int i = 0; i < probe.length; i++) {
+                if (i != categoryIndex) {
+                    probe[i] = keys.get(i).valueOf(month.atDay(1));
+                }
+            }
+            if (categoryIndex < 0) {
+                stats(groups, probe, false).addTotal(entry.getValue(), repository.countForMonth(month));
+                continue;
+            }
+            for (Map.Entry<String, Long> category : repository.categoryTotals(month).entrySet()) {
+                probe[categoryIndex] = category.getKey();
+                stats(groups, probe, false).addTotal(category.getValue(), 0);
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Filters, groups and aggregates rows in one pass.
+     */
+    private static void scan(Query query, List<Expense> rows, Map<GroupValues, GroupStats> groups) {
+        QueryFilter filter = query.getFilter();
+        filter.prepare();
+        GroupKey[] keys = query.getKeys().toArray(new GroupKey[0]);
+        int keywordIndex = query.getKeys().indexOf(GroupKey.KEYWORD);
+        boolean keepAmounts = false;
+        for (Aggregate aggregate : query.getAggregates()) {
+            keepAmounts |= aggregate.needsAmounts();
+        }
+
+        Object[] probe = new Object[keys.length];
+        for (Expense expense : rows) {
+            if (!filter.matches(expense)) {
+                continue;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (i != keywordIndex) {
+                    probe[i] = keys[i].valueOf(expense);
+                }
+            }
+            if (keywordIndex < 0) {
+                stats(groups, probe, keepAmounts).add(expense.getAmountCents());
+                continue;
+            }
+            // One group per distinct word, so an expense counts once in each
+            for (String word : TextUtils.words(expense.getNotes())) {
+                probe[keywordIndex] = word;
+                stats(groups, probe, keepAmounts).add(expense.getAmountCents());
+            }
+        }
+    }
+
+    private static GroupStats stats(Map<GroupValues, GroupStats> groups, Object[] probe, boolean keepAmounts) {
+        GroupStats stats = groups.get(new GroupValues(probe));
+        if (stats == null) {
+            stats = new GroupStats(keepAmounts);
+            groups.put(new GroupValues(probe.clone()), stats);
+        }
+        return stats;
+    }
+
+    /**
+     * The key values of one group, compared value by value.
+     */
+    private static class GroupValues implements Comparable<GroupValues> {
+        private final Object[] values;
+
+        GroupValues(Object[] values) {
+            this.values = values;
+        }
+
+        String[] toStrings() {
+            String[] strings = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                strings[i] = values[i].toString();
+            }
+            return strings;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compareTo(GroupValues other) {
+            for (int i = 0; i < values.length; i++) {
+                // Values at the same position come from the same key, so have the same type
+                int order = ((Comparable<Object>) values[i]).compareTo(other.values[i]);
+                if (order != 0) {
+                    return order;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof GroupValues && Arrays.equals(values, ((GroupValues) other).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+    }
+}
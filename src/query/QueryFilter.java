@@ -0,0 +1,183 @@
+package query;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import model.CategoryDictionary;
+import model.Expense;
+import util.TextUtils;
+
+/**
+ * Conditions an expense must meet to be included in a query. Every
+ * condition is optional; those that are set must all hold. Categories
+ * and note words match case-insensitively.
+ */
+public class QueryFilter {
+    private LocalDate from;
+    private LocalDate to;
+    private final List<String> categories = new ArrayList<>();
+    private String noteWord;
+    private long minAmountCents = -1;
+    private long maxAmountCents = -1;
+
+    // Per category id, whether the category is one of the filter's; see prepare()
+    private boolean[] categoryMatches;
+
+    /**
+     * Returns the first date (inclusive), or null for no lower bound.
+     *
+     * @return the first date
+     */
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    /**
+     * Sets the first date (inclusive), or null for no lower bound.
+     *
+     * @param from the first date
+     */
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    /**
+     * Returns the last date (inclusive), or null for no upper bound.
+     *
+     * @return the last date
+     */
+    public LocalDate getTo() {
+        return to;
+    }
+
+    /**
+     * Sets the last date (inclusive), or null for no upper bound.
+     *
+     * @param to the last date
+     */
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    /**
+     * Returns the categories to include; empty for all categories.
+     *
+     * @return unmodifiable list of category names
+     */
+    public List<String> getCategories() {
+        return Collections.unmodifiableList(categories);
+    }
+
+    /**
+     * Adds a category to include. Once any category is added, expenses in
+     * other categories are excluded.
+     *
+     * @param category the category name
+     */
+    public void addCategory(String category) {
+        categories.add(category);
+    }
+
+    /**
+     * Returns the word the notes must contain, or null for any notes.
+     *
+     * @return the note word, lower-cased
+     */
+    public String getNoteWord() {
+        return noteWord;
+    }
+
+    /**
+     * Sets a word the notes must contain (see TextUtils.words), or null for any notes.
+     *
+     * @param noteWord the word
+     */
+    public void setNoteWord(String noteWord) {
+        this.noteWord = noteWord != null ? noteWord.toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * Sets the smallest amount to include, or -1 for no lower bound.
+     *
+     * @param minAmountCents the amount, in cents
+     */
+    public void setMinAmountCents(long minAmountCents) {
+        this.minAmountCents = minAmountCents;
+    }
+
+    /**
+     * Sets the largest amount to include, or -1 for no upper bound.
+     *
+     * @param maxAmountCents the amount, in cents
+     */
+    public void setMaxAmountCents(long maxAmountCents) {
+        this.maxAmountCents = maxAmountCents;
+    }
+
+    /**
+     * Returns whether only dates are filtered on.
+     *
+     * @return true if no category, note or amount condition is set
+     */
+    boolean isDateOnly() {
+        return categories.isEmpty() && noteWord == null && minAmountCents < 0 && maxAmountCents < 0;
+    }
+
+    /**
+     * Resolves the category names to dictionary ids before a scan, so
+     * rows can be matched without comparing strings.
+     */
+    void prepare() {
+        if (categories.isEmpty()) {
+            categoryMatches = null;
+            return;
+        }
+        CategoryDictionary dictionary = CategoryDictionary.getInstance();
+        categoryMatches = new boolean[dictionary.size()];
+        for (int id = 0; id < categoryMatches.length; id++) {
+            categoryMatches[id] = isListed(dictionary.nameOf(id));
+        }
+    }
+
+    /**
+     * Returns whether an expense meets every condition. prepare() must
+     * have been called since categories were last added.
+     *
+     * @param expense the expense
+     * @return true if the expense is included
+     */
+    boolean matches(Expense expense) {
+        if (from != null && expense.getDate().isBefore(from)) {
+            return false;
+        }
+        if (to != null && expense.getDate().isAfter(to)) {
+            return false;
+        }
+        long amount = expense.getAmountCents();
+        if ((minAmountCents >= 0 && amount < minAmountCents) || (maxAmountCents >= 0 && amount > maxAmountCents)) {
+            return false;
+        }
+        if (categoryMatches != null) {
+            int categoryId = expense.getCategoryId();
+            boolean listed = categoryId < categoryMatches.length
+                    ? categoryMatches[categoryId]
+                    // Category first seen after prepare()
+                    : isListed(expense.getCategory());
+            if (!listed) {
+                return false;
+            }
+        }
+        return noteWord == null || TextUtils.words(expense.getNotes()).contains(noteWord);
+    }
+
+    private boolean isListed(String category) {
+        for (String listed : categories) {
+            if (listed.equalsIgnoreCase(category)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,80 @@
+package query;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The groups a query produced, sorted by their key values, with one value
+ * per aggregate, and a description of how the query was run.
+ */
+public class QueryResult {
+    private final Query query;
+    private final String plan;
+    private final List<Row> rows;
+
+    QueryResult(Query query, String plan, List<Row> rows) {
+        this.query = query;
+        this.plan = plan;
+        this.rows = rows;
+    }
+
+    /**
+     * Returns the query that produced this result.
+     *
+     * @return the query
+     */
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns how the query was run, e.g. "full scan of 71 rows, one pass".
+     *
+     * @return plan description
+     */
+    public String getPlan() {
+        return plan;
+    }
+
+    /**
+     * Returns the groups, sorted by key values.
+     *
+     * @return unmodifiable list of rows
+     */
+    public List<Row> getRows() {
+        return Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * One group: its key values (as text) and aggregate values.
+     */
+    public static class Row {
+        private final String[] keys;
+        private final long[] values;
+
+        Row(String[] keys, long[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        /**
+         * Returns the value of a group key, such as "2025-02" or "Food".
+         *
+         * @param index the key's position in Query.getKeys()
+         * @return the key value
+         */
+        public String getKey(int index) {
+            return keys[index];
+        }
+
+        /**
+         * Returns an aggregate value: an amount in cents, or a count.
+         *
+         * @param index the aggregate's position in Query.getAggregates()
+         * @return the aggregate value
+         */
+        public long getValue(int index) {
+            return values[index];
+        }
+    }
+}
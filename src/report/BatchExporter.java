@@ -0,0 +1,159 @@
+package report;
+
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import model.Expense;
+import service.ExpenseRepository;
+import service.Summarizer;
+import service.SummaryAccumulator;
+
+/**
+ * Writes many reports from one pass over the data.
+ * The totals for every month and category slice the jobs ask for are built
+ * together in a single scan of the repository; the reports are then written
+ * in parallel on a fork-join pool, each by its own ReportWriter.
+ * A batch export can run concurrently with other exports.
+ */
+public class BatchExporter {
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a batch exporter that writes reports on the common fork-join pool.
+     */
+    public BatchExporter() {
+        this.pool = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Writes the reports for a list of jobs.
+     * A job that fails, with an I/O error or any unchecked exception, does not
+     * stop the others; once all jobs have run, the first failure is thrown
+     * with any others attached as suppressed exceptions.
+     *
+     * @param jobs       the reports to write
+     * @param repository the repository to report on
+     * @return the number of reports written
+     * @throws IOException if any report cannot be written; unchecked
+     *                     exceptions from a writer are its cause
+     */
+    public int export(List<ExportJob> jobs, ExpenseRepository repository) throws IOException {
+        Map<YearMonth, SummaryAccumulator> byMonth = new HashMap<>();
+        Map<String, SummaryAccumulator> byCategory = new HashMap<>();
+        Map<YearMonth, Map<String, SummaryAccumulator>> byMonthCategory = new HashMap<>();
+
+        List<SummaryAccumulator> slices = new ArrayList<>(jobs.size());
+        for (ExportJob job : jobs) {
+            slices.add(sliceFor(job, byMonth, byCategory, byMonthCategory));
+        }
+
+        if (!byMonth.isEmpty() || !byCategory.isEmpty() || !byMonthCategory.isEmpty()) {
+            for (Expense expense : repository.findAll()) {
+                YearMonth month = YearMonth.from(expense.getDate());
+                String category = expense.getCategory();
+
+                SummaryAccumulator slice = byMonth.get(month);
+                if (slice != null) {
+                    slice.accept(expense);
+                }
+                slice = byCategory.get(category);
+                if (slice != null) {
+                    slice.accept(expense);
+                }
+                Map<String, SummaryAccumulator> monthSlices = byMonthCategory.get(month);
+                if (monthSlices != null && (slice = monthSlices.get(category)) != null) {
+                    slice.accept(expense);
+                }
+            }
+        }
+
+        Summarizer allTime = new Summarizer(repository);
+        List<Expense> allTimeRecent = repository.findRecent(SummaryAccumulator.RECENT_ENTRIES);
+        List<JobTask> tasks = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            SummaryAccumulator slice = slices.get(i);
+            if (slice == null) {
+                tasks.add(new JobTask(jobs.get(i), allTime, allTimeRecent));
+            } else {
+                tasks.add(new JobTask(jobs.get(i), slice.summarizer(), slice.recentEntries()));
+            }
+        }
+
+        pool.submit(() -> {
+            RecursiveAction.invokeAll(tasks);
+        }).join();
+
+        IOException failure = null;
+        int written = 0;
+        for (JobTask task : tasks) {
+            if (task.error == null) {
+                written++;
+            } else if (failure == null) {
+                failure = task.error;
+            } else {
+                failure.addSuppressed(task.error);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return written;
+    }
+
+    /**
+     * Returns the accumulator for a job's slice, creating it if needed,
+     * or null for an all-time job.
+     */
+    private static SummaryAccumulator sliceFor(ExportJob job, Map<YearMonth, SummaryAccumulator> byMonth,
+            Map<String, SummaryAccumulator> byCategory,
+            Map<YearMonth, Map<String, SummaryAccumulator>> byMonthCategory) {
+        if (job.coversAll()) {
+            return null;
+        }
+        if (job.getCategory() == null) {
+            return byMonth.computeIfAbsent(job.getMonth(), m -> new SummaryAccumulator());
+        }
+        if (job.getMonth() == null) {
+            return byCategory.computeIfAbsent(job.getCategory(), c -> new SummaryAccumulator());
+        }
+        return byMonthCategory.computeIfAbsent(job.getMonth(), m -> new HashMap<>())
+                .computeIfAbsent(job.getCategory(), c -> new SummaryAccumulator());
+    }
+
+    /**
+     * Writes one report with a writer of its own, keeping any error it
+     * fails with (unchecked errors wrapped in an IOException).
+     */
+    private static class JobTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ExportJob job;
+        private final transient Summarizer summarizer;
+        private final transient List<Expense> recentEntries;
+        private transient IOException error;
+
+        JobTask(ExportJob job, Summarizer summarizer, List<Expense> recentEntries) {
+            this.job = job;
+            this.summarizer = summarizer;
+            this.recentEntries = recentEntries;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                ReportWriterFactory.createReportWriter(job.getFormat())
+                        .writeReport(job.getOutputPath(), summarizer, recentEntries);
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                // A bug in one writer must not lose the other jobs' results
+                error = new IOException(job.getOutputPath() + ": " + e, e);
+            }
+        }
+    }
+}
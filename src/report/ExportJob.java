@@ -0,0 +1,85 @@
+package report;
+
+import java.time.YearMonth;
+import java.util.Objects;
+import util.DateUtils;
+
+/**
+ * One report to produce in a batch export: a format, the slice of expenses
+ * to report on (all time or one month, optionally one category) and the
+ * output path.
+ */
+public class ExportJob {
+    private final String format;
+    private final YearMonth month;
+    private final String category;
+    private final String outputPath;
+
+    /**
+     * Creates an export job.
+     *
+     * @param format     the report format ("txt" or "html")
+     * @param month      the month to report on, or null for all time
+     * @param category   the category to report on, or null for all categories
+     * @param outputPath the output file path
+     * @throws IllegalArgumentException if the format is not supported
+     */
+    public ExportJob(String format, YearMonth month, String category, String outputPath) {
+        // Fail before any report is written, not halfway through a batch
+        ReportWriterFactory.createReportWriter(format);
+        this.format = format.toLowerCase();
+        this.month = month;
+        this.category = category;
+        this.outputPath = Objects.requireNonNull(outputPath, "Output path cannot be null");
+    }
+
+    /**
+     * Parses a job from a line of the form
+     * {@code <txt|html> <all|YYYY-MM> <outpath> [category]}.
+     *
+     * @param line the job line
+     * @return the parsed job
+     * @throws IllegalArgumentException if the line is invalid
+     */
+    public static ExportJob parse(String line) {
+        String[] parts = line.trim().split("\\s+");
+        if (parts.length < 3 || parts.length > 4) {
+            throw new IllegalArgumentException("Invalid export job: " + line
+                    + ". Expected: <txt|html> <all|YYYY-MM> <outpath> [category]");
+        }
+        YearMonth month = parts[1].equalsIgnoreCase("all") ? null : DateUtils.parseYearMonth(parts[1]);
+        String category = parts.length == 4 ? parts[3] : null;
+        return new ExportJob(parts[0], month, category, parts[2]);
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    /**
+     * Checks whether this job reports on every expense.
+     *
+     * @return true if neither a month nor a category is set
+     */
+    public boolean coversAll() {
+        return month == null && category == null;
+    }
+
+    @Override
+    public String toString() {
+        return format + " " + (month != null ? DateUtils.formatYearMonth(month) : "all") + " " + outputPath
+                + (category != null ? " " + category : "");
+    }
+}
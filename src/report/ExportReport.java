@@ -1,12 +1,185 @@
 package report;
 
 import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import util.DateUtils;
+import util.TextUtils;
 
-public class ExportReport {
-    public StringBuilder content = new StringBuilder();
+/**
+ * Collects report text.
+ * A report created with {@link #open(String)} streams its text to the file
+ * as it is produced, through a reusable char buffer and a preallocated byte
+ * buffer; a report created with the no-argument constructor keeps its text
+ * in memory.
+ */
+public class ExportReport implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
 
-    public void add(String text) {
+    public StringBuilder content;
+
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer bytes;
+
+    /**
+     * Creates a report that keeps its text in memory.
+     */
+    public ExportReport() {
+        this.content = new StringBuilder();
+        this.channel = null;
+        this.encoder = null;
+        this.bytes = null;
+    }
+
+    private ExportReport(FileChannel channel) {
+        this.channel = channel;
+        // Same charset and error handling as FileWriter
+        this.encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.content = new StringBuilder(BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a report that streams its text to a file.
+     * The file is created or truncated; close the report to finish writing it.
+     *
+     * @param fileName the output file path
+     * @return the streaming report
+     * @throws IOException if the file cannot be opened
+     */
+    public static ExportReport open(String fileName) throws IOException {
+        return new ExportReport(new FileOutputStream(fileName).getChannel());
+    }
+
+    public void add(String text) throws IOException {
+        content.append(text);
+        flushIfFull();
+    }
+
+    /**
+     * Adds all text collected by an in-memory report.
+     *
+     * @param section the report whose text to add
+     * @throws IOException if streamed text cannot be written
+     */
+    public void add(ExportReport section) throws IOException {
+        content.append(section.content);
+        flushIfFull();
+    }
+
+    /**
+     * Adds a single character.
+     *
+     * @param c the character to add
+     * @throws IOException if streamed text cannot be written
+     */
+    public void add(char c) throws IOException {
+        content.append(c);
+        flushIfFull();
+    }
+
+    /**
+     * Adds an amount with 2 decimal places.
+     *
+     * @param cents the amount to add, in cents
+     * @throws IOException if streamed text cannot be written
+     */
+    public void addAmount(long cents) throws IOException {
+        TextUtils.appendAmount(content, cents);
+        flushIfFull();
+    }
+
+    /**
+     * Adds an amount with 2 decimal places, right-aligned in a field of the given width.
+     *
+     * @param cents the amount to add, in cents
+     * @param width the minimum field width
+     * @throws IOException if streamed text cannot be written
+     */
+    public void addAmount(long cents, int width) throws IOException {
+        int start = content.length();
+        TextUtils.appendAmount(content, cents);
+        padLeft(start, width);
+        flushIfFull();
+    }
+
+    /**
+     * Adds a date in YYYY-MM-DD format.
+     *
+     * @param date the date to add
+     * @throws IOException if streamed text cannot be written
+     */
+    public void addDate(LocalDate date) throws IOException {
+        DateUtils.appendDate(content, date);
+        flushIfFull();
+    }
+
+    /**
+     * Adds a month in YYYY-MM format, left-aligned in a field of the given width.
+     *
+     * @param month the month to add
+     * @param width the minimum field width
+     * @throws IOException if streamed text cannot be written
+     */
+    public void addMonth(YearMonth month, int width) throws IOException {
+        int start = content.length();
+        DateUtils.appendYearMonth(content, month);
+        padRight(start, width);
+        flushIfFull();
+    }
+
+    /**
+     * Adds text left-aligned in a field of the given width, like "%-Ns".
+     *
+     * @param text  the text to add
+     * @param width the minimum field width
+     * @throws IOException if streamed text cannot be written
+     */
+    public void addPadRight(String text, int width) throws IOException {
+        int start = content.length();
         content.append(text);
+        padRight(start, width);
+        flushIfFull();
+    }
+
+    /**
+     * Adds text right-aligned in a field of the given width, like "%Ns".
+     *
+     * @param text  the text to add
+     * @param width the minimum field width
+     * @throws IOException if streamed text cannot be written
+     */
+    public void addPadLeft(String text, int width) throws IOException {
+        int start = content.length();
+        content.append(text);
+        padLeft(start, width);
+        flushIfFull();
+    }
+
+    private void padRight(int start, int width) {
+        for (int length = content.length() - start; length < width; length++) {
+            content.append(' ');
+        }
+    }
+
+    private void padLeft(int start, int width) {
+        int padding = width - (content.length() - start);
+        for (int i = 0; i < padding; i++) {
+            content.insert(start, ' ');
+        }
     }
 
     public String toString() {
@@ -19,4 +192,56 @@ public class ExportReport {
         }
         return true;
     }
+
+    private void flushIfFull() throws IOException {
+        if (channel != null && content.length() >= BUFFER_SIZE) {
+            flush(false);
+        }
+    }
+
+    /**
+     * Encodes the buffered text and writes it to the file.
+     * A trailing unpaired surrogate is kept for the next flush.
+     */
+    private void flush(boolean endOfInput) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(content);
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, endOfInput);
+            writeBytes();
+        } while (result.isOverflow());
+        if (endOfInput) {
+            do {
+                result = encoder.flush(bytes);
+                writeBytes();
+            } while (result.isOverflow());
+        }
+        content.delete(0, chars.position());
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /**
+     * Writes any buffered text and closes the file.
+     * Does nothing for an in-memory report.
+     *
+     * @throws IOException if the text cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            flush(true);
+        } finally {
+            channel.close();
+        }
+    }
 }
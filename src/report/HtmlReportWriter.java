@@ -4,8 +4,9 @@ import java.io.IOException;
 import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
+import metrics.Metrics;
 import model.Expense;
-import service.ExpenseRepository;
+import service.QuantileSketch;
 import service.Summarizer;
 
 
@@ -16,23 +17,14 @@ public class HtmlReportWriter extends ReportWriter{
 
 
     @Override
-    public void writeReport(String filePath, ExpenseRepository repository) throws IOException {
-        List<Expense> allExpenses = repository.findAll();
-        Summarizer summarizer = new Summarizer(allExpenses);
-            writeHeader(exportReport);
-            writeMonthlySummary(exportReport, summarizer);
-            writeCategoryBreakdown(exportReport, summarizer);
-            writeGrandTotal(exportReport, summarizer);
-            writeRecentEntries(exportReport, allExpenses);
-            writeFooter(exportReport);
-        
-        try {
-            if(exportReport.saveReport(filePath)  ){
-                System.out.println("HTML report written to: " + filePath);
-            }
-        } catch (Exception ex) {
-            System.getLogger(HtmlReportWriter.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+    public void writeReport(String filePath, Summarizer summarizer, List<Expense> recentEntries) throws IOException {
+        long start = Metrics.start();
+        try (ExportReport exportReport = ExportReport.open(filePath)) {
+            writeSections(exportReport, summarizer, recentEntries);
+        } finally {
+            WRITE_TIME.recordSince(start);
         }
+        System.out.println("HTML report written to: " + filePath);
     }
 
     @Override
@@ -59,11 +51,13 @@ public class HtmlReportWriter extends ReportWriter{
         exportReport.add("<table>\n");
         exportReport.add("<tr><th>Month</th><th>Total Amount</th></tr>\n");
 
-        Map<YearMonth, Double> monthlyTotals = summarizer.monthlyTotals();
-        for (Map.Entry<YearMonth, Double> entry : monthlyTotals.entrySet()) {
-            String monthStr = formatMonth(entry.getKey());
-            String amountStr = formatAmount(entry.getValue());
-            exportReport.add(String.format("<tr><td>%s</td><td>%s</td></tr>\n", monthStr, amountStr));
+        Map<YearMonth, Long> monthlyTotals = summarizer.monthlyTotals();
+        for (Map.Entry<YearMonth, Long> entry : monthlyTotals.entrySet()) {
+            exportReport.add("<tr><td>");
+            exportReport.addMonth(entry.getKey(), 0);
+            exportReport.add("</td><td>");
+            exportReport.addAmount(entry.getValue());
+            exportReport.add("</td></tr>\n");
         }
         exportReport.add("</table>\n");
     }
@@ -74,26 +68,82 @@ public class HtmlReportWriter extends ReportWriter{
         exportReport.add("<table>\n");
         exportReport.add("<tr><th>Category</th><th>Total Amount</th><th>Visual</th></tr>\n");
 
-        Map<String, Double> categoryTotals = summarizer.categoryTotals(null);
-        double maxAmount = categoryTotals.values().stream()
-                .max(Double::compareTo)
-                .orElse(1.0);
-
-        for (Map.Entry<String, Double> entry : categoryTotals.entrySet()) {
-            String category = entry.getKey();
-            double amount = entry.getValue();
-            String amountStr = formatAmount(amount);
-            String barHtml = createBar(amount, maxAmount);
-            exportReport.add(String.format("<tr><td>%s</td><td>%s</td><td>%s</td></tr>\n",
-                    category, amountStr, barHtml));
+        Map<String, Long> categoryTotals = summarizer.categoryTotals(null);
+        long maxAmount = categoryTotals.values().stream()
+                .max(Long::compareTo)
+                .orElse(1L);
+
+        for (Map.Entry<String, Long> entry : categoryTotals.entrySet()) {
+            long amount = entry.getValue();
+            exportReport.add("<tr><td>");
+            exportReport.add(entry.getKey());
+            exportReport.add("</td><td>");
+            exportReport.addAmount(amount);
+            exportReport.add("</td><td>");
+            exportReport.add(createBar(amount, maxAmount));
+            exportReport.add("</td></tr>\n");
+        }
+        exportReport.add("</table>\n");
+    }
+
+    @Override
+    protected void writeCategoryPercentiles(ExportReport exportReport, Summarizer summarizer) throws IOException {
+        exportReport.add("<h2>Category Percentiles (All Time, approximate)</h2>\n");
+        exportReport.add("<table>\n");
+        exportReport.add("<tr><th>Category</th>");
+        for (int percentile : PERCENTILES) {
+            exportReport.add("<th>p" + percentile + "</th>");
+        }
+        exportReport.add("</tr>\n");
+
+        Map<String, QuantileSketch> quantiles = summarizer.categoryQuantiles(null);
+        // Same category order as the breakdown
+        for (String category : summarizer.categoryTotals(null).keySet()) {
+            QuantileSketch sketch = quantiles.get(category);
+            exportReport.add("<tr><td>");
+            exportReport.add(category);
+            exportReport.add("</td>");
+            for (int percentile : PERCENTILES) {
+                exportReport.add("<td>");
+                exportReport.addAmount(sketch.percentile(percentile));
+                exportReport.add("</td>");
+            }
+            exportReport.add("</tr>\n");
         }
         exportReport.add("</table>\n");
     }
 
     @Override
     protected void writeGrandTotal(ExportReport exportReport, Summarizer summarizer) throws IOException {
-        exportReport.add(String.format("<p class=\"total\">Grand Total: %s</p>\n",
-                formatAmount(summarizer.grandTotal())));
+        exportReport.add("<p class=\"total\">Grand Total: ");
+        exportReport.addAmount(summarizer.grandTotal());
+        exportReport.add("</p>\n");
+    }
+
+    @Override
+    protected void writeLargestExpenses(ExportReport exportReport, Summarizer summarizer) throws IOException {
+        exportReport.add("<h2>Largest Expenses (Top " + LARGEST_EXPENSES + " per month)</h2>\n");
+        exportReport.add("<table>\n");
+        exportReport.add("<tr><th>Month</th><th>Date</th><th>Category</th><th>Amount</th><th>Notes</th></tr>\n");
+
+        for (YearMonth month : summarizer.monthlyTotals().keySet()) {
+            List<Expense> largest = summarizer.topExpenses(month);
+            for (int i = 0; i < largest.size() && i < LARGEST_EXPENSES; i++) {
+                Expense exp = largest.get(i);
+                exportReport.add("<tr><td>");
+                exportReport.addMonth(month, 0);
+                exportReport.add("</td><td>");
+                exportReport.addDate(exp.getDate());
+                exportReport.add("</td><td>");
+                exportReport.add(exp.getCategory());
+                exportReport.add("</td><td>");
+                exportReport.addAmount(exp.getAmountCents());
+                exportReport.add("</td><td>");
+                exportReport.add(exp.getNotes());
+                exportReport.add("</td></tr>\n");
+            }
+        }
+        exportReport.add("</table>\n");
     }
 
     @Override
@@ -105,12 +155,15 @@ public class HtmlReportWriter extends ReportWriter{
         int count = 0;
         for (int i = expenses.size() - 1; i >= 0 && count < 10; i--, count++) {
             Expense exp = expenses.get(i);
-            String dateStr = formatDate(exp.getDate());
-            exportReport.add(String.format("<tr><td>%s</td><td>%s</td><td>%s</td><td>%s</td></tr>\n",
-                    dateStr,
-                    exp.getCategory(),
-                    formatAmount(exp.getAmount()),
-                    exp.getNotes()));
+            exportReport.add("<tr><td>");
+            exportReport.addDate(exp.getDate());
+            exportReport.add("</td><td>");
+            exportReport.add(exp.getCategory());
+            exportReport.add("</td><td>");
+            exportReport.addAmount(exp.getAmountCents());
+            exportReport.add("</td><td>");
+            exportReport.add(exp.getNotes());
+            exportReport.add("</td></tr>\n");
         }
         exportReport.add("</table>\n");
     }
@@ -124,6 +177,6 @@ public class HtmlReportWriter extends ReportWriter{
     @Override
     protected String createBar(double value, double maxValue) {
         int barWidth = (int) Math.round((value * 200) / maxValue);
-        return String.format("<div class=\"bar\" style=\"width: %dpx;\"></div>", barWidth);
+        return "<div class=\"bar\" style=\"width: " + barWidth + "px;\"></div>";
     }
 }
@@ -0,0 +1,167 @@
+package report;
+
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import model.Expense;
+import service.ExpenseTotals;
+import service.QuantileSketch;
+import service.Summarizer;
+
+/**
+ * Renders the sections of a report through a ReportWriter's hooks.
+ * The totals every section needs are computed once, up front; the sections
+ * are then rendered concurrently on a fork-join pool into in-memory buffers,
+ * which are written to the output in order.
+ */
+class ReportEngine {
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates an engine that renders on the common fork-join pool.
+     */
+    ReportEngine() {
+        this.pool = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Renders a full report: header, monthly summary, category breakdown,
+     * category percentiles, grand total, largest expenses, recent entries
+     * and footer.
+     *
+     * @param writer        the writer whose hooks render each section
+     * @param exportReport  the report to write the sections to
+     * @param summarizer    the summarizer providing totals
+     * @param recentEntries expenses in insertion order, newest last
+     * @throws IOException if the report cannot be written
+     */
+    void render(ReportWriter writer, ExportReport exportReport, Summarizer summarizer,
+            List<Expense> recentEntries) throws IOException {
+        // Shared, read-only totals, so sections don't each re-aggregate
+        Summarizer totals = new Summarizer(new ReportTotals(summarizer.totals()));
+
+        List<SectionTask> tasks = new ArrayList<>(8);
+        tasks.add(new SectionTask(writer::writeHeader));
+        tasks.add(new SectionTask(section -> writer.writeMonthlySummary(section, totals)));
+        tasks.add(new SectionTask(section -> writer.writeCategoryBreakdown(section, totals)));
+        tasks.add(new SectionTask(section -> writer.writeCategoryPercentiles(section, totals)));
+        tasks.add(new SectionTask(section -> writer.writeGrandTotal(section, totals)));
+        tasks.add(new SectionTask(section -> writer.writeLargestExpenses(section, totals)));
+        tasks.add(new SectionTask(section -> writer.writeRecentEntries(section, recentEntries)));
+        tasks.add(new SectionTask(writer::writeFooter));
+
+        try {
+            pool.submit(() -> {
+                RecursiveAction.invokeAll(tasks);
+            }).join();
+        } catch (SectionWriteException e) {
+            throw e.getCause();
+        }
+
+        for (SectionTask task : tasks) {
+            exportReport.add(task.section);
+        }
+    }
+
+    /**
+     * Writes one report section.
+     */
+    private interface Section {
+        void write(ExportReport section) throws IOException;
+    }
+
+    /**
+     * Renders one section into its own in-memory report.
+     */
+    private static class SectionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Section writer;
+        private final transient ExportReport section = new ExportReport();
+
+        SectionTask(Section writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                writer.write(section);
+            } catch (IOException e) {
+                throw new SectionWriteException(e);
+            }
+        }
+    }
+
+    /**
+     * Wraps an IOException thrown inside a fork-join task.
+     */
+    private static class SectionWriteException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SectionWriteException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Month, category and grand totals taken once from a summarizer's totals.
+     * The maps are read-only, so sections rendered concurrently can share them.
+     */
+    private static class ReportTotals implements ExpenseTotals {
+        private final ExpenseTotals source;
+        private final Map<YearMonth, Long> monthlyTotals;
+        private final Map<String, Long> categoryTotals;
+        private final long grandTotal;
+
+        ReportTotals(ExpenseTotals source) {
+            this.source = source;
+            this.monthlyTotals = Collections.unmodifiableMap(source.monthlyTotals());
+            this.categoryTotals = Collections.unmodifiableMap(source.categoryTotals(null));
+            this.grandTotal = source.grandTotal();
+        }
+
+        @Override
+        public Map<YearMonth, Long> monthlyTotals() {
+            return monthlyTotals;
+        }
+
+        @Override
+        public Map<String, Long> categoryTotals(YearMonth yearMonth) {
+            if (yearMonth == null) {
+                return categoryTotals;
+            }
+            return source.categoryTotals(yearMonth);
+        }
+
+        @Override
+        public long grandTotal() {
+            return grandTotal;
+        }
+
+        @Override
+        public long totalForMonth(YearMonth yearMonth) {
+            return source.totalForMonth(yearMonth);
+        }
+
+        @Override
+        public List<Expense> topExpenses(YearMonth yearMonth) {
+            return source.topExpenses(yearMonth);
+        }
+
+        @Override
+        public Map<String, QuantileSketch> categoryQuantiles(YearMonth yearMonth) {
+            return source.categoryQuantiles(yearMonth);
+        }
+    }
+}
@@ -5,22 +5,74 @@ import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
 import model.Expense;
 import service.ExpenseRepository;
 import service.Summarizer;
+import service.SummaryAccumulator;
+import util.TextUtils;
 
-
+/**
+ * Base class for report writers. A writer keeps no per-report state, so one
+ * writer, or several, can write reports concurrently.
+ */
 public abstract  class ReportWriter {
+    /** Number of largest expenses listed per month. */
+    protected static final int LARGEST_EXPENSES = 5;
+    /** Percentiles listed per category; see QuantileSketch for their accuracy. */
+    protected static final int[] PERCENTILES = { 50, 95, 99 };
+    /** Time taken by each writeReport call, from opening the file to closing it. */
+    protected static final LatencyHistogram WRITE_TIME = Metrics.histogram("report.write");
+
     protected final DateTimeFormatter dateFormatter;
     protected final DateTimeFormatter monthFormatter;
-    protected ExportReport exportReport;
     public ReportWriter() {
         this.dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         this.monthFormatter = DateTimeFormatter.ofPattern("yyyy-MM");
-        this.exportReport = new ExportReport();
     }
 
-    public abstract void writeReport(String filePath, ExpenseRepository repository) throws IOException;
+    /**
+     * Writes a report covering all expenses in a repository.
+     *
+     * @param filePath   the output file path
+     * @param repository the repository to report on
+     * @throws IOException if the report cannot be written
+     */
+    public void writeReport(String filePath, ExpenseRepository repository) throws IOException {
+        writeReport(filePath, new Summarizer(repository), repository.findRecent(SummaryAccumulator.RECENT_ENTRIES));
+    }
+
+    /**
+     * Writes a report from a summarizer and the most recent entries.
+     * Only the last entries of the list are shown, so a short list of recent
+     * entries gives the same report as the full expense list.
+     * Sections are rendered concurrently and written in order (see writeSections).
+     *
+     * @param filePath      the output file path
+     * @param summarizer    the summarizer providing totals
+     * @param recentEntries expenses in insertion order, newest last
+     * @throws IOException if the report cannot be written
+     */
+    public abstract void writeReport(String filePath, Summarizer summarizer, List<Expense> recentEntries)
+            throws IOException;
+
+    /**
+     * Renders header, monthly summary, category breakdown, category
+     * percentiles, grand total, largest expenses per month, recent entries
+     * and footer through the hooks below. The totals are
+     * computed once and shared; the sections are rendered concurrently, so
+     * hooks must not depend on each other's side effects.
+     *
+     * @param exportReport  the report to write the sections to
+     * @param summarizer    the summarizer providing totals
+     * @param recentEntries expenses in insertion order, newest last
+     * @throws IOException if the report cannot be written
+     */
+    protected void writeSections(ExportReport exportReport, Summarizer summarizer, List<Expense> recentEntries)
+            throws IOException {
+        new ReportEngine().render(this, exportReport, summarizer, recentEntries);
+    }
 
     protected abstract void writeHeader(ExportReport exportReport) throws IOException;
 
@@ -28,8 +80,13 @@ public abstract  class ReportWriter {
 
     protected abstract void writeCategoryBreakdown(ExportReport exportReport, Summarizer summarizer) throws IOException;
 
+    protected abstract void writeCategoryPercentiles(ExportReport exportReport, Summarizer summarizer)
+            throws IOException;
+
     protected abstract void writeGrandTotal(ExportReport exportReport, Summarizer summarizer) throws IOException;
 
+    protected abstract void writeLargestExpenses(ExportReport exportReport, Summarizer summarizer) throws IOException;
+
     protected abstract void writeRecentEntries(ExportReport exportReport, List<Expense> expenses) throws IOException;
 
     protected void writeFooter(ExportReport exportReport) throws IOException{
@@ -44,8 +101,8 @@ public abstract  class ReportWriter {
         return month.format(monthFormatter);
     }
 
-    protected String formatAmount(double amount) {
-        return String.format("%.2f", amount);
+    protected String formatAmount(long cents) {
+        return TextUtils.formatAmount(cents);
     }
 
     protected abstract String createBar(double value, double maxValue);
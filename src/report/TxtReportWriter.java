@@ -4,8 +4,9 @@ import java.io.IOException;
 import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
+import metrics.Metrics;
 import model.Expense;
-import service.ExpenseRepository;
+import service.QuantileSketch;
 import service.Summarizer;
 import util.TextUtils;
 
@@ -14,24 +15,14 @@ import util.TextUtils;
  */
 public class TxtReportWriter extends ReportWriter{
     @Override
-    public void writeReport(String filePath, ExpenseRepository repository) throws IOException {
-        List<Expense> allExpenses = repository.findAll();
-        Summarizer summarizer = new Summarizer(allExpenses);
-
-       
-            writeHeader(exportReport);
-            writeMonthlySummary(exportReport, summarizer);
-            writeCategoryBreakdown(exportReport, summarizer);
-            writeGrandTotal(exportReport, summarizer);
-            writeRecentEntries(exportReport, allExpenses);
-        
-        try {
-            if(exportReport.saveReport(filePath)  ){
-                System.out.println("Text report written to: " + filePath);
-            }
-        } catch (Exception ex) {
-            System.getLogger(TxtReportWriter.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+    public void writeReport(String filePath, Summarizer summarizer, List<Expense> recentEntries) throws IOException {
+        long start = Metrics.start();
+        try (ExportReport exportReport = ExportReport.open(filePath)) {
+            writeSections(exportReport, summarizer, recentEntries);
+        } finally {
+            WRITE_TIME.recordSince(start);
         }
+        System.out.println("Text report written to: " + filePath);
     }
 
     @Override
@@ -46,11 +37,12 @@ public class TxtReportWriter extends ReportWriter{
         exportReport.add("MONTHLY SUMMARY\n");
         exportReport.add(TextUtils.separator(60) + "\n");
 
-        Map<YearMonth, Double> monthlyTotals = summarizer.monthlyTotals();
-        for (Map.Entry<YearMonth, Double> entry : monthlyTotals.entrySet()) {
-            String monthStr = formatMonth(entry.getKey());
-            String amountStr = formatAmount(entry.getValue());
-            exportReport.add(String.format("%-10s : %12s\n", monthStr, amountStr));
+        Map<YearMonth, Long> monthlyTotals = summarizer.monthlyTotals();
+        for (Map.Entry<YearMonth, Long> entry : monthlyTotals.entrySet()) {
+            exportReport.addMonth(entry.getKey(), 10);
+            exportReport.add(" : ");
+            exportReport.addAmount(entry.getValue(), 12);
+            exportReport.add('\n');
         }
         exportReport.add("\n");
     }
@@ -60,17 +52,44 @@ public class TxtReportWriter extends ReportWriter{
         exportReport.add("CATEGORY BREAKDOWN (All Time)\n");
         exportReport.add(TextUtils.separator(60) + "\n");
 
-        Map<String, Double> categoryTotals = summarizer.categoryTotals(null);
-        double maxAmount = categoryTotals.values().stream()
-                .max(Double::compareTo)
-                .orElse(1.0);
-
-        for (Map.Entry<String, Double> entry : categoryTotals.entrySet()) {
-            String category = entry.getKey();
-            double amount = entry.getValue();
-            String amountStr = formatAmount(amount);
-            String bar = createBar(amount, maxAmount);
-            exportReport.add(String.format("%-15s %12s  %s\n", category, amountStr, bar));
+        Map<String, Long> categoryTotals = summarizer.categoryTotals(null);
+        long maxAmount = categoryTotals.values().stream()
+                .max(Long::compareTo)
+                .orElse(1L);
+
+        for (Map.Entry<String, Long> entry : categoryTotals.entrySet()) {
+            long amount = entry.getValue();
+            exportReport.addPadRight(entry.getKey(), 15);
+            exportReport.add(' ');
+            exportReport.addAmount(amount, 12);
+            exportReport.add("  ");
+            exportReport.add(createBar(amount, maxAmount));
+            exportReport.add('\n');
+        }
+        exportReport.add("\n");
+    }
+
+    @Override
+    protected void writeCategoryPercentiles(ExportReport exportReport, Summarizer summarizer) throws IOException {
+        exportReport.add("CATEGORY PERCENTILES (All Time, approximate)\n");
+        exportReport.add(TextUtils.separator(60) + "\n");
+
+        Map<String, QuantileSketch> quantiles = summarizer.categoryQuantiles(null);
+        exportReport.addPadRight("", 15);
+        for (int percentile : PERCENTILES) {
+            exportReport.add(' ');
+            exportReport.addPadLeft("p" + percentile, 12);
+        }
+        exportReport.add('\n');
+        // Same category order as the breakdown
+        for (String category : summarizer.categoryTotals(null).keySet()) {
+            QuantileSketch sketch = quantiles.get(category);
+            exportReport.addPadRight(category, 15);
+            for (int percentile : PERCENTILES) {
+                exportReport.add(' ');
+                exportReport.addAmount(sketch.percentile(percentile), 12);
+            }
+            exportReport.add('\n');
         }
         exportReport.add("\n");
     }
@@ -78,10 +97,36 @@ public class TxtReportWriter extends ReportWriter{
     @Override
     protected void writeGrandTotal(ExportReport exportReport, Summarizer summarizer) throws IOException {
         exportReport.add(TextUtils.separator(60) + "\n");
-        exportReport.add(String.format("GRAND TOTAL: %s\n", formatAmount(summarizer.grandTotal())));
+        exportReport.add("GRAND TOTAL: ");
+        exportReport.addAmount(summarizer.grandTotal());
+        exportReport.add('\n');
         exportReport.add(TextUtils.separator(60) + "\n");
     }
 
+    @Override
+    protected void writeLargestExpenses(ExportReport exportReport, Summarizer summarizer) throws IOException {
+        exportReport.add("\nLARGEST EXPENSES (Top " + LARGEST_EXPENSES + " per month)\n");
+        exportReport.add(TextUtils.separator(60) + "\n");
+
+        for (YearMonth month : summarizer.monthlyTotals().keySet()) {
+            exportReport.addMonth(month, 0);
+            exportReport.add('\n');
+            List<Expense> largest = summarizer.topExpenses(month);
+            for (int i = 0; i < largest.size() && i < LARGEST_EXPENSES; i++) {
+                Expense exp = largest.get(i);
+                exportReport.add("  ");
+                exportReport.addDate(exp.getDate());
+                exportReport.add("  ");
+                exportReport.addPadRight(exp.getCategory(), 12);
+                exportReport.add(' ');
+                exportReport.addAmount(exp.getAmountCents(), 10);
+                exportReport.add("  ");
+                exportReport.add(exp.getNotes());
+                exportReport.add('\n');
+            }
+        }
+    }
+
     @Override
     protected void writeRecentEntries(ExportReport exportReport, List<Expense> expenses) throws IOException {
         exportReport.add("\nRECENT ENTRIES (Last 10)\n");
@@ -90,12 +135,14 @@ public class TxtReportWriter extends ReportWriter{
         int count = 0;
         for (int i = expenses.size() - 1; i >= 0 && count < 10; i--, count++) {
             Expense exp = expenses.get(i);
-            String dateStr = formatDate(exp.getDate());
-            exportReport.add(String.format("%s  %-12s %10s  %s\n",
-                    dateStr,
-                    exp.getCategory(),
-                    formatAmount(exp.getAmount()),
-                    exp.getNotes()));
+            exportReport.addDate(exp.getDate());
+            exportReport.add("  ");
+            exportReport.addPadRight(exp.getCategory(), 12);
+            exportReport.add(' ');
+            exportReport.addAmount(exp.getAmountCents(), 10);
+            exportReport.add("  ");
+            exportReport.add(exp.getNotes());
+            exportReport.add('\n');
         }
     }
 
@@ -0,0 +1,55 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * Bitmap index of rows by category: for each category id, the RowBitmap of
+ * rows in that category. Rows in any of several categories are the OR of
+ * their bitmaps, so no row is read to find them.
+ * <p>
+ * Lookups only read the index, so they may run concurrently with each
+ * other but not with add() or clear(); the repository guards it with its lock.
+ */
+class CategoryIndex {
+    // Bitmaps by category id; null for categories without rows
+    private RowBitmap[] rows = new RowBitmap[16];
+
+    /**
+     * Adds a row to its category's bitmap.
+     *
+     * @param categoryId the row's category id
+     * @param row        the row id, greater than any row added before
+     */
+    void add(int categoryId, int row) {
+        if (categoryId >= rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(categoryId + 1, rows.length * 2));
+        }
+        if (rows[categoryId] == null) {
+            rows[categoryId] = new RowBitmap();
+        }
+        rows[categoryId].add(row);
+    }
+
+    /**
+     * Returns the rows in any of the given categories.
+     *
+     * @param categoryIds the category ids
+     * @return the rows; empty if none of the categories has rows
+     */
+    RowBitmap rowsInAny(int[] categoryIds) {
+        RowBitmap result = null;
+        for (int categoryId : categoryIds) {
+            if (categoryId < rows.length && rows[categoryId] != null) {
+                result = result == null ? rows[categoryId] : result.or(rows[categoryId]);
+            }
+        }
+        return result != null ? result : new RowBitmap();
+    }
+
+    /**
+     * Removes all rows from the index.
+     */
+    void clear() {
+        rows = new RowBitmap[16];
+    }
+}
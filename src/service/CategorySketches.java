@@ -0,0 +1,72 @@
+package service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import model.CategoryDictionary;
+
+/**
+ * A QuantileSketch of amounts per category, kept in an array indexed by
+ * category id. Sketches are only created for categories that are used.
+ */
+class CategorySketches {
+    private QuantileSketch[] sketches = new QuantileSketch[16];
+
+    /**
+     * Adds an amount to a category's sketch.
+     *
+     * @param categoryId  the category id
+     * @param amountCents the amount, in cents
+     */
+    void add(int categoryId, long amountCents) {
+        sketchFor(categoryId).add(amountCents);
+    }
+
+    /**
+     * Adds all amounts of another set of sketches, category by category.
+     *
+     * @param other the sketches to merge into these
+     */
+    void addAll(CategorySketches other) {
+        for (int categoryId = 0; categoryId < other.sketches.length; categoryId++) {
+            if (other.sketches[categoryId] != null) {
+                sketchFor(categoryId).addAll(other.sketches[categoryId]);
+            }
+        }
+    }
+
+    /**
+     * Returns copies of the sketches keyed by category name.
+     *
+     * @return map of category to its sketch, in category id order
+     */
+    Map<String, QuantileSketch> toMap() {
+        CategoryDictionary dictionary = CategoryDictionary.getInstance();
+        Map<String, QuantileSketch> map = new LinkedHashMap<>();
+        for (int categoryId = 0; categoryId < sketches.length; categoryId++) {
+            if (sketches[categoryId] != null) {
+                map.put(dictionary.nameOf(categoryId), sketches[categoryId].copy());
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Removes all sketches, letting go of the array sized for the ids seen so far.
+     */
+    void clear() {
+        sketches = new QuantileSketch[16];
+    }
+
+    private QuantileSketch sketchFor(int categoryId) {
+        if (categoryId >= sketches.length) {
+            sketches = Arrays.copyOf(sketches, Math.max(categoryId + 1, sketches.length * 2));
+        }
+        QuantileSketch sketch = sketches[categoryId];
+        if (sketch == null) {
+            sketch = new QuantileSketch();
+            sketches[categoryId] = sketch;
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,83 @@
+package service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import model.CategoryDictionary;
+
+/**
+ * Running per-category totals, in cents, kept in an array indexed by
+ * category id, so adding an amount needs no hashing or boxing.
+ * Categories are remembered in the order they were first added, which is
+ * the order {@link #toMap()} returns them in.
+ */
+class CategoryTotals {
+    private long[] totals = new long[16];
+    private boolean[] seen = new boolean[16];
+    private int[] order = new int[16];
+    private int count;
+
+    /**
+     * Adds an amount to a category's total.
+     *
+     * @param categoryId  the category id
+     * @param amountCents the amount to add, in cents
+     */
+    void add(int categoryId, long amountCents) {
+        if (categoryId >= totals.length) {
+            int capacity = Math.max(categoryId + 1, totals.length * 2);
+            totals = Arrays.copyOf(totals, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+        }
+        if (seen[categoryId]) {
+            totals[categoryId] += amountCents;
+        } else {
+            seen[categoryId] = true;
+            totals[categoryId] = amountCents;
+            if (count == order.length) {
+                order = Arrays.copyOf(order, count * 2);
+            }
+            order[count++] = categoryId;
+        }
+    }
+
+    /**
+     * Adds another set of totals to these, category by category in the
+     * order they were first added there. Adding the totals of a later
+     * chunk of rows this way gives the same totals and order as adding
+     * its rows one by one.
+     *
+     * @param other the totals to add
+     */
+    void addAll(CategoryTotals other) {
+        for (int i = 0; i < other.count; i++) {
+            int categoryId = other.order[i];
+            add(categoryId, other.totals[categoryId]);
+        }
+    }
+
+    /**
+     * Returns the totals keyed by category name.
+     *
+     * @return map of category to total amount in cents, in first-added order
+     */
+    Map<String, Long> toMap() {
+        CategoryDictionary dictionary = CategoryDictionary.getInstance();
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            int categoryId = order[i];
+            map.put(dictionary.nameOf(categoryId), totals[categoryId]);
+        }
+        return map;
+    }
+
+    /**
+     * Removes all totals, letting go of the arrays sized for the ids seen so far.
+     */
+    void clear() {
+        totals = new long[16];
+        seen = new boolean[16];
+        order = new int[16];
+        count = 0;
+    }
+}
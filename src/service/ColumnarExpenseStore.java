@@ -0,0 +1,245 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import model.Expense;
+
+/**
+ * Expense store that keeps each column in its own primitive array.
+ * Dates are stored as epoch days, amounts as long cents, categories as
+ * CategoryDictionary ids and notes as UTF-8 bytes in a shared arena.
+ * Expense objects are only created when a row is read; summaries of all
+ * rows or of selected rows read the primitive columns instead.
+ */
+public class ColumnarExpenseStore implements ExpenseStore {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] epochDays;
+    private long[] amountCents;
+    private int[] categoryIds;
+    private int[] noteOffsets;
+    private byte[] noteArena;
+    private int size;
+    // One more than the largest category id stored
+    private int categoryLimit;
+
+    /**
+     * Creates an empty columnar store.
+     */
+    public ColumnarExpenseStore() {
+        reset();
+    }
+
+    private void reset() {
+        // Fresh arrays, so lists handed out before clear() keep their data
+        epochDays = new int[INITIAL_CAPACITY];
+        amountCents = new long[INITIAL_CAPACITY];
+        categoryIds = new int[INITIAL_CAPACITY];
+        noteOffsets = new int[INITIAL_CAPACITY + 1];
+        noteArena = new byte[INITIAL_CAPACITY * 16];
+        size = 0;
+        categoryLimit = 0;
+    }
+
+    @Override
+    public void add(Expense expense) {
+        if (size == epochDays.length) {
+            int capacity = size * 2;
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            amountCents = Arrays.copyOf(amountCents, capacity);
+            categoryIds = Arrays.copyOf(categoryIds, capacity);
+            noteOffsets = Arrays.copyOf(noteOffsets, capacity + 1);
+        }
+
+        epochDays[size] = (int) expense.getDate().toEpochDay();
+        amountCents[size] = expense.getAmountCents();
+        categoryIds[size] = expense.getCategoryId();
+        categoryLimit = Math.max(categoryLimit, expense.getCategoryId() + 1);
+
+        byte[] note = expense.getNotes().getBytes(StandardCharsets.UTF_8);
+        int start = noteOffsets[size];
+        if (start + note.length > noteArena.length) {
+            noteArena = Arrays.copyOf(noteArena, Math.max(noteArena.length * 2, start + note.length));
+        }
+        System.arraycopy(note, 0, noteArena, start, note.length);
+        noteOffsets[size + 1] = start + note.length;
+
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Expense get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        }
+        return materialize(row, epochDays, amountCents, categoryIds, noteOffsets, noteArena);
+    }
+
+    @Override
+    public int epochDay(int row) {
+        return epochDays[row];
+    }
+
+    @Override
+    public List<Expense> snapshot() {
+        return new ColumnSnapshot(size);
+    }
+
+    @Override
+    public List<Expense> select(int[] rows, int count) {
+        return new ColumnSelection(Arrays.copyOf(rows, count), count);
+    }
+
+    @Override
+    public void clear() {
+        reset();
+    }
+
+    private static Expense materialize(int row, int[] epochDays, long[] amountCents, int[] categoryIds,
+            int[] noteOffsets, byte[] noteArena) {
+        int start = noteOffsets[row];
+        String notes = new String(noteArena, start, noteOffsets[row + 1] - start, StandardCharsets.UTF_8);
+        return Expense.ofCents(LocalDate.ofEpochDay(epochDays[row]),
+                categoryIds[row],
+                amountCents[row],
+                notes);
+    }
+
+    /**
+     * Read-only list over the columns as they were when the view was created.
+     * Columns are append-only, so rows below the captured size never change.
+     */
+    private class ColumnView extends AbstractList<Expense> implements RandomAccess {
+        // Not private, so ColumnSnapshot reads these rather than the store's current columns
+        final int[] rows;
+        final int count;
+        final int[] epochDays = ColumnarExpenseStore.this.epochDays;
+        final long[] amountCents = ColumnarExpenseStore.this.amountCents;
+        final int[] categoryIds = ColumnarExpenseStore.this.categoryIds;
+        final int[] noteOffsets = ColumnarExpenseStore.this.noteOffsets;
+        final byte[] noteArena = ColumnarExpenseStore.this.noteArena;
+        final int categoryLimit = ColumnarExpenseStore.this.categoryLimit;
+
+        ColumnView(int[] rows, int count) {
+            this.rows = rows;
+            this.count = count;
+        }
+
+        @Override
+        public Expense get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + count);
+            }
+            int row = rows != null ? rows[index] : index;
+            return materialize(row, epochDays, amountCents, categoryIds, noteOffsets, noteArena);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    /**
+     * View of all rows, which Summarizer can also read column by column.
+     */
+    private class ColumnSnapshot extends ColumnView implements ExpenseColumns {
+
+        ColumnSnapshot(int count) {
+            super(null, count);
+        }
+
+        @Override
+        public int[] epochDays() {
+            return epochDays;
+        }
+
+        @Override
+        public long[] amountCents() {
+            return amountCents;
+        }
+
+        @Override
+        public int[] categoryIds() {
+            return categoryIds;
+        }
+
+        @Override
+        public int categoryLimit() {
+            return categoryLimit;
+        }
+    }
+
+    /**
+     * View of selected rows, which Summarizer can also read column by column.
+     * The selected rows' values are copied into compact columns the first
+     * time a column is asked for, so no Expense objects are created.
+     */
+    private class ColumnSelection extends ColumnView implements ExpenseColumns {
+        // Copied columns, set on first use; concurrent first uses may each copy them
+        private volatile Columns selected;
+
+        ColumnSelection(int[] rows, int count) {
+            super(rows, count);
+        }
+
+        @Override
+        public int[] epochDays() {
+            return columns().epochDays;
+        }
+
+        @Override
+        public long[] amountCents() {
+            return columns().amountCents;
+        }
+
+        @Override
+        public int[] categoryIds() {
+            return columns().categoryIds;
+        }
+
+        @Override
+        public int categoryLimit() {
+            return categoryLimit;
+        }
+
+        private Columns columns() {
+            Columns columns = selected;
+            if (columns == null) {
+                columns = new Columns(count);
+                for (int i = 0; i < count; i++) {
+                    int row = rows[i];
+                    columns.epochDays[i] = epochDays[row];
+                    columns.amountCents[i] = amountCents[row];
+                    columns.categoryIds[i] = categoryIds[row];
+                }
+                selected = columns;
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * Columns copied for a ColumnSelection.
+     */
+    private static class Columns {
+        final int[] epochDays;
+        final long[] amountCents;
+        final int[] categoryIds;
+
+        Columns(int count) {
+            epochDays = new int[count];
+            amountCents = new long[count];
+            categoryIds = new int[count];
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * Index of row ids sorted by date, used for month and date-range lookups.
+ * Each entry packs the epoch day (high 32 bits) and the row id (low 32 bits)
+ * into a long, so one primitive sort orders entries by date, then by row.
+ * Rows added in date order keep the index sorted for free; otherwise it is
+ * re-sorted on the next lookup.
+ * Methods are synchronized, since a lookup may sort the index in place.
+ */
+public class DateIndex {
+    private long[] keys = new long[1024];
+    private int size;
+    private boolean sorted = true;
+    private boolean inRowOrder = true;
+
+    /**
+     * Adds a row to the index.
+     *
+     * @param epochDay the row's date as an epoch day
+     * @param row      the row id
+     */
+    public synchronized void add(int epochDay, int row) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        long key = key(epochDay, row);
+        if (size > 0 && key < keys[size - 1]) {
+            sorted = false;
+            inRowOrder = false;
+        }
+        keys[size++] = key;
+    }
+
+    /**
+     * Returns the rows dated between two days, inclusive, in ascending row order.
+     *
+     * @param fromDay first epoch day (inclusive)
+     * @param toDay   last epoch day (inclusive)
+     * @return array of matching row ids
+     */
+    public synchronized int[] rowsBetween(int fromDay, int toDay) {
+        if (fromDay > toDay) {
+            return new int[0];
+        }
+        if (!sorted) {
+            Arrays.sort(keys, 0, size);
+            sorted = true;
+        }
+
+        int from = lowerBound(key(fromDay, 0));
+        int to = toDay == Integer.MAX_VALUE ? size : lowerBound(key(toDay + 1, 0));
+
+        int[] rows = new int[to - from];
+        for (int i = from; i < to; i++) {
+            rows[i - from] = (int) keys[i];
+        }
+        if (!inRowOrder) {
+            // Rows were added out of date order; return them in insertion order
+            Arrays.sort(rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the row id range holding the rows dated between two days,
+     * inclusive, if rows were added in date order, so each date range is a
+     * contiguous range of rows.
+     *
+     * @param fromDay first epoch day (inclusive)
+     * @param toDay   last epoch day (inclusive)
+     * @return the first row id (inclusive) and last row id (exclusive),
+     *         or null if rows were not added in date order
+     */
+    public synchronized int[] rowRangeBetween(int fromDay, int toDay) {
+        if (!inRowOrder) {
+            return null;
+        }
+        if (fromDay > toDay) {
+            return new int[2];
+        }
+        int from = lowerBound(key(fromDay, 0));
+        int to = toDay == Integer.MAX_VALUE ? size : lowerBound(key(toDay + 1, 0));
+        if (from == to) {
+            return new int[2];
+        }
+        return new int[] { (int) keys[from], (int) keys[to - 1] + 1 };
+    }
+
+    /**
+     * Removes all rows from the index.
+     */
+    public synchronized void clear() {
+        keys = new long[1024];
+        size = 0;
+        sorted = true;
+        inRowOrder = true;
+    }
+
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long key(int epochDay, int row) {
+        return ((long) epochDay << 32) | (row & 0xFFFFFFFFL);
+    }
+}
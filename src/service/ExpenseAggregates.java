@@ -0,0 +1,185 @@
+package service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+import model.Expense;
+
+/**
+ * Running month and category totals, updated one expense at a time.
+ * Amounts are summed as long cents, so totals are exact and adding an
+ * expense allocates nothing once its month has been seen. Each month also
+ * keeps its largest expenses, and each category (per month and for all
+ * time) a QuantileSketch of its amounts; both have a fixed maximum size.
+ * Result maps iterate in the same order as the list-based Summarizer's:
+ * months chronologically, categories in the order they were first added.
+ */
+public class ExpenseAggregates implements ExpenseTotals {
+    private final Map<YearMonth, MonthTotals> months = new LinkedHashMap<>();
+    private final CategoryTotals categoryTotals = new CategoryTotals();
+    private final CategorySketches categorySketches = new CategorySketches();
+    private long total;
+    private long count;
+
+    /**
+     * Totals for one month.
+     */
+    private static class MonthTotals {
+        final CategoryTotals categories = new CategoryTotals();
+        final CategorySketches sketches = new CategorySketches();
+        final TopExpenses top = new TopExpenses(Summarizer.TOP_EXPENSES);
+        long total;
+        long count;
+    }
+
+    /**
+     * Adds an expense to the totals.
+     *
+     * @param expense the expense to add
+     */
+    public void add(Expense expense) {
+        long amount = expense.getAmountCents();
+        MonthTotals month = months.computeIfAbsent(YearMonth.from(expense.getDate()), m -> new MonthTotals());
+
+        month.total += amount;
+        month.count++;
+        month.categories.add(expense.getCategoryId(), amount);
+        month.sketches.add(expense.getCategoryId(), amount);
+        month.top.add(expense);
+        categoryTotals.add(expense.getCategoryId(), amount);
+        categorySketches.add(expense.getCategoryId(), amount);
+        total += amount;
+        count++;
+    }
+
+    /**
+     * Adds the totals of another ExpenseAggregates to these. When the other
+     * totals cover rows that come after the ones added here, the result is
+     * the same, including map order, as adding all rows one by one.
+     *
+     * @param other the totals to add
+     */
+    void addAll(ExpenseAggregates other) {
+        for (Map.Entry<YearMonth, MonthTotals> entry : other.months.entrySet()) {
+            MonthTotals source = entry.getValue();
+            MonthTotals month = months.computeIfAbsent(entry.getKey(), m -> new MonthTotals());
+            month.total += source.total;
+            month.count += source.count;
+            month.categories.addAll(source.categories);
+            month.sketches.addAll(source.sketches);
+            month.top.addAll(source.top);
+        }
+        categoryTotals.addAll(other.categoryTotals);
+        categorySketches.addAll(other.categorySketches);
+        total += other.total;
+        count += other.count;
+    }
+
+    /**
+     * Resets all totals.
+     */
+    public void clear() {
+        months.clear();
+        categoryTotals.clear();
+        categorySketches.clear();
+        total = 0;
+        count = 0;
+    }
+
+    /**
+     * Returns the total per month.
+     *
+     * @return map of YearMonth to total amount in cents, in chronological order
+     */
+    @Override
+    public Map<YearMonth, Long> monthlyTotals() {
+        return copy(months, month -> month.total);
+    }
+
+    /**
+     * Returns the total per category for a month or for all time.
+     *
+     * @param yearMonth the month to filter by, or null for all months
+     * @return map of category to total amount in cents, in first-added order
+     */
+    @Override
+    public Map<String, Long> categoryTotals(YearMonth yearMonth) {
+        if (yearMonth == null) {
+            return categoryTotals.toMap();
+        }
+        MonthTotals month = months.get(yearMonth);
+        return month != null ? month.categories.toMap() : new LinkedHashMap<>();
+    }
+
+    /**
+     * Returns the total of all expenses.
+     *
+     * @return total amount in cents
+     */
+    @Override
+    public long grandTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the total for a month.
+     *
+     * @param yearMonth the month
+     * @return total amount for the month in cents
+     */
+    @Override
+    public long totalForMonth(YearMonth yearMonth) {
+        MonthTotals month = months.get(yearMonth);
+        return month != null ? month.total : 0;
+    }
+
+    @Override
+    public List<Expense> topExpenses(YearMonth yearMonth) {
+        MonthTotals month = months.get(yearMonth);
+        return month != null ? month.top.toList() : new ArrayList<>();
+    }
+
+    @Override
+    public Map<String, QuantileSketch> categoryQuantiles(YearMonth yearMonth) {
+        if (yearMonth == null) {
+            return categorySketches.toMap();
+        }
+        MonthTotals month = months.get(yearMonth);
+        return month != null ? month.sketches.toMap() : new LinkedHashMap<>();
+    }
+
+    /**
+     * Returns the number of expenses added.
+     *
+     * @return expense count
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the number of expenses added for a month.
+     *
+     * @param yearMonth the month
+     * @return expense count for the month
+     */
+    public long countForMonth(YearMonth yearMonth) {
+        MonthTotals month = months.get(yearMonth);
+        return month != null ? month.count : 0;
+    }
+
+    /**
+     * Copies month totals into a map sorted by month.
+     */
+    static <V> Map<YearMonth, Long> copy(Map<YearMonth, V> source, ToLongFunction<V> total) {
+        Map<YearMonth, Long> copy = new TreeMap<>();
+        for (Map.Entry<YearMonth, V> entry : source.entrySet()) {
+            copy.put(entry.getKey(), total.applyAsLong(entry.getValue()));
+        }
+        return copy;
+    }
+}
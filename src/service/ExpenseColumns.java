@@ -0,0 +1,32 @@
+package service;
+
+/**
+ * A list of expenses that can also hand out its rows as primitive columns,
+ * so Summarizer can total them with SumKernels instead of reading Expense
+ * objects. Row i of the list is element i of each column; columns may be
+ * longer than the list and must not be modified.
+ */
+interface ExpenseColumns {
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return row count
+     */
+    int size();
+
+    int[] epochDays();
+
+    long[] amountCents();
+
+    int[] categoryIds();
+
+    /**
+     * Returns a bound above every category id in the rows, so per-category
+     * arrays can be sized by the categories in use rather than by every
+     * category the CategoryDictionary has seen.
+     *
+     * @return one more than the largest category id, or more
+     */
+    int categoryLimit();
+}
@@ -1,27 +1,68 @@
 package service;
 
+import java.time.LocalDate;
 import java.time.YearMonth;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.CategoryDictionary;
 import model.Expense;
 
 /**
  * In-memory repository for expense data.
+ * Rows are kept in a pluggable ExpenseStore (see ExpenseStoreFactory).
+ * Month and category totals are kept up to date as expenses are added,
+ * so totals can be read without scanning the rows, a date index
+ * answers month and date-range lookups with binary searches, and notes and
+ * category indexes find the rows with given note words or categories as
+ * compressed bitmaps, which are combined before any row is read.
+ * <p>
+ * The repository is safe to use from several threads. Writers take a short
+ * exclusive lock per call; addAll takes it once per ADD_CHUNK_ROWS rows, so
+ * readers are not held up for a whole load and may see a batch partly added.
+ * Stores are append-only and hand out views, so findAll() captures a
+ * snapshot without copying rows and without locking; if a writer got in
+ * while the view was being captured, it is captured again under a read lock.
+ * Totals and date lookups hold a read lock only while their result is built.
+ * A version number, bumped by every change, tells callers whether results
+ * they computed earlier are still current.
  */
-public class ExpenseRepository {
-    private final List<Expense> expenses;
+public class ExpenseRepository implements ExpenseTotals {
+    private static final LatencyHistogram FIND_ALL_TIME = Metrics.histogram("repository.findAll");
+    private static final LatencyHistogram FIND_BETWEEN_TIME = Metrics.histogram("repository.findBetween");
+    private static final LatencyHistogram FIND_MATCHING_TIME = Metrics.histogram("repository.findMatching");
+    private static final LatencyHistogram FIND_RECENT_TIME = Metrics.histogram("repository.findRecent");
+    // Rows addAll appends per write lock; readers can get in between chunks
+    static final int ADD_CHUNK_ROWS = 4096;
+
+    private ExpenseStore store;
+    private final ExpenseAggregates aggregates = new ExpenseAggregates();
+    private final DateIndex dateIndex = new DateIndex();
+    private final NotesIndex notesIndex = new NotesIndex();
+    private final CategoryIndex categoryIndex = new CategoryIndex();
+    private final StampedLock lock = new StampedLock();
+    private volatile String storageMode;
+    // Bumped by every change to the rows; only written under the write lock
+    private volatile long version;
     private static ExpenseRepository instance;
 
     /**
      * Creates a new empty repository.
+     * The storage mode defaults to the "budgetbuddy.storage" system property, or "list".
      */
     private ExpenseRepository() {
-        this.expenses = new ArrayList<>();
+        this.storageMode = System.getProperty("budgetbuddy.storage", "list").toLowerCase();
+        this.store = ExpenseStoreFactory.createStore(storageMode);
         System.out.println("Created new ExpenseRepository instance");
     }
 
-    public static ExpenseRepository getInstance(){
+    public static synchronized ExpenseRepository getInstance(){
         if(instance == null){
             instance = new ExpenseRepository();
         }
@@ -29,12 +70,57 @@ public class ExpenseRepository {
     }
 
     /**
-     * Adds multiple expenses to the repository.
+     * Switches the storage mode, moving any existing expenses to the new store.
+     *
+     * @param mode the storage mode ("list" or "columnar")
+     * @throws IllegalArgumentException if mode is not supported
+     */
+    public void setStorageMode(String mode) {
+        ExpenseStore newStore = ExpenseStoreFactory.createStore(mode);
+        long stamp = lock.writeLock();
+        try {
+            for (Expense expense : store.snapshot()) {
+                newStore.add(expense);
+            }
+            this.store = newStore;
+            this.storageMode = mode.toLowerCase();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the current storage mode.
+     *
+     * @return the storage mode name
+     */
+    public String getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * Adds multiple expenses to the repository, ADD_CHUNK_ROWS at a time.
+     * Each chunk is added under its own write lock, so queries running
+     * meanwhile may see only the first chunks of the batch.
      *
      * @param expenseList the list of expenses to add
      */
     public void addAll(List<Expense> expenseList) {
-        this.expenses.addAll(expenseList);
+        Iterator<Expense> expenses = expenseList.iterator();
+        while (expenses.hasNext()) {
+            long stamp = lock.writeLock();
+            try {
+                for (int i = 0; i < ADD_CHUNK_ROWS && expenses.hasNext(); i++) {
+                    append(expenses.next());
+                }
+            } finally {
+                // Rows stored before a failing append stay visible, so the version changes either way
+                version++;
+                lock.unlockWrite(stamp);
+            }
+            // The lock is not fair; give readers woken by the unlock a chance to take it
+            Thread.yield();
+        }
     }
 
     /**
@@ -43,7 +129,23 @@ public class ExpenseRepository {
      * @param expense the expense to add
      */
     public void add(Expense expense) {
-        this.expenses.add(expense);
+        long stamp = lock.writeLock();
+        try {
+            append(expense);
+        } finally {
+            // append may fail after storing the row, so the version changes either way
+            version++;
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void append(Expense expense) {
+        int row = store.size();
+        store.add(expense);
+        aggregates.add(expense);
+        dateIndex.add(store.epochDay(row), row);
+        notesIndex.add(expense.getNotes(), row);
+        categoryIndex.add(expense.getCategoryId(), row);
     }
 
     /**
@@ -52,7 +154,16 @@ public class ExpenseRepository {
      * @return list of all expenses
      */
     public List<Expense> findAll() {
-        return new ArrayList<>(expenses);
+        long start = Metrics.start();
+        long stamp = lock.tryOptimisticRead();
+        // snapshot() only reads a few fields, so a racing writer can at worst
+        // make it capture an inconsistent view, which validate() rejects
+        List<Expense> snapshot = store.snapshot();
+        if (!lock.validate(stamp)) {
+            snapshot = read(() -> store.snapshot());
+        }
+        FIND_ALL_TIME.recordSince(start);
+        return snapshot;
     }
 
     /**
@@ -62,9 +173,167 @@ public class ExpenseRepository {
      * @return list of expenses in the specified month
      */
     public List<Expense> findByMonth(YearMonth yearMonth) {
-        return expenses.stream()
-                .filter(e -> YearMonth.from(e.getDate()).equals(yearMonth))
-                .collect(Collectors.toList());
+        return findBetween(yearMonth.atDay(1), yearMonth.atEndOfMonth());
+    }
+
+    /**
+     * Returns all expenses dated between two dates, inclusive.
+     *
+     * @param from the first date (inclusive)
+     * @param to   the last date (inclusive)
+     * @return list of expenses in the date range, in insertion order
+     */
+    public List<Expense> findBetween(LocalDate from, LocalDate to) {
+        return read(FIND_BETWEEN_TIME, () -> {
+            int[] rows = dateIndex.rowsBetween((int) from.toEpochDay(), (int) to.toEpochDay());
+            return store.select(rows, rows.length);
+        });
+    }
+
+    /**
+     * Returns the expenses whose notes contain every word of a text (see
+     * TextUtils.words), optionally within a date range. Rows are found
+     * through the notes index, without scanning the others.
+     *
+     * @param text the words to look for, such as "uber office"
+     * @param from the first date (inclusive), or null for no lower bound
+     * @param to   the last date (inclusive), or null for no upper bound
+     * @return list of matching expenses, in insertion order
+     */
+    public List<Expense> findByNotes(String text, LocalDate from, LocalDate to) {
+        return findMatching(text, null, from, to);
+    }
+
+    /**
+     * Returns the expenses in any of the given categories (compared
+     * ignoring case), optionally within a date range. Rows are found
+     * through the category index, without scanning the others.
+     *
+     * @param categories the category names
+     * @param from       the first date (inclusive), or null for no lower bound
+     * @param to         the last date (inclusive), or null for no upper bound
+     * @return list of matching expenses, in insertion order
+     */
+    public List<Expense> findByCategories(Collection<String> categories, LocalDate from, LocalDate to) {
+        return findMatching(null, categories, from, to);
+    }
+
+    /**
+     * Returns the expenses that meet every given condition, found by
+     * combining the notes and category indexes with AND and OR and then
+     * narrowing them to the date range, so only matching rows are read.
+     *
+     * @param text       words the notes must all contain, or null for any notes
+     * @param categories category names (compared ignoring case), or null for any category
+     * @param from       the first date (inclusive), or null for no lower bound
+     * @param to         the last date (inclusive), or null for no upper bound
+     * @return list of matching expenses, in insertion order
+     */
+    public List<Expense> findMatching(String text, Collection<String> categories, LocalDate from, LocalDate to) {
+        int[] categoryIds = categories != null ? categoryIds(categories) : null;
+        int fromDay = from != null ? (int) from.toEpochDay() : Integer.MIN_VALUE;
+        int toDay = to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE;
+        return read(FIND_MATCHING_TIME, () -> {
+            RowBitmap rows = text != null ? notesIndex.matching(text) : null;
+            if (categoryIds != null) {
+                RowBitmap inCategories = categoryIndex.rowsInAny(categoryIds);
+                rows = rows != null ? rows.and(inCategories) : inCategories;
+            }
+            if (rows == null) {
+                int[] all = dateIndex.rowsBetween(fromDay, toDay);
+                return store.select(all, all.length);
+            }
+            if (from == null && to == null) {
+                int[] selected = rows.toArray();
+                return store.select(selected, selected.length);
+            }
+            int[] rowRange = dateIndex.rowRangeBetween(fromDay, toDay);
+            if (rowRange == null) {
+                // Rows were added out of date order; intersect with the rows in the date range
+                int[] inRange = dateIndex.rowsBetween(fromDay, toDay);
+                rows = rows.and(RowBitmap.of(inRange, inRange.length));
+                rowRange = new int[] { 0, Integer.MAX_VALUE };
+            }
+            int[] selected = rows.toArray(rowRange[0], rowRange[1]);
+            return store.select(selected, selected.length);
+        });
+    }
+
+    /**
+     * Returns the ids of the known categories matching any of the names, ignoring case.
+     */
+    private static int[] categoryIds(Collection<String> categories) {
+        CategoryDictionary dictionary = CategoryDictionary.getInstance();
+        int[] ids = new int[dictionary.size()];
+        int count = 0;
+        for (int id = 0; id < ids.length; id++) {
+            String name = dictionary.nameOf(id);
+            for (String category : categories) {
+                if (category.equalsIgnoreCase(name)) {
+                    ids[count++] = id;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Returns the most recently added expenses.
+     *
+     * @param limit maximum number of expenses to return
+     * @return up to limit expenses, oldest first
+     */
+    public List<Expense> findRecent(int limit) {
+        return read(FIND_RECENT_TIME, () -> {
+            int size = store.size();
+            int count = Math.min(limit, size);
+            int[] rows = new int[count];
+            for (int i = 0; i < count; i++) {
+                rows[i] = size - count + i;
+            }
+            return store.select(rows, count);
+        });
+    }
+
+    @Override
+    public Map<YearMonth, Long> monthlyTotals() {
+        return read(aggregates::monthlyTotals);
+    }
+
+    @Override
+    public Map<String, Long> categoryTotals(YearMonth yearMonth) {
+        return read(() -> aggregates.categoryTotals(yearMonth));
+    }
+
+    @Override
+    public long grandTotal() {
+        return read(aggregates::grandTotal);
+    }
+
+    @Override
+    public long totalForMonth(YearMonth yearMonth) {
+        return read(() -> aggregates.totalForMonth(yearMonth));
+    }
+
+    @Override
+    public List<Expense> topExpenses(YearMonth yearMonth) {
+        return read(() -> aggregates.topExpenses(yearMonth));
+    }
+
+    @Override
+    public Map<String, QuantileSketch> categoryQuantiles(YearMonth yearMonth) {
+        return read(() -> aggregates.categoryQuantiles(yearMonth));
+    }
+
+    /**
+     * Returns the number of expenses in a month, without scanning the rows.
+     *
+     * @param yearMonth the month
+     * @return number of expenses in the month
+     */
+    public long countForMonth(YearMonth yearMonth) {
+        return read(() -> aggregates.countForMonth(yearMonth));
     }
 
     /**
@@ -73,13 +342,56 @@ public class ExpenseRepository {
      * @return number of expenses
      */
     public int count() {
-        return expenses.size();
+        return read(() -> store.size());
+    }
+
+    /**
+     * Returns the repository's version, which add, addAll and clear
+     * increase. Results computed at the same version are computed from the
+     * same rows, so they can be cached under it (see SummaryCache).
+     *
+     * @return the version
+     */
+    public long version() {
+        return version;
     }
 
     /**
      * Clears all expenses from the repository.
      */
     public void clear() {
-        expenses.clear();
+        long stamp = lock.writeLock();
+        try {
+            store.clear();
+            aggregates.clear();
+            dateIndex.clear();
+            notesIndex.clear();
+            categoryIndex.clear();
+        } finally {
+            version++;
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Runs a query under the read lock, so no writer changes the data meanwhile.
+     */
+    private <T> T read(Supplier<T> query) {
+        long stamp = lock.readLock();
+        try {
+            return query.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs a query under the read lock and records how long it took, waiting included.
+     */
+    private <T> T read(LatencyHistogram time, Supplier<T> query) {
+        long start = Metrics.start();
+        T result = read(query);
+        time.recordSince(start);
+        return result;
     }
 }
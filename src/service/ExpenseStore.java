@@ -0,0 +1,65 @@
+package service;
+
+import java.util.List;
+import model.Expense;
+
+/**
+ * Storage backend used by ExpenseRepository to hold expense rows.
+ * Rows are addressed by their insertion position (row id).
+ */
+public interface ExpenseStore {
+
+    /**
+     * Appends an expense to the store.
+     *
+     * @param expense the expense to add
+     */
+    void add(Expense expense);
+
+    /**
+     * Returns the number of stored rows.
+     *
+     * @return row count
+     */
+    int size();
+
+    /**
+     * Returns the expense stored at a row.
+     *
+     * @param row the row id
+     * @return the expense at that row
+     */
+    Expense get(int row);
+
+    /**
+     * Returns the date of a row as an epoch day, without materializing the expense.
+     *
+     * @param row the row id
+     * @return epoch day of the expense date
+     */
+    int epochDay(int row);
+
+    /**
+     * Returns a list of all rows as of this call.
+     * Later additions to the store are not visible in the returned list.
+     * The list should be a view rather than a copy: the repository may call
+     * this while another thread is adding rows, and retries if it did.
+     *
+     * @return list of all expenses
+     */
+    List<Expense> snapshot();
+
+    /**
+     * Returns a list of the given rows, in the given order.
+     *
+     * @param rows  array holding the row ids
+     * @param count number of row ids to use from the array
+     * @return list of the selected expenses
+     */
+    List<Expense> select(int[] rows, int count);
+
+    /**
+     * Removes all rows from the store.
+     */
+    void clear();
+}
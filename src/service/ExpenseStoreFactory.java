@@ -0,0 +1,29 @@
+package service;
+
+/**
+ * Factory class for creating ExpenseStore instances.
+ */
+public class ExpenseStoreFactory {
+
+    /**
+     * Creates an ExpenseStore for the specified storage mode.
+     *
+     * @param mode the storage mode ("list" or "columnar")
+     * @return the corresponding ExpenseStore instance
+     * @throws IllegalArgumentException if mode is not supported
+     */
+    public static ExpenseStore createStore(String mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Storage mode cannot be null");
+        }
+
+        switch (mode.toLowerCase()) {
+            case "list":
+                return new ListExpenseStore();
+            case "columnar":
+                return new ColumnarExpenseStore();
+            default:
+                throw new IllegalArgumentException("Unsupported storage mode: " + mode + ". Supported modes: list, columnar");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package service;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import model.Expense;
+
+/**
+ * Source of pre-aggregated expense totals that a Summarizer can delegate to.
+ * Besides totals, it keeps bounded-size summaries of each month's largest
+ * expenses and of the amount distribution per category.
+ * All amounts are in cents.
+ */
+public interface ExpenseTotals {
+
+    /**
+     * Returns the total per month.
+     *
+     * @return map of YearMonth to total amount in cents, in chronological order
+     */
+    Map<YearMonth, Long> monthlyTotals();
+
+    /**
+     * Returns the total per category for a month or for all time.
+     *
+     * @param yearMonth the month to filter by, or null for all months
+     * @return map of category to total amount in cents, in the order the
+     *         categories were first added
+     */
+    Map<String, Long> categoryTotals(YearMonth yearMonth);
+
+    /**
+     * Returns the total of all expenses.
+     *
+     * @return total amount in cents
+     */
+    long grandTotal();
+
+    /**
+     * Returns the total for a month.
+     *
+     * @param yearMonth the month
+     * @return total amount for the month in cents
+     */
+    long totalForMonth(YearMonth yearMonth);
+
+    /**
+     * Returns the largest expenses of a month (see Summarizer.TOP_EXPENSES).
+     *
+     * @param yearMonth the month
+     * @return up to Summarizer.TOP_EXPENSES expenses, largest first
+     */
+    List<Expense> topExpenses(YearMonth yearMonth);
+
+    /**
+     * Returns a sketch of the amounts per category, for a month or for all
+     * time, for approximate percentiles.
+     *
+     * @param yearMonth the month to filter by, or null for all months
+     * @return map of category to a sketch of its amounts; the sketches are copies
+     */
+    Map<String, QuantileSketch> categoryQuantiles(YearMonth yearMonth);
+}
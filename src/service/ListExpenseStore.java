@@ -0,0 +1,108 @@
+package service;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import model.Expense;
+
+/**
+ * Expense store backed by a list of Expense objects.
+ * This is the default storage mode.
+ * Rows are appended to fixed-size segments that are never moved or
+ * overwritten, so snapshots are views over the segments rather than copies.
+ */
+public class ListExpenseStore implements ExpenseStore {
+    private static final int SEGMENT_SHIFT = 12;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private Expense[][] segments;
+    private int size;
+
+    /**
+     * Creates an empty list store.
+     */
+    public ListExpenseStore() {
+        clear();
+    }
+
+    @Override
+    public void add(Expense expense) {
+        int segment = size >>> SEGMENT_SHIFT;
+        if (segment == segments.length) {
+            // Views keep the old directory; it still holds every segment they can reach
+            segments = Arrays.copyOf(segments, segment * 2);
+        }
+        if (segments[segment] == null) {
+            segments[segment] = new Expense[SEGMENT_SIZE];
+        }
+        segments[segment][size & SEGMENT_MASK] = expense;
+        size++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Expense get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        }
+        return segments[row >>> SEGMENT_SHIFT][row & SEGMENT_MASK];
+    }
+
+    @Override
+    public int epochDay(int row) {
+        return (int) get(row).getDate().toEpochDay();
+    }
+
+    @Override
+    public List<Expense> snapshot() {
+        return new SegmentView(segments, null, size);
+    }
+
+    @Override
+    public List<Expense> select(int[] rows, int count) {
+        return new SegmentView(segments, Arrays.copyOf(rows, count), count);
+    }
+
+    @Override
+    public void clear() {
+        // A fresh directory, so lists handed out before clear() keep their data
+        segments = new Expense[16][];
+        size = 0;
+    }
+
+    /**
+     * Read-only list over the segments as they were when the view was created.
+     * Segments are append-only, so rows below the captured size never change.
+     */
+    private static class SegmentView extends AbstractList<Expense> implements RandomAccess {
+        private final Expense[][] segments;
+        private final int[] rows;
+        private final int count;
+
+        SegmentView(Expense[][] segments, int[] rows, int count) {
+            this.segments = segments;
+            this.rows = rows;
+            this.count = count;
+        }
+
+        @Override
+        public Expense get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + count);
+            }
+            int row = rows != null ? rows[index] : index;
+            return segments[row >>> SEGMENT_SHIFT][row & SEGMENT_MASK];
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import util.TextUtils;
+
+/**
+ * Inverted index from note words to the rows whose notes contain them.
+ * Words are those of TextUtils.words, so matching is case-insensitive.
+ * <p>
+ * Each word's rows are kept as a compressed RowBitmap: rare words cost two
+ * bytes per row, common words at most one bit per row, and the rows of
+ * several words are intersected 64 rows at a time.
+ * <p>
+ * Words are looked up in an open-addressing table straight from the
+ * characters of the notes, so ASCII notes are indexed without allocating;
+ * other notes are split with TextUtils.words.
+ * <p>
+ * Lookups only read the index, so they may run concurrently with each
+ * other but not with add() or clear(); the repository guards it with its lock.
+ */
+public class NotesIndex {
+    private static final int INITIAL_TABLE_SIZE = 1024;
+
+    // Posting lists by word, open addressing with linear probing; at most half full
+    private Postings[] table = new Postings[INITIAL_TABLE_SIZE];
+    private int wordCount;
+
+    /**
+     * Adds a row's note words to the index.
+     *
+     * @param notes the row's notes
+     * @param row   the row id, greater than any row added before
+     */
+    public void add(String notes, int row) {
+        int length = notes.length();
+        int i = 0;
+        while (i < length) {
+            char c = notes.charAt(i);
+            if (c >= 0x80) {
+                // Words already added for this row are not added twice (see RowBitmap.add)
+                addWords(notes, row);
+                return;
+            }
+            if (!isAsciiLetterOrDigit(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            int hash = 0;
+            // Same hash as String.hashCode of the lower-cased word
+            while (i < length && isAsciiLetterOrDigit(c = notes.charAt(i))) {
+                hash = 31 * hash + toAsciiLowerCase(c);
+                i++;
+            }
+            if (i < length && c >= 0x80) {
+                addWords(notes, row);
+                return;
+            }
+            Postings postings = find(notes, start, i, hash);
+            if (postings == null) {
+                postings = insert(notes.substring(start, i).toLowerCase(Locale.ROOT), hash);
+            }
+            postings.rows.add(row);
+        }
+    }
+
+    private void addWords(String notes, int row) {
+        for (String word : TextUtils.words(notes)) {
+            Postings postings = find(word, 0, word.length(), word.hashCode());
+            if (postings == null) {
+                postings = insert(word, word.hashCode());
+            }
+            postings.rows.add(row);
+        }
+    }
+
+    /**
+     * Returns the rows whose notes contain every word of the given text.
+     *
+     * @param text the words to look for, such as "uber office"
+     * @return ascending row ids; empty if the text has no words or any word is unknown
+     */
+    public int[] rowsMatching(String text) {
+        return rowsMatching(text, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the rows in a row id range whose notes contain every word of
+     * the given text.
+     *
+     * @param text    the words to look for, such as "uber office"
+     * @param fromRow the first row id (inclusive)
+     * @param toRow   the last row id (exclusive)
+     * @return ascending row ids; empty if the text has no words or any word is unknown
+     */
+    public int[] rowsMatching(String text, int fromRow, int toRow) {
+        return matching(text).toArray(fromRow, toRow);
+    }
+
+    /**
+     * Returns the set of rows whose notes contain every word of the given text.
+     *
+     * @param text the words to look for
+     * @return the rows; empty if the text has no words or any word is unknown
+     */
+    RowBitmap matching(String text) {
+        List<String> words = TextUtils.words(text);
+        RowBitmap[] sets = new RowBitmap[words.size()];
+        for (int i = 0; i < sets.length; i++) {
+            String word = words.get(i);
+            Postings postings = find(word, 0, word.length(), word.hashCode());
+            if (postings == null) {
+                return new RowBitmap();
+            }
+            sets[i] = postings.rows;
+        }
+        if (sets.length == 0) {
+            return new RowBitmap();
+        }
+        // Start from the rarest word, so every intersection is at most that large
+        Arrays.sort(sets, (a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+        RowBitmap rows = sets[0];
+        for (int i = 1; i < sets.length && rows.cardinality() > 0; i++) {
+            rows = rows.and(sets[i]);
+        }
+        return rows;
+    }
+
+    /**
+     * Removes all rows from the index.
+     */
+    public void clear() {
+        table = new Postings[INITIAL_TABLE_SIZE];
+        wordCount = 0;
+    }
+
+    /**
+     * Finds the posting list of the word text[start, end), compared
+     * ignoring ASCII case (words in the table are lower-case, and only
+     * ASCII text or lower-case words are looked up).
+     */
+    private Postings find(String text, int start, int end, int hash) {
+        int mask = table.length - 1;
+        for (int slot = hash & mask; table[slot] != null; slot = (slot + 1) & mask) {
+            Postings postings = table[slot];
+            if (postings.hash == hash && matches(postings.word, text, start, end)) {
+                return postings;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(String word, String text, int start, int end) {
+        if (word.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (word.charAt(i - start) != toAsciiLowerCase(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Postings insert(String word, int hash) {
+        if (2 * (wordCount + 1) > table.length) {
+            Postings[] old = table;
+            table = new Postings[old.length * 2];
+            for (Postings postings : old) {
+                if (postings != null) {
+                    place(postings);
+                }
+            }
+        }
+        Postings postings = new Postings(word, hash);
+        place(postings);
+        wordCount++;
+        return postings;
+    }
+
+    private void place(Postings postings) {
+        int mask = table.length - 1;
+        int slot = postings.hash & mask;
+        while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = postings;
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static char toAsciiLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * A word and the rows whose notes contain it.
+     */
+    private static class Postings {
+        private final String word;
+        private final int hash;
+        private final RowBitmap rows = new RowBitmap();
+
+        Postings(String word, int hash) {
+            this.word = word;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package service;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import model.Expense;
+
+/**
+ * Aggregates a list of expenses on a fork-join pool. The list is split in
+ * halves down to chunks of a fixed size; each chunk is added to its own
+ * partial result, and each pair of halves is merged left then right. The
+ * split depends only on the list size, not on scheduling, and partial
+ * results are merged in row order, so the result is the same as a single
+ * pass over the list as long as merge(left, right) behaves like adding
+ * right's rows after left's.
+ */
+class ParallelAggregation {
+    private static final int MIN_CHUNK_SIZE = 16 * 1024;
+
+    private ParallelAggregation() {
+    }
+
+    /**
+     * Aggregates expenses chunk by chunk.
+     *
+     * @param expenses the expenses; should be RandomAccess
+     * @param create   creates an empty partial result
+     * @param add      adds one expense to a partial result
+     * @param merge    adds the second partial result to the first and returns the first
+     * @param <P>      partial result type
+     * @return the merged result
+     */
+    static <P> P aggregate(List<Expense> expenses, Supplier<P> create, BiConsumer<P, Expense> add,
+            BinaryOperator<P> merge) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, expenses.size() / (pool.getParallelism() * 4));
+        ChunkTask<P> task = new ChunkTask<>(expenses, 0, expenses.size(), chunkSize, create, add, merge);
+        return pool.invoke(task);
+    }
+
+    /**
+     * Aggregates rows [from, to), splitting the range in half while it is
+     * larger than one chunk.
+     */
+    private static class ChunkTask<P> extends RecursiveTask<P> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Expense> expenses;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final transient Supplier<P> create;
+        private final transient BiConsumer<P, Expense> add;
+        private final transient BinaryOperator<P> merge;
+
+        ChunkTask(List<Expense> expenses, int from, int to, int chunkSize, Supplier<P> create,
+                BiConsumer<P, Expense> add, BinaryOperator<P> merge) {
+            this.expenses = expenses;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.create = create;
+            this.add = add;
+            this.merge = merge;
+        }
+
+        @Override
+        protected P compute() {
+            if (to - from <= chunkSize) {
+                P partial = create.get();
+                for (int i = from; i < to; i++) {
+                    add.accept(partial, expenses.get(i));
+                }
+                return partial;
+            }
+
+            int middle = (from + to) >>> 1;
+            ChunkTask<P> left = new ChunkTask<>(expenses, from, middle, chunkSize, create, add, merge);
+            ChunkTask<P> right = new ChunkTask<>(expenses, middle, to, chunkSize, create, add, merge);
+            right.fork();
+            P leftResult = left.compute();
+            return merge.apply(leftResult, right.join());
+        }
+    }
+}
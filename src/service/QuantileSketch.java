@@ -0,0 +1,179 @@
+package service;
+
+/**
+ * Bounded-memory sketch of a distribution of amounts, answering percentile
+ * queries approximately. Amounts are counted in logarithmic buckets: bucket
+ * i holds amounts in (GAMMA^(i-1), GAMMA^i] cents, where
+ * GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY).
+ * <p>
+ * Accuracy: a percentile is reported as its bucket's midpoint, which is
+ * within RELATIVE_ACCURACY (1%) of every amount in the bucket, so the result
+ * is within 1% of the exact nearest-rank percentile, plus at most half a cent
+ * of rounding. Results are clamped to the exact smallest and largest
+ * amounts, so p100 is exact, and zero amounts are counted exactly.
+ * <p>
+ * Memory: amounts are whole cents up to Long.MAX_VALUE, so there are at most
+ * about 2200 buckets; only the span between the smallest and largest bucket
+ * used is allocated (about 460 buckets for amounts from 0.01 to 100000.00).
+ * <p>
+ * Merging adds bucket counts, so a sketch merged from parallel chunks is
+ * identical to one filled in a single pass, in any order.
+ * Not thread-safe.
+ */
+public class QuantileSketch {
+    /** Largest relative error of a reported percentile, before rounding to cents. */
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final int INITIAL_BUCKETS = 16;
+
+    // counts[i] is the count of bucket offset + i
+    private long[] counts = new long[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Adds an amount.
+     *
+     * @param amountCents the amount, in cents (not negative)
+     */
+    public void add(long amountCents) {
+        count++;
+        min = Math.min(min, amountCents);
+        max = Math.max(max, amountCents);
+        if (amountCents == 0) {
+            zeroCount++;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(amountCents) / LOG_GAMMA);
+        include(index);
+        counts[index - offset]++;
+    }
+
+    /**
+     * Adds all amounts of another sketch.
+     *
+     * @param other the sketch to merge into this one
+     */
+    public void addAll(QuantileSketch other) {
+        if (other.counts.length > 0) {
+            include(other.offset);
+            include(other.offset + other.counts.length - 1);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[other.offset + i - offset] += other.counts[i];
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the number of amounts added.
+     *
+     * @return amount count
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns an approximate nearest-rank percentile: the amount that at
+     * least the given percentage of amounts are less than or equal to.
+     *
+     * @param percent the percentile, above 0 and at most 100
+     * @return the percentile in cents, or 0 if the sketch is empty
+     */
+    public long percentile(double percent) {
+        if (percent <= 0 || percent > 100) {
+            throw new IllegalArgumentException("Percentile must be above 0 and at most 100: " + percent);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent * count / 100.0));
+        long seen = zeroCount;
+        if (rank <= seen) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank <= seen) {
+                long midpoint = Math.round(2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1));
+                return Math.max(min, Math.min(max, midpoint));
+            }
+        }
+        throw new IllegalStateException("Bucket counts do not add up to " + count);
+    }
+
+    /**
+     * Returns an independent copy of this sketch.
+     *
+     * @return the copy
+     */
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch();
+        copy.counts = counts.clone();
+        copy.offset = offset;
+        copy.zeroCount = zeroCount;
+        copy.count = count;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    /**
+     * Grows the bucket array, if needed, so it covers a bucket index.
+     */
+    private void include(int index) {
+        if (counts.length == 0) {
+            counts = new long[INITIAL_BUCKETS];
+            offset = index;
+            return;
+        }
+        int last = offset + counts.length - 1;
+        if (index >= offset && index <= last) {
+            return;
+        }
+        // Grow at least twofold, toward the side the new index is on
+        int length = Math.max(counts.length * 2, Math.max(last, index) - Math.min(offset, index) + 1);
+        int newOffset = index < offset ? last - length + 1 : offset;
+        long[] grown = new long[length];
+        System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof QuantileSketch)) {
+            return false;
+        }
+        QuantileSketch sketch = (QuantileSketch) other;
+        if (count != sketch.count || zeroCount != sketch.zeroCount || min != sketch.min || max != sketch.max) {
+            return false;
+        }
+        // Compare the buckets in use, whatever span each array was grown to
+        for (int index = Math.min(offset, sketch.offset);
+                index <= Math.max(offset + counts.length, sketch.offset + sketch.counts.length); index++) {
+            if (bucket(index) != sketch.bucket(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(count) * 31 + Long.hashCode(zeroCount);
+    }
+
+    private long bucket(int index) {
+        return index >= offset && index < offset + counts.length ? counts[index - offset] : 0;
+    }
+}
@@ -0,0 +1,60 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import model.Expense;
+
+/**
+ * Keeps the last N expenses added, in a fixed-size ring buffer.
+ */
+public class RecentEntries {
+    private final Expense[] ring;
+    private int next;
+    private int size;
+
+    /**
+     * Creates a ring that keeps the given number of entries.
+     *
+     * @param capacity maximum number of entries kept
+     */
+    public RecentEntries(int capacity) {
+        this.ring = new Expense[capacity];
+    }
+
+    /**
+     * Adds an expense, dropping the oldest one when the ring is full.
+     *
+     * @param expense the expense to add
+     */
+    public void add(Expense expense) {
+        ring[next] = expense;
+        next = (next + 1) % ring.length;
+        if (size < ring.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Returns the kept entries, oldest first.
+     *
+     * @return list of recent expenses
+     */
+    public List<Expense> toList() {
+        List<Expense> entries = new ArrayList<>(size);
+        int first = (next - size + ring.length) % ring.length;
+        for (int i = 0; i < size; i++) {
+            entries.add(ring[(first + i) % ring.length]);
+        }
+        return entries;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        Arrays.fill(ring, null);
+        next = 0;
+        size = 0;
+    }
+}
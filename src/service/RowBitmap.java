@@ -0,0 +1,351 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of row ids, laid out like a Roaring bitmap. Rows are
+ * grouped into chunks of 65536 by their high 16 bits. A chunk with few rows
+ * keeps their low 16 bits in a sorted array (2 bytes per row); once it has
+ * more than MAX_ARRAY_ROWS rows it switches to a plain 8 KB bitmap, which is
+ * then smaller. AND and OR combine chunk by chunk, 64 rows per step for two
+ * bitmap chunks.
+ * <p>
+ * Rows are added in ascending order, as the repository appends them.
+ * Not thread-safe; a bitmap that is no longer added to may be read from
+ * several threads.
+ */
+class RowBitmap {
+    private static final int CHUNK_BITS = 16;
+    private static final int LOW_MASK = (1 << CHUNK_BITS) - 1;
+    private static final int WORDS_PER_CHUNK = (1 << CHUNK_BITS) / 64;
+    private static final int MAX_ARRAY_ROWS = 4096;
+
+    // Chunks by the high bits of their rows; null where a chunk has no rows
+    private Chunk[] chunks = new Chunk[0];
+    private int cardinality;
+    private int lastRow = -1;
+
+    /**
+     * Creates a set of rows.
+     *
+     * @param rows  array holding row ids, in ascending order
+     * @param count number of row ids to use from the array
+     * @return the set
+     */
+    static RowBitmap of(int[] rows, int count) {
+        RowBitmap bitmap = new RowBitmap();
+        for (int i = 0; i < count; i++) {
+            bitmap.add(rows[i]);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param row the row id, not less than any row added before
+     * @throws IllegalArgumentException if the row is less than the last row added
+     */
+    void add(int row) {
+        if (row <= lastRow) {
+            if (row == lastRow) {
+                return;
+            }
+            throw new IllegalArgumentException("Rows must be added in ascending order: " + row + " after " + lastRow);
+        }
+        int high = row >>> CHUNK_BITS;
+        if (high >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(high + 1, chunks.length * 2));
+        }
+        if (chunks[high] == null) {
+            chunks[high] = new Chunk();
+        }
+        chunks[high].add(row & LOW_MASK);
+        lastRow = row;
+        cardinality++;
+    }
+
+    /**
+     * Returns the number of rows in the set.
+     *
+     * @return row count
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Returns the rows in both this set and another.
+     *
+     * @param other the other set
+     * @return a new set
+     */
+    RowBitmap and(RowBitmap other) {
+        RowBitmap result = new RowBitmap();
+        int length = Math.min(chunks.length, other.chunks.length);
+        result.chunks = new Chunk[length];
+        for (int high = 0; high < length; high++) {
+            if (chunks[high] != null && other.chunks[high] != null) {
+                result.chunks[high] = Chunk.and(chunks[high], other.chunks[high]);
+            }
+        }
+        result.finish();
+        return result;
+    }
+
+    /**
+     * Returns the rows in either this set or another.
+     *
+     * @param other the other set
+     * @return a new set
+     */
+    RowBitmap or(RowBitmap other) {
+        RowBitmap result = new RowBitmap();
+        result.chunks = new Chunk[Math.max(chunks.length, other.chunks.length)];
+        for (int high = 0; high < result.chunks.length; high++) {
+            Chunk chunk = high < chunks.length ? chunks[high] : null;
+            Chunk otherChunk = high < other.chunks.length ? other.chunks[high] : null;
+            if (chunk == null || otherChunk == null) {
+                result.chunks[high] = chunk != null ? chunk.copy() : otherChunk != null ? otherChunk.copy() : null;
+            } else {
+                result.chunks[high] = Chunk.or(chunk, otherChunk);
+            }
+        }
+        result.finish();
+        return result;
+    }
+
+    /**
+     * Returns the rows of the set, in ascending order.
+     *
+     * @return array of row ids
+     */
+    int[] toArray() {
+        return toArray(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the rows of the set in a row id range, in ascending order.
+     *
+     * @param fromRow the first row id (inclusive)
+     * @param toRow   the last row id (exclusive)
+     * @return array of row ids
+     */
+    int[] toArray(int fromRow, int toRow) {
+        if (fromRow >= toRow) {
+            return new int[0];
+        }
+        int[] rows = new int[fromRow <= 0 && toRow > lastRow ? cardinality : 16];
+        int size = 0;
+        int lastHigh = Math.min(chunks.length - 1, (toRow - 1) >>> CHUNK_BITS);
+        for (int high = Math.max(0, fromRow) >>> CHUNK_BITS; high <= lastHigh; high++) {
+            Chunk chunk = chunks[high];
+            if (chunk == null) {
+                continue;
+            }
+            if (size + chunk.cardinality > rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(rows.length * 2, size + chunk.cardinality));
+            }
+            int base = high << CHUNK_BITS;
+            int first = size;
+            size = chunk.copyRows(rows, size, base);
+            if (base < fromRow || base + LOW_MASK >= toRow) {
+                // Partly covered chunk: keep only the rows in range
+                int kept = first;
+                for (int i = first; i < size; i++) {
+                    if (rows[i] >= fromRow && rows[i] < toRow) {
+                        rows[kept++] = rows[i];
+                    }
+                }
+                size = kept;
+            }
+        }
+        return size == rows.length ? rows : Arrays.copyOf(rows, size);
+    }
+
+    /**
+     * Sets the cardinality and last row from the chunks, after an operation built them.
+     */
+    private void finish() {
+        cardinality = 0;
+        lastRow = -1;
+        for (int high = 0; high < chunks.length; high++) {
+            Chunk chunk = chunks[high];
+            if (chunk != null && chunk.cardinality == 0) {
+                chunks[high] = null;
+            } else if (chunk != null) {
+                cardinality += chunk.cardinality;
+                lastRow = (high << CHUNK_BITS) | chunk.last();
+            }
+        }
+    }
+
+    /**
+     * The rows of one chunk, by their low 16 bits: a sorted array while
+     * there are few, a bitmap once there are many.
+     */
+    private static class Chunk {
+        private char[] values = new char[4];
+        private long[] bits;
+        private int cardinality;
+
+        void add(int low) {
+            if (bits != null) {
+                bits[low >>> 6] |= 1L << low;
+                cardinality++;
+                return;
+            }
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, cardinality * 2);
+            }
+            values[cardinality++] = (char) low;
+            if (cardinality > MAX_ARRAY_ROWS) {
+                toBits();
+            }
+        }
+
+        int last() {
+            if (bits == null) {
+                return values[cardinality - 1];
+            }
+            for (int word = WORDS_PER_CHUNK - 1; ; word--) {
+                if (bits[word] != 0) {
+                    return word * 64 + 63 - Long.numberOfLeadingZeros(bits[word]);
+                }
+            }
+        }
+
+        /**
+         * Writes the chunk's rows to an array, adding base to each.
+         *
+         * @return the new size of the array's filled part
+         */
+        int copyRows(int[] rows, int size, int base) {
+            if (bits == null) {
+                for (int i = 0; i < cardinality; i++) {
+                    rows[size++] = base | values[i];
+                }
+                return size;
+            }
+            for (int word = 0; word < WORDS_PER_CHUNK; word++) {
+                long w = bits[word];
+                while (w != 0) {
+                    rows[size++] = base | (word * 64 + Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            return size;
+        }
+
+        Chunk copy() {
+            Chunk copy = new Chunk();
+            copy.values = bits == null ? Arrays.copyOf(values, Math.max(1, cardinality)) : null;
+            copy.bits = bits != null ? bits.clone() : null;
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        static Chunk and(Chunk a, Chunk b) {
+            Chunk result = new Chunk();
+            if (a.bits != null && b.bits != null) {
+                result.bits = new long[WORDS_PER_CHUNK];
+                for (int word = 0; word < WORDS_PER_CHUNK; word++) {
+                    long w = a.bits[word] & b.bits[word];
+                    result.bits[word] = w;
+                    result.cardinality += Long.bitCount(w);
+                }
+                if (result.cardinality <= MAX_ARRAY_ROWS) {
+                    result.toValues();
+                }
+                return result;
+            }
+            if (a.bits != null) {
+                Chunk swap = a;
+                a = b;
+                b = swap;
+            }
+            // a is an array chunk; keep its rows that are also in b
+            result.values = new char[Math.max(1, a.cardinality)];
+            int j = 0;
+            for (int i = 0; i < a.cardinality; i++) {
+                char low = a.values[i];
+                boolean found;
+                if (b.bits != null) {
+                    found = (b.bits[low >>> 6] & (1L << low)) != 0;
+                } else {
+                    while (j < b.cardinality && b.values[j] < low) {
+                        j++;
+                    }
+                    found = j < b.cardinality && b.values[j] == low;
+                }
+                if (found) {
+                    result.values[result.cardinality++] = low;
+                }
+            }
+            return result;
+        }
+
+        static Chunk or(Chunk a, Chunk b) {
+            Chunk result = new Chunk();
+            if (a.bits != null || b.bits != null) {
+                Chunk bitmap = a.bits != null ? a : b;
+                Chunk other = bitmap == a ? b : a;
+                result.bits = bitmap.bits.clone();
+                if (other.bits != null) {
+                    for (int word = 0; word < WORDS_PER_CHUNK; word++) {
+                        result.bits[word] |= other.bits[word];
+                    }
+                } else {
+                    for (int i = 0; i < other.cardinality; i++) {
+                        result.bits[other.values[i] >>> 6] |= 1L << other.values[i];
+                    }
+                }
+                for (long w : result.bits) {
+                    result.cardinality += Long.bitCount(w);
+                }
+                return result;
+            }
+            // Merge two sorted arrays
+            result.values = new char[a.cardinality + b.cardinality];
+            int i = 0;
+            int j = 0;
+            while (i < a.cardinality || j < b.cardinality) {
+                char low;
+                if (j >= b.cardinality || (i < a.cardinality && a.values[i] < b.values[j])) {
+                    low = a.values[i++];
+                } else if (i >= a.cardinality || b.values[j] < a.values[i]) {
+                    low = b.values[j++];
+                } else {
+                    low = a.values[i++];
+                    j++;
+                }
+                result.values[result.cardinality++] = low;
+            }
+            if (result.cardinality > MAX_ARRAY_ROWS) {
+                result.toBits();
+            }
+            return result;
+        }
+
+        private void toBits() {
+            bits = new long[WORDS_PER_CHUNK];
+            for (int i = 0; i < cardinality; i++) {
+                bits[values[i] >>> 6] |= 1L << values[i];
+            }
+            values = null;
+        }
+
+        private void toValues() {
+            values = new char[Math.max(1, cardinality)];
+            int size = 0;
+            for (int word = 0; word < WORDS_PER_CHUNK; word++) {
+                long w = bits[word];
+                while (w != 0) {
+                    values[size++] = (char) (word * 64 + Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            bits = null;
+        }
+    }
+}
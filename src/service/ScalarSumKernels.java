@@ -0,0 +1,55 @@
+package service;
+
+/**
+ * Plain loop implementation of SumKernels. Always available.
+ */
+class ScalarSumKernels implements SumKernels {
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public long sum(long[] amountCents, int count) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += amountCents[i];
+        }
+        return total;
+    }
+
+    @Override
+    public long sumBetween(int[] epochDays, long[] amountCents, int count, int fromDay, int toDay) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            int day = epochDays[i];
+            if (day >= fromDay && day <= toDay) {
+                total += amountCents[i];
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void sumByCategory(int[] categoryIds, long[] amountCents, int count, long[] totals, long[] counts) {
+        for (int i = 0; i < count; i++) {
+            int categoryId = categoryIds[i];
+            totals[categoryId] += amountCents[i];
+            counts[categoryId]++;
+        }
+    }
+
+    @Override
+    public void sumByCategoryBetween(int[] epochDays, int[] categoryIds, long[] amountCents, int count,
+            int fromDay, int toDay, long[] totals, long[] counts) {
+        for (int i = 0; i < count; i++) {
+            int day = epochDays[i];
+            if (day >= fromDay && day <= toDay) {
+                int categoryId = categoryIds[i];
+                totals[categoryId] += amountCents[i];
+                counts[categoryId]++;
+            }
+        }
+    }
+}
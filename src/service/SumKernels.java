@@ -0,0 +1,64 @@
+package service;
+
+/**
+ * Summation loops over primitive expense columns, used by Summarizer when
+ * the expenses come from the columnar store (see SumKernelsFactory).
+ * Each method reads the first count elements of its columns. Amounts are
+ * long cents, so every implementation gives exactly the same totals.
+ */
+public interface SumKernels {
+
+    /**
+     * Returns the name of the implementation.
+     *
+     * @return "scalar" or "vector"
+     */
+    String name();
+
+    /**
+     * Sums amounts.
+     *
+     * @param amountCents the amounts, in cents
+     * @param count       number of rows to sum
+     * @return the total in cents
+     */
+    long sum(long[] amountCents, int count);
+
+    /**
+     * Sums the amounts of rows dated between two days, inclusive.
+     *
+     * @param epochDays   the row dates, as epoch days
+     * @param amountCents the amounts, in cents
+     * @param count       number of rows to read
+     * @param fromDay     first epoch day (inclusive)
+     * @param toDay       last epoch day (inclusive)
+     * @return the total in cents
+     */
+    long sumBetween(int[] epochDays, long[] amountCents, int count, int fromDay, int toDay);
+
+    /**
+     * Adds each row's amount, and 1, to its category's entries in totals and counts.
+     *
+     * @param categoryIds the row category ids, each below totals.length
+     * @param amountCents the amounts, in cents
+     * @param count       number of rows to read
+     * @param totals      per-category totals to add to, indexed by category id
+     * @param counts      per-category row counts to add to, indexed by category id
+     */
+    void sumByCategory(int[] categoryIds, long[] amountCents, int count, long[] totals, long[] counts);
+
+    /**
+     * Like {@link #sumByCategory}, for the rows dated between two days, inclusive.
+     *
+     * @param epochDays   the row dates, as epoch days
+     * @param categoryIds the row category ids, each below totals.length
+     * @param amountCents the amounts, in cents
+     * @param count       number of rows to read
+     * @param fromDay     first epoch day (inclusive)
+     * @param toDay       last epoch day (inclusive)
+     * @param totals      per-category totals to add to, indexed by category id
+     * @param counts      per-category row counts to add to, indexed by category id
+     */
+    void sumByCategoryBetween(int[] epochDays, int[] categoryIds, long[] amountCents, int count,
+            int fromDay, int toDay, long[] totals, long[] counts);
+}
@@ -0,0 +1,71 @@
+package service;
+
+/**
+ * Factory class for creating SumKernels instances.
+ * The vector kernels live in the src-vector source root and use the
+ * jdk.incubator.vector module; they are only available when that root was
+ * compiled and the JVM runs with --add-modules jdk.incubator.vector.
+ */
+public class SumKernelsFactory {
+    private static final String VECTOR_KERNELS = "service.VectorSumKernels";
+
+    private static SumKernels defaultKernels;
+
+    /**
+     * Returns the kernels Summarizer uses, chosen once by the
+     * "budgetbuddy.kernels" system property (default "auto").
+     *
+     * @return the default kernels
+     */
+    public static synchronized SumKernels getDefault() {
+        if (defaultKernels == null) {
+            defaultKernels = createKernels(System.getProperty("budgetbuddy.kernels", "auto"));
+        }
+        return defaultKernels;
+    }
+
+    /**
+     * Creates SumKernels for the specified mode.
+     * "auto" gives the vector kernels when they are available, and the
+     * scalar kernels otherwise.
+     *
+     * @param mode the kernel mode ("auto", "scalar" or "vector")
+     * @return the corresponding SumKernels instance
+     * @throws IllegalArgumentException if mode is not supported
+     * @throws IllegalStateException    if mode is "vector" and the vector kernels are not available
+     */
+    public static SumKernels createKernels(String mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Kernel mode cannot be null");
+        }
+
+        switch (mode.toLowerCase()) {
+            case "auto":
+                SumKernels vector = loadVectorKernels();
+                return vector != null ? vector : new ScalarSumKernels();
+            case "scalar":
+                return new ScalarSumKernels();
+            case "vector":
+                SumKernels kernels = loadVectorKernels();
+                if (kernels == null) {
+                    throw new IllegalStateException("Vector kernels are not available. Compile src-vector and run with"
+                            + " --add-modules jdk.incubator.vector");
+                }
+                return kernels;
+            default:
+                throw new IllegalArgumentException("Unsupported kernel mode: " + mode + ". Supported modes: auto, scalar, vector");
+        }
+    }
+
+    private static SumKernels loadVectorKernels() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (SumKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // src-vector was not compiled
+            return null;
+        }
+    }
+}
@@ -1,17 +1,42 @@
 package service;
 
+import metrics.LatencyHistogram;
+import metrics.Metrics;
 import model.Expense;
 
 import java.time.YearMonth;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 
 /**
  * Computes summaries and aggregations over expense data.
+ * Works either over a list of expenses or over pre-computed aggregates.
+ * Lists from the columnar store are totalled straight from their columns
+ * with SumKernels. Other lists with at least "budgetbuddy.summary.parallelThreshold"
+ * (default 100000) rows are summed in parallel chunks, with exactly the
+ * same results. All amounts are in cents.
  */
 public class Summarizer {
+    /** Number of largest expenses kept per month (see topExpenses). */
+    public static final int TOP_EXPENSES = 20;
+
+    private static final LatencyHistogram TOTALS_TIME = Metrics.histogram("summarizer.totals");
+    private static final LatencyHistogram MONTHLY_TOTALS_TIME = Metrics.histogram("summarizer.monthlyTotals");
+    private static final LatencyHistogram CATEGORY_TOTALS_TIME = Metrics.histogram("summarizer.categoryTotals");
+    private static final LatencyHistogram GRAND_TOTAL_TIME = Metrics.histogram("summarizer.grandTotal");
+    private static final LatencyHistogram MONTH_TOTAL_TIME = Metrics.histogram("summarizer.totalForMonth");
+    private static final LatencyHistogram TOP_EXPENSES_TIME = Metrics.histogram("summarizer.topExpenses");
+    private static final LatencyHistogram CATEGORY_QUANTILES_TIME = Metrics.histogram("summarizer.categoryQuantiles");
+
+    private static final int DEFAULT_PARALLEL_THRESHOLD =
+            Integer.getInteger("budgetbuddy.summary.parallelThreshold", 100000);
+
     private final List<Expense> expenses;
+    private final ExpenseColumns columns;
+    private final ExpenseTotals aggregates;
+    private final boolean parallel;
 
     /**
      * Creates a Summarizer for a given list of expenses.
@@ -19,64 +44,348 @@ public class Summarizer {
      * @param expenses the expenses to summarize
      */
     public Summarizer(List<Expense> expenses) {
+        this(expenses, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Creates a Summarizer for a given list of expenses that sums in
+     * parallel when the list has at least parallelThreshold rows.
+     *
+     * @param expenses          the expenses to summarize
+     * @param parallelThreshold smallest list size summed in parallel
+     */
+    public Summarizer(List<Expense> expenses, int parallelThreshold) {
         this.expenses = expenses;
+        this.columns = expenses instanceof ExpenseColumns ? (ExpenseColumns) expenses : null;
+        this.aggregates = null;
+        this.parallel = expenses.size() >= parallelThreshold && expenses instanceof RandomAccess;
+    }
+
+    /**
+     * Creates a Summarizer that answers from pre-computed aggregates,
+     * such as an ExpenseRepository or a SummaryAccumulator's totals.
+     *
+     * @param aggregates the aggregates to read totals from
+     */
+    public Summarizer(ExpenseTotals aggregates) {
+        this.expenses = null;
+        this.columns = null;
+        this.aggregates = aggregates;
+        this.parallel = false;
+    }
+
+    /**
+     * Returns the totals this summarizer answers from. Over a list of
+     * expenses, all totals are computed together in a single pass, with
+     * the same results as the individual methods.
+     *
+     * @return month, category and grand totals
+     */
+    public ExpenseTotals totals() {
+        long start = Metrics.start();
+        try {
+            if (aggregates != null) {
+                return aggregates;
+            }
+
+            if (parallel) {
+                return ParallelAggregation.aggregate(expenses, ExpenseAggregates::new, ExpenseAggregates::add,
+                        (left, right) -> {
+                            left.addAll(right);
+                            return left;
+                        });
+            }
+
+            ExpenseAggregates totals = new ExpenseAggregates();
+            for (Expense expense : expenses) {
+                totals.add(expense);
+            }
+            return totals;
+        } finally {
+            TOTALS_TIME.recordSince(start);
+        }
     }
 
     /**
      * Computes total expenses per month.
      *
-     * @return map of YearMonth to total amount
+     * @return map of YearMonth to total amount in cents, in chronological order
      */
-    public Map<YearMonth, Double> monthlyTotals() {
-        Map<YearMonth, Double> totals = new HashMap<>();
+    public Map<YearMonth, Long> monthlyTotals() {
+        long start = Metrics.start();
+        try {
+            if (aggregates != null) {
+                return aggregates.monthlyTotals();
+            }
 
-        for (Expense expense : expenses) {
-            YearMonth month = YearMonth.from(expense.getDate());
-            totals.merge(month, expense.getAmount(), Double::sum);
+            // One mutable cell per month, so summing does not box
+            Map<YearMonth, long[]> totals;
+            if (parallel) {
+                totals = ParallelAggregation.aggregate(expenses, HashMap::new, Summarizer::addToMonth,
+                        (left, right) -> {
+                            right.forEach((month, total) ->
+                                    left.computeIfAbsent(month, m -> new long[1])[0] += total[0]);
+                            return left;
+                        });
+            } else {
+                totals = new HashMap<>();
+                for (Expense expense : expenses) {
+                    addToMonth(totals, expense);
+                }
+            }
+
+            return ExpenseAggregates.copy(totals, total -> total[0]);
+        } finally {
+            MONTHLY_TOTALS_TIME.recordSince(start);
         }
+    }
 
-        return totals;
+    private static void addToMonth(Map<YearMonth, long[]> totals, Expense expense) {
+        YearMonth month = YearMonth.from(expense.getDate());
+        totals.computeIfAbsent(month, m -> new long[1])[0] += expense.getAmountCents();
     }
 
     /**
      * Computes total expenses per category for a specific month.
      *
      * @param yearMonth the month to filter by, or null for all months
-     * @return map of category to total amount
+     * @return map of category to total amount in cents, in the order the
+     *         categories first appear in the rows
      */
-    public Map<String, Double> categoryTotals(YearMonth yearMonth) {
-        Map<String, Double> totals = new HashMap<>();
+    public Map<String, Long> categoryTotals(YearMonth yearMonth) {
+        long start = Metrics.start();
+        try {
+            if (aggregates != null) {
+                return aggregates.categoryTotals(yearMonth);
+            }
+            if (columns != null) {
+                return yearMonth == null
+                        ? columnCategoryTotals(Integer.MIN_VALUE, Integer.MAX_VALUE)
+                        : columnCategoryTotals(firstDay(yearMonth), lastDay(yearMonth));
+            }
 
-        for (Expense expense : expenses) {
-            if (yearMonth == null || YearMonth.from(expense.getDate()).equals(yearMonth)) {
-                totals.merge(expense.getCategory(), expense.getAmount(), Double::sum);
+            if (parallel) {
+                return ParallelAggregation.aggregate(expenses, CategoryTotals::new,
+                        (totals, expense) -> addToCategory(totals, expense, yearMonth),
+                        (left, right) -> {
+                            left.addAll(right);
+                            return left;
+                        }).toMap();
             }
-        }
 
-        return totals;
+            CategoryTotals totals = new CategoryTotals();
+
+            for (Expense expense : expenses) {
+                addToCategory(totals, expense, yearMonth);
+            }
+
+            return totals.toMap();
+        } finally {
+            CATEGORY_TOTALS_TIME.recordSince(start);
+        }
     }
 
     /**
      * Computes the total of all expenses.
      *
-     * @return total amount
+     * @return total amount in cents
      */
-    public double grandTotal() {
-        return expenses.stream()
-                .mapToDouble(Expense::getAmount)
-                .sum();
+    public long grandTotal() {
+        long start = Metrics.start();
+        try {
+            if (aggregates != null) {
+                return aggregates.grandTotal();
+            }
+            if (columns != null) {
+                return SumKernelsFactory.getDefault().sum(columns.amountCents(), columns.size());
+            }
+
+            if (parallel) {
+                return ParallelAggregation.aggregate(expenses, () -> new long[1],
+                        (total, expense) -> total[0] += expense.getAmountCents(), Summarizer::addTotal)[0];
+            }
+
+            long total = 0;
+            for (Expense expense : expenses) {
+                total += expense.getAmountCents();
+            }
+            return total;
+        } finally {
+            GRAND_TOTAL_TIME.recordSince(start);
+        }
     }
 
     /**
      * Computes the total for a specific month.
      *
      * @param yearMonth the month to compute total for
-     * @return total amount for the month
+     * @return total amount for the month in cents
      */
-    public double totalForMonth(YearMonth yearMonth) {
-        return expenses.stream()
-                .filter(e -> YearMonth.from(e.getDate()).equals(yearMonth))
-                .mapToDouble(Expense::getAmount)
-                .sum();
+    public long totalForMonth(YearMonth yearMonth) {
+        long start = Metrics.start();
+        try {
+            if (aggregates != null) {
+                return aggregates.totalForMonth(yearMonth);
+            }
+            if (columns != null) {
+                return SumKernelsFactory.getDefault().sumBetween(columns.epochDays(), columns.amountCents(),
+                        columns.size(), firstDay(yearMonth), lastDay(yearMonth));
+            }
+
+            if (parallel) {
+                return ParallelAggregation.aggregate(expenses, () -> new long[1], (total, expense) -> {
+                    if (YearMonth.from(expense.getDate()).equals(yearMonth)) {
+                        total[0] += expense.getAmountCents();
+                    }
+                }, Summarizer::addTotal)[0];
+            }
+
+            long total = 0;
+            for (Expense expense : expenses) {
+                if (YearMonth.from(expense.getDate()).equals(yearMonth)) {
+                    total += expense.getAmountCents();
+                }
+            }
+            return total;
+        } finally {
+            MONTH_TOTAL_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Returns the largest expenses of a month, found in one pass without
+     * sorting. Equal amounts are ranked by date, earliest first.
+     *
+     * @param yearMonth the month
+     * @return up to TOP_EXPENSES expenses, largest first
+     */
+    public List<Expense> topExpenses(YearMonth yearMonth) {
+        long start = Metrics.start();
+        try {
+            if (aggregates != null) {
+                return aggregates.topExpenses(yearMonth);
+            }
+
+            if (parallel) {
+                return ParallelAggregation.aggregate(expenses, () -> new TopExpenses(TOP_EXPENSES),
+                        (top, expense) -> addToTop(top, expense, yearMonth),
+                        (left, right) -> {
+                            left.addAll(right);
+                            return left;
+                        }).toList();
+            }
+
+            TopExpenses top = new TopExpenses(TOP_EXPENSES);
+            for (Expense expense : expenses) {
+                addToTop(top, expense, yearMonth);
+            }
+            return top.toList();
+        } finally {
+            TOP_EXPENSES_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Returns a sketch of the amounts per category, for a month or for all
+     * time, from which approximate percentiles can be read (see QuantileSketch
+     * for the accuracy).
+     *
+     * @param yearMonth the month to filter by, or null for all months
+     * @return map of category to a sketch of its amounts
+     */
+    public Map<String, QuantileSketch> categoryQuantiles(YearMonth yearMonth) {
+        long start = Metrics.start();
+        try {
+            if (aggregates != null) {
+                return aggregates.categoryQuantiles(yearMonth);
+            }
+
+            if (parallel) {
+                return ParallelAggregation.aggregate(expenses, CategorySketches::new,
+                        (sketches, expense) -> addToSketch(sketches, expense, yearMonth),
+                        (left, right) -> {
+                            left.addAll(right);
+                            return left;
+                        }).toMap();
+            }
+
+            CategorySketches sketches = new CategorySketches();
+            for (Expense expense : expenses) {
+                addToSketch(sketches, expense, yearMonth);
+            }
+            return sketches.toMap();
+        } finally {
+            CATEGORY_QUANTILES_TIME.recordSince(start);
+        }
+    }
+
+    private static void addToTop(TopExpenses top, Expense expense, YearMonth yearMonth) {
+        if (YearMonth.from(expense.getDate()).equals(yearMonth)) {
+            top.add(expense);
+        }
+    }
+
+    private static void addToSketch(CategorySketches sketches, Expense expense, YearMonth yearMonth) {
+        if (yearMonth == null || YearMonth.from(expense.getDate()).equals(yearMonth)) {
+            sketches.add(expense.getCategoryId(), expense.getAmountCents());
+        }
+    }
+
+    private static void addToCategory(CategoryTotals totals, Expense expense, YearMonth yearMonth) {
+        if (yearMonth == null || YearMonth.from(expense.getDate()).equals(yearMonth)) {
+            totals.add(expense.getCategoryId(), expense.getAmountCents());
+        }
+    }
+
+    private static long[] addTotal(long[] left, long[] right) {
+        left[0] += right[0];
+        return left;
+    }
+
+    /**
+     * Computes category totals from the columns for rows dated between two days.
+     * The map is filled in the order categories first appear in the rows,
+     * so it iterates like the one built row by row.
+     */
+    private Map<String, Long> columnCategoryTotals(int fromDay, int toDay) {
+        int count = columns.size();
+        int[] epochDays = columns.epochDays();
+        int[] categoryIds = columns.categoryIds();
+        int categories = columns.categoryLimit();
+        long[] totals = new long[categories];
+        long[] counts = new long[categories];
+        if (fromDay == Integer.MIN_VALUE && toDay == Integer.MAX_VALUE) {
+            SumKernelsFactory.getDefault().sumByCategory(categoryIds, columns.amountCents(), count, totals, counts);
+        } else {
+            SumKernelsFactory.getDefault().sumByCategoryBetween(epochDays, categoryIds, columns.amountCents(), count,
+                    fromDay, toDay, totals, counts);
+        }
+
+        int remaining = 0;
+        for (long rows : counts) {
+            if (rows > 0) {
+                remaining++;
+            }
+        }
+        // Categories usually all appear early on, so this stops long before the end
+        CategoryTotals ordered = new CategoryTotals();
+        boolean[] added = new boolean[categories];
+        for (int row = 0; row < count && remaining > 0; row++) {
+            int categoryId = categoryIds[row];
+            if (!added[categoryId] && epochDays[row] >= fromDay && epochDays[row] <= toDay) {
+                added[categoryId] = true;
+                ordered.add(categoryId, totals[categoryId]);
+                remaining--;
+            }
+        }
+        return ordered.toMap();
+    }
+
+    private static int firstDay(YearMonth yearMonth) {
+        return (int) yearMonth.atDay(1).toEpochDay();
+    }
+
+    private static int lastDay(YearMonth yearMonth) {
+        return (int) yearMonth.atEndOfMonth().toEpochDay();
     }
 }
@@ -0,0 +1,51 @@
+package service;
+
+import java.util.List;
+import java.util.function.Consumer;
+import model.Expense;
+
+/**
+ * Consumes expenses one at a time and keeps only what summaries and
+ * reports need: month and category totals and the last few entries.
+ * Memory use does not depend on the number of expenses consumed.
+ */
+public class SummaryAccumulator implements Consumer<Expense> {
+    /** Number of entries shown in the "recent entries" report section. */
+    public static final int RECENT_ENTRIES = 10;
+
+    private final ExpenseAggregates aggregates = new ExpenseAggregates();
+    private final RecentEntries recentEntries = new RecentEntries(RECENT_ENTRIES);
+
+    @Override
+    public void accept(Expense expense) {
+        aggregates.add(expense);
+        recentEntries.add(expense);
+    }
+
+    /**
+     * Returns a Summarizer answering from the accumulated totals.
+     *
+     * @return summarizer over the consumed expenses
+     */
+    public Summarizer summarizer() {
+        return new Summarizer(aggregates);
+    }
+
+    /**
+     * Returns the last consumed expenses, oldest first.
+     *
+     * @return list of recent expenses
+     */
+    public List<Expense> recentEntries() {
+        return recentEntries.toList();
+    }
+
+    /**
+     * Returns the number of consumed expenses.
+     *
+     * @return expense count
+     */
+    public long count() {
+        return aggregates.count();
+    }
+}
@@ -0,0 +1,178 @@
+package service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Least-recently-used cache of summary results, keyed by command, period
+ * and repository version (see ExpenseRepository.version()). Every change to
+ * the repository bumps its version, so a cached result is only returned for
+ * exactly the data it was computed from; entries of older versions are
+ * dropped as soon as a newer version is seen.
+ * <p>
+ * Holds at most a fixed number of entries, evicting the least recently
+ * used one when full; a capacity of 0 disables caching. Counts hits,
+ * misses, evictions and invalidations. Safe to use from several threads.
+ */
+public class SummaryCache {
+    private final int capacity;
+    // Access order, so the first entry is the least recently used
+    private final LinkedHashMap<Key, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long newestVersion = Long.MIN_VALUE;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates a cache holding up to the given number of results.
+     *
+     * @param capacity maximum number of entries, 0 to disable caching
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public SummaryCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Summary cache size must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the cached result for a command and period at a repository
+     * version, computing and caching it if there is none.
+     *
+     * @param command the summary command, such as "month"
+     * @param period  the period it covers, such as "2025-02"
+     * @param version the repository version the result is computed from
+     * @param compute computes the result; it must not be modified afterwards
+     * @param <T>     the result type, always the same for a command
+     * @return the result
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(String command, String period, long version, Supplier<T> compute) {
+        if (version > newestVersion) {
+            invalidateBefore(version);
+        }
+        Key key = new Key(command, period, version);
+        Object result = entries.get(key);
+        if (result != null) {
+            hits++;
+            return (T) result;
+        }
+        misses++;
+        T computed = compute.get();
+        if (capacity > 0 && version == newestVersion) {
+            if (entries.size() >= capacity) {
+                Iterator<Key> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions++;
+            }
+            entries.put(key, computed);
+        }
+        return computed;
+    }
+
+    /**
+     * Removes all entries. The counters are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of cached results.
+     *
+     * @return entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of cached results.
+     *
+     * @return capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns how many lookups found a cached result.
+     *
+     * @return hit count
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns how many lookups had to compute their result.
+     *
+     * @return miss count
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns how many entries were dropped to make room for newer ones.
+     *
+     * @return eviction count
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns how many entries were dropped because the repository changed.
+     *
+     * @return invalidation count
+     */
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+
+    private void invalidateBefore(long version) {
+        for (Iterator<Map.Entry<Key, Object>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            if (it.next().getKey().version < version) {
+                it.remove();
+                invalidations++;
+            }
+        }
+        newestVersion = version;
+    }
+
+    /**
+     * A command, period and repository version.
+     */
+    private static class Key {
+        private final String command;
+        private final String period;
+        private final long version;
+
+        Key(String command, String period, long version) {
+            this.command = command;
+            this.period = period;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return version == key.version && command.equals(key.command) && period.equals(key.period);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(command, period, version);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import model.Expense;
+
+/**
+ * Keeps the largest N expenses added, in a fixed-size min-heap, so adding
+ * an expense smaller than all kept ones is a single comparison.
+ * Expenses are ranked by amount; equal amounts are ranked by date (earlier
+ * first), then category, then notes. The ranking is a total order on
+ * expense contents, so the kept expenses do not depend on the order they
+ * were added in, and merging the heaps of parallel chunks gives the same
+ * result as a single pass.
+ */
+class TopExpenses {
+    // Larger means ranked higher
+    static final Comparator<Expense> RANKING = Comparator.comparingLong(Expense::getAmountCents)
+            .thenComparing(Expense::getDate, Comparator.reverseOrder())
+            .thenComparing(Expense::getCategory, Comparator.reverseOrder())
+            .thenComparing(Expense::getNotes, Comparator.reverseOrder());
+
+    private final Expense[] heap;
+    private int size;
+
+    /**
+     * Creates a heap that keeps the given number of expenses.
+     *
+     * @param capacity maximum number of expenses kept
+     */
+    TopExpenses(int capacity) {
+        this.heap = new Expense[capacity];
+    }
+
+    /**
+     * Adds an expense, dropping the lowest-ranked one when the heap is full.
+     *
+     * @param expense the expense to add
+     */
+    void add(Expense expense) {
+        if (size < heap.length) {
+            heap[size] = expense;
+            siftUp(size++);
+        } else if (heap.length > 0 && RANKING.compare(expense, heap[0]) > 0) {
+            heap[0] = expense;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Adds all expenses kept by another heap.
+     *
+     * @param other the heap to merge into this one
+     */
+    void addAll(TopExpenses other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.heap[i]);
+        }
+    }
+
+    /**
+     * Returns the kept expenses, highest-ranked first.
+     *
+     * @return list of the largest expenses
+     */
+    List<Expense> toList() {
+        Expense[] sorted = Arrays.copyOf(heap, size);
+        Arrays.sort(sorted, RANKING.reversed());
+        return new ArrayList<>(Arrays.asList(sorted));
+    }
+
+    /**
+     * Removes all expenses.
+     */
+    void clear() {
+        Arrays.fill(heap, null);
+        size = 0;
+    }
+
+    private void siftUp(int child) {
+        while (child > 0) {
+            int parent = (child - 1) / 2;
+            if (RANKING.compare(heap[child], heap[parent]) >= 0) {
+                return;
+            }
+            swap(child, parent);
+            child = parent;
+        }
+    }
+
+    private void siftDown(int parent) {
+        while (true) {
+            int smallest = parent;
+            int left = 2 * parent + 1;
+            int right = left + 1;
+            if (left < size && RANKING.compare(heap[left], heap[smallest]) < 0) {
+                smallest = left;
+            }
+            if (right < size && RANKING.compare(heap[right], heap[smallest]) < 0) {
+                smallest = right;
+            }
+            if (smallest == parent) {
+                return;
+            }
+            swap(parent, smallest);
+            parent = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Expense swapped = heap[i];
+        heap[i] = heap[j];
+        heap[j] = swapped;
+    }
+}
@@ -50,6 +50,50 @@ public class DateUtils {
         return date.format(DateTimeFormatter.ISO_LOCAL_DATE);
     }
 
+    /**
+     * Appends a LocalDate in ISO format (YYYY-MM-DD) without going through a formatter.
+     *
+     * @param text the builder to append to
+     * @param date the date to format
+     */
+    public static void appendDate(StringBuilder text, LocalDate date) {
+        if (!appendYearMonth(text, date.getYear(), date.getMonthValue())) {
+            text.append(formatDate(date));
+            return;
+        }
+        text.append('-');
+        appendTwoDigits(text, date.getDayOfMonth());
+    }
+
+    /**
+     * Appends a YearMonth in YYYY-MM format without going through a formatter.
+     *
+     * @param text      the builder to append to
+     * @param yearMonth the year-month to format
+     */
+    public static void appendYearMonth(StringBuilder text, YearMonth yearMonth) {
+        if (!appendYearMonth(text, yearMonth.getYear(), yearMonth.getMonthValue())) {
+            text.append(formatYearMonth(yearMonth));
+        }
+    }
+
+    private static boolean appendYearMonth(StringBuilder text, int year, int month) {
+        // Years outside 1000-9999 need padding or a sign; leave those to the formatter
+        if (year < 1000 || year > 9999) {
+            return false;
+        }
+        text.append(year).append('-');
+        appendTwoDigits(text, month);
+        return true;
+    }
+
+    private static void appendTwoDigits(StringBuilder text, int value) {
+        if (value < 10) {
+            text.append('0');
+        }
+        text.append(value);
+    }
+
     /**
      * Formats a YearMonth to YYYY-MM format.
      *
@@ -1,9 +1,17 @@
 package util;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
 /**
- * Utility methods for text formatting, ASCII bars, and table padding.
+ * Utility methods for text formatting, amount parsing, note words, ASCII bars, and table padding.
  */
 public class TextUtils {
+    // Integer digits that always fit in a long once scaled to cents
+    private static final int MAX_AMOUNT_DIGITS = 16;
 
     /**
      * Creates an ASCII horizontal bar visualization for a value.
@@ -65,12 +73,132 @@ public class TextUtils {
     }
 
     /**
-     * Formats an amount as a string with 2 decimal places.
+     * Formats an amount in cents as a string with 2 decimal places.
      *
-     * @param amount the amount to format
+     * @param cents the amount to format, in cents
      * @return formatted amount string
      */
-    public static String formatAmount(double amount) {
-        return String.format("%.2f", amount);
+    public static String formatAmount(long cents) {
+        StringBuilder text = new StringBuilder(16);
+        appendAmount(text, cents);
+        return text.toString();
+    }
+
+    /**
+     * Appends an amount in cents with 2 decimal places.
+     *
+     * @param text  the builder to append to
+     * @param cents the amount to format, in cents
+     */
+    public static void appendAmount(StringBuilder text, long cents) {
+        if (cents < 0) {
+            text.append('-');
+        }
+        // Divide before negating, so Long.MIN_VALUE does not overflow
+        text.append(Math.abs(cents / 100)).append('.');
+        long fraction = Math.abs(cents % 100);
+        if (fraction < 10) {
+            text.append('0');
+        }
+        text.append(fraction);
+    }
+
+    /**
+     * Parses an amount into cents, rounding half-up to whole cents.
+     * Plain decimals such as "12", "12.5" or "12.345" are parsed directly
+     * from the text; any other form Java accepts for decimals (such as
+     * "1e3") goes through BigDecimal. Negative amounts are rejected before
+     * rounding, so "-0.001" is not read as 0.
+     *
+     * @param text the amount text
+     * @return the amount in cents
+     * @throws NumberFormatException    if the text is not a number, or the
+     *                                  amount is too large
+     * @throws IllegalArgumentException if the amount is below zero
+     */
+    public static long parseAmount(String text) {
+        text = text.trim();
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i = 1;
+        }
+
+        long units = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        long fraction = 0;
+        boolean roundUp = false;
+        boolean nonZero = false;
+        boolean plain = i < length;
+        for (; i < length && plain; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                nonZero |= c != '0';
+                if (fractionDigits < 0) {
+                    units = units * 10 + (c - '0');
+                    plain = ++digits <= MAX_AMOUNT_DIGITS;
+                } else if (++fractionDigits <= 2) {
+                    fraction = fraction * 10 + (c - '0');
+                } else if (fractionDigits == 3) {
+                    roundUp = c >= '5';
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                plain = false;
+            }
+        }
+        // Double.parseDouble accepts "5." and ".5", but not "."
+        if (plain && (digits > 0 || fractionDigits > 0)) {
+            if (fractionDigits == 1) {
+                fraction *= 10;
+            }
+            if (negative && nonZero) {
+                throw new IllegalArgumentException("Amount cannot be negative");
+            }
+            return units * 100 + fraction + (roundUp ? 1 : 0);
+        }
+
+        BigDecimal amount = new BigDecimal(text);
+        if (amount.signum() < 0) {
+            throw new IllegalArgumentException("Amount cannot be negative");
+        }
+        try {
+            return amount.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    /**
+     * Splits text into its distinct words, lower-cased, in order of first
+     * appearance. A word is a run of letters and digits.
+     *
+     * @param text the text to split, such as an expense's notes
+     * @return list of distinct words
+     */
+    public static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                String word = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
     }
 }